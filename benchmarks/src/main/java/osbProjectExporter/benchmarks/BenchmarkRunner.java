@@ -0,0 +1,34 @@
+package osbProjectExporter.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks with the GC profiler and writes the results to jmh-result.json.
+ * The standard JMH command line options can be given to narrow the run, e.g. '-p resources=1000 unpackJar';
+ * without a benchmark pattern all the FileUtil benchmarks run.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        // The includes of the builder are added to those of the command line, so all the benchmarks are
+        // included only if the command line narrows nothing
+        if (commandLine.getIncludes().isEmpty()) {
+            builder.include(FileUtilBenchmark.class.getSimpleName());
+        }
+        Options options = builder
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,153 @@
+package osbProjectExporter.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+
+/**
+ * Generates synthetic OSB export jars with a realistic mix of resource types: mostly schemas, WSDLs and XQueries
+ * wrapped into CDATA, plus services, pipelines and the LocationData and ExportInfo entries the server adds.
+ */
+public class ExportJarGenerator {
+
+    /**
+     * Resource types with their wrapper elements and relative weights. A null wrapper means a plain XML resource.
+     */
+    private static final String[][] TYPES = {
+            // type, root element, content element, weight
+            {"XMLSchema", "schemaEntry", "schema", "30"},
+            {"WSDL", "wsdlEntry", "wsdl", "15"},
+            {"Xquery", "xqueryEntry", "xquery", "15"},
+            {"XSLT", "xsltEntry", "xslt", "5"},
+            {"XML", "xmlEntry", "xml-content", "3"},
+            {"MFL", "mflEntry", "mfl", "2"},
+            {"WADL", "wadlEntry", "wadl", "1"},
+            {"JavaScript", "javaScriptEntry", "javaScript-content", "2"},
+            {"BusinessService", null, null, "10"},
+            {"ProxyService", null, null, "5"},
+            {"Pipeline", null, null, "10"},
+            {"ServiceAccount", null, null, "1"},
+            {"JCA", null, null, "1"}
+    };
+
+    private static final int RESOURCES_PER_FOLDER = 50;
+    private static final int FOLDERS_PER_PROJECT = 10;
+
+
+    /**
+     * Generate an export jar
+     *
+     * @param resources int The number of resources in the jar
+     * @param seed      long The seed of the random generator, the same seed gives the same jar
+     * @return byte[] The jar binary
+     */
+    public static byte[] generate(int resources, long seed) throws IOException {
+        Random random = new Random(seed);
+        int totalWeight = 0;
+        for (String[] type : TYPES) {
+            totalWeight += Integer.parseInt(type[3]);
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JarOutputStream jos = new JarOutputStream(bos)) {
+            StringBuilder exportInfo = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<xml-fragment name=\"\" version=\"v2\" xmlns:imp=\"http://www.bea.com/wli/config/importexport\">\n");
+            for (int i = 0; i < resources; i++) {
+                int folder = i / RESOURCES_PER_FOLDER;
+                String folderPath = "Project_" + folder / FOLDERS_PER_PROJECT + "/Folder_" + folder % FOLDERS_PER_PROJECT;
+                if (i % RESOURCES_PER_FOLDER == 0) {
+                    put(jos, folderPath + "/_folderdata.LocationData", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                            "<proj:isImmutable xmlns:proj=\"http://www.bea.com/wli/config/project\">false</proj:isImmutable>");
+                }
+
+                String[] type = pickType(random, totalWeight);
+                String path = folderPath + "/Resource_" + i + "." + type[0];
+                put(jos, path, type[1] == null
+                        ? plainResource(random, i)
+                        : wrappedResource(type[1], type[2], payload(random, type[0], i)));
+                exportInfo.append("    <imp:exportedItemInfo instanceId=\"").append(path, 0, path.lastIndexOf('.'))
+                        .append("\" typeId=\"").append(type[0]).append("\"/>\n");
+            }
+            put(jos, "ExportInfo", exportInfo.append("</xml-fragment>").toString());
+        }
+        return bos.toByteArray();
+    }
+
+
+    private static String[] pickType(Random random, int totalWeight) {
+        int n = random.nextInt(totalWeight);
+        for (String[] type : TYPES) {
+            n -= Integer.parseInt(type[3]);
+            if (n < 0) {
+                return type;
+            }
+        }
+        return TYPES[0];
+    }
+
+
+    private static String wrappedResource(String rootElement, String contentElement, String payload) {
+        String open = "<con:" + contentElement + ">";
+        String close = "</con:" + contentElement + ">";
+        if (rootElement.equals("javaScriptEntry")) {
+            payload = payload.replace("&", "&amp;").replace("<", "&lt;");
+        } else {
+            payload = "<![CDATA[" + payload + "]]>";
+        }
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<con:" + rootElement + " xmlns:con=\"http://www.bea.com/wli/sb/resources/config\">\n" +
+                "    " + open + payload + close + "\n" +
+                "</con:" + rootElement + ">";
+    }
+
+
+    /**
+     * The embedded payload: 1 to 40 KB of schema-like XML, or script text for JavaScript
+     */
+    private static String payload(Random random, String type, int index) {
+        int elements = 10 + random.nextInt(400);
+        StringBuilder sb = new StringBuilder();
+        if (type.equals("JavaScript")) {
+            for (int i = 0; i < elements; i++) {
+                sb.append("var field").append(i).append(" = input.field").append(i).append(" < 10 ? 'a' : 'b';\n");
+            }
+            return sb.toString();
+        }
+
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"http://example.com/")
+                .append(type).append('/').append(index).append("\" elementFormDefault=\"qualified\">\n")
+                .append("  <xsd:complexType name=\"Type").append(index).append("\">\n    <xsd:sequence>\n");
+        for (int i = 0; i < elements; i++) {
+            sb.append("      <xsd:element name=\"field").append(i).append("\" type=\"xsd:string\" minOccurs=\"0\"/>\n");
+        }
+        return sb.append("    </xsd:sequence>\n  </xsd:complexType>\n</xsd:schema>").toString();
+    }
+
+
+    /**
+     * A plain XML resource such as a business service or a pipeline: 1 to 20 KB of configuration
+     */
+    private static String plainResource(Random random, int index) {
+        int elements = 10 + random.nextInt(200);
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<con:pipelineEntry xmlns:con=\"http://www.bea.com/wli/sb/pipeline/config\">\n")
+                .append("    <con:coreEntry>\n");
+        for (int i = 0; i < elements; i++) {
+            sb.append("        <con:stage id=\"_StageId-").append(index).append('-').append(i)
+                    .append("\" name=\"Stage").append(i).append("\"/>\n");
+        }
+        return sb.append("    </con:coreEntry>\n</con:pipelineEntry>").toString();
+    }
+
+
+    private static void put(JarOutputStream jos, String name, String content) throws IOException {
+        jos.putNextEntry(new JarEntry(name));
+        jos.write(content.getBytes(StandardCharsets.UTF_8));
+        jos.closeEntry();
+    }
+}
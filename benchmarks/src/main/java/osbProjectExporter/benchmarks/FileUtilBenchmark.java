@@ -0,0 +1,183 @@
+package osbProjectExporter.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import osbProjectExporter.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks of the FileUtil hot paths of the export on generated export jars of 100, 1k and 10k resources.
+ * Run with the GC profiler (the default of BenchmarkRunner) to see the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class FileUtilBenchmark {
+
+    /**
+     * The generated export jar and a working directory
+     */
+    @State(Scope.Benchmark)
+    public static class ExportJar {
+
+        @Param({"100", "1000", "10000"})
+        public int resources;
+
+        public byte[] jar;
+        public Path workDir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            jar = ExportJarGenerator.generate(resources, 42);
+            workDir = Files.createTempDirectory("osbexport-bench-");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            FileUtil.deleteFolder(workDir.toString());
+        }
+
+        /**
+         * A fresh directory for one invocation
+         */
+        String newDir(String name) throws IOException {
+            Path dir = workDir.resolve(name);
+            if (Files.exists(dir)) {
+                FileUtil.deleteFolder(dir.toString());
+            }
+            return dir.toString();
+        }
+    }
+
+
+    /**
+     * The jar unpacked before every invocation, for the benchmarks that change the unpacked tree
+     */
+    @State(Scope.Thread)
+    public static class UnpackedJar {
+
+        public String dir;
+        public String target;
+
+        @Setup(Level.Invocation)
+        public void setUp(ExportJar exportJar) throws IOException {
+            dir = exportJar.newDir("unpacked");
+            target = exportJar.newDir("target");
+            FileUtil.unpackJar(exportJar.jar, dir);
+        }
+    }
+
+
+    /**
+     * An empty target directory prepared before every invocation, so that deleting the output
+     * of the previous invocation is not measured
+     */
+    @State(Scope.Thread)
+    public static class TargetDir {
+
+        public String dir;
+
+        @Setup(Level.Invocation)
+        public void setUp(ExportJar exportJar) throws IOException {
+            dir = exportJar.newDir("output");
+        }
+    }
+
+
+    /**
+     * The jar unpacked once, for the benchmarks that only read the unpacked tree
+     */
+    @State(Scope.Benchmark)
+    public static class UnpackedTree {
+
+        public String dir;
+
+        @Setup(Level.Trial)
+        public void setUp(ExportJar exportJar) throws IOException {
+            dir = exportJar.newDir("tree");
+            FileUtil.unpackJar(exportJar.jar, dir);
+        }
+    }
+
+
+    /**
+     * A single large schema resource restored before every invocation
+     */
+    @State(Scope.Thread)
+    public static class SchemaResource {
+
+        public byte[] content;
+        public File file;
+
+        @Setup(Level.Trial)
+        public void setUp(ExportJar exportJar) throws IOException {
+            String dir = exportJar.newDir("schema");
+            FileUtil.unpackJar(exportJar.jar, dir);
+            File largest = null;
+            for (File f : FileUtil.listFilesRecursively(dir)) {
+                if (f.getName().endsWith(".XMLSchema") && (largest == null || f.length() > largest.length())) {
+                    largest = f;
+                }
+            }
+            file = largest;
+            content = Files.readAllBytes(file.toPath());
+        }
+
+        @Setup(Level.Invocation)
+        public void restore() throws IOException {
+            Files.write(file.toPath(), content);
+        }
+    }
+
+
+    @Benchmark
+    public void unpackJar(ExportJar exportJar, TargetDir targetDir) throws IOException {
+        FileUtil.unpackJar(exportJar.jar, targetDir.dir);
+    }
+
+
+    @Benchmark
+    public void unpackAndProcessJar(ExportJar exportJar, TargetDir targetDir) throws IOException {
+        FileUtil.unpackAndProcessJar(exportJar.jar, targetDir.dir);
+    }
+
+
+    @Benchmark
+    public void processFilesInFolder(UnpackedJar unpackedJar) {
+        FileUtil.processFilesInFolder(unpackedJar.dir);
+    }
+
+
+    @Benchmark
+    public void processFilesInFolderParallel(UnpackedJar unpackedJar) {
+        FileUtil.processFilesInFolder(unpackedJar.dir, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    @Benchmark
+    public void moveFolderContents(UnpackedJar unpackedJar) throws IOException {
+        FileUtil.moveFolderContents(unpackedJar.dir, unpackedJar.target);
+    }
+
+
+    @Benchmark
+    public List<File> listFilesRecursively(UnpackedTree unpackedTree) {
+        return FileUtil.listFilesRecursively(unpackedTree.dir);
+    }
+
+
+    @Benchmark
+    public void parseFile(SchemaResource schema, Blackhole blackhole) {
+        FileUtil.parseFile(schema.file);
+        blackhole.consume(schema.file.length());
+    }
+}
@@ -0,0 +1,574 @@
+package osbProjectExporter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Writes the processed resources straight into a zip or tar.gz archive, without an export directory.
+ * The compression runs on a pool of threads, so that an archived export is limited by the network and the CPU
+ * rather than by writing many small files:
+ * <ul>
+ * <li>zip: the entries are deflated concurrently and written in the order they are completed</li>
+ * <li>tar.gz: the tar stream is cut into blocks, which are compressed concurrently into gzip members
+ * and written in order. A gzip file of several members is read by gzip, tar and GZIPInputStream as one stream.</li>
+ * </ul>
+ * The archive is written to '&lt;archive&gt;.tmp', which replaces the archive when it is finished, so that
+ * a failed export keeps the previous archive.
+ */
+public abstract class ArchiveWriter implements ExportWriter {
+
+    protected final File file;
+    private final File tmpFile;
+    protected final ExecutorService executor;
+    protected final int threads;
+    protected final CountingOutputStream out;
+
+    private int entries;
+    private long bytes;
+    private volatile boolean finished;
+
+
+    protected ArchiveWriter(File file, int threads) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.threads = threads;
+        File parent = this.file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        this.tmpFile = new File(this.file.getPath() + ".tmp");
+        this.out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 1 << 16));
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            // The threads do not keep the JVM running if the export fails before the archive is finished
+            Thread thread = new Thread(runnable, "archive-" + this.file.getName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    /**
+     * Create the writer of the given archive. The format is given by the extension: '.zip', '.tar.gz' or '.tgz'.
+     *
+     * @param file    File The archive file
+     * @param threads int The number of threads to compress with
+     * @return ArchiveWriter The writer
+     */
+    public static ArchiveWriter create(File file, int threads) throws IOException {
+        if (isZip(file.getName())) {
+            return new ZipWriter(file, threads);
+        }
+        if (isTarGz(file.getName())) {
+            return new TarGzWriter(file, threads);
+        }
+        throw new IOException("[ERROR] Unsupported archive " + file + ". The archive must end with .zip, .tar.gz or .tgz");
+    }
+
+
+    /**
+     * @param name String The file name
+     * @return boolean True if the file name has the extension of an archive supported by the writer
+     */
+    public static boolean isSupported(String name) {
+        return isZip(name) || isTarGz(name);
+    }
+
+
+    private static boolean isZip(String name) {
+        return name.toLowerCase().endsWith(".zip");
+    }
+
+
+    private static boolean isTarGz(String name) {
+        String lowerCaseName = name.toLowerCase();
+        return lowerCaseName.endsWith(".tar.gz") || lowerCaseName.endsWith(".tgz");
+    }
+
+
+    @Override
+    public void accept(String path, byte[] content) throws IOException {
+        synchronized (this) {
+            entries++;
+            bytes += content.length;
+        }
+        write(path, content);
+    }
+
+
+    /**
+     * Add the given resource to the archive
+     *
+     * @param path    String The path of the resource
+     * @param content byte[] The content of the resource
+     */
+    protected abstract void write(String path, byte[] content) throws IOException;
+
+
+    /**
+     * Wait for the pending compression and write the end of the archive
+     */
+    protected abstract void complete() throws IOException;
+
+
+    /**
+     * Complete and close the archive, replace the previous archive with it and report its size
+     *
+     * @return String The summary of the archive
+     */
+    @Override
+    public String finish() throws IOException {
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("archive")) {
+            complete();
+            out.close();
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            phase.addBytes(out.getCount());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        String summary;
+        synchronized (this) {
+            summary = "Archived " + entries + " resources (" + bytes + " bytes) to " + file + " (" + out.getCount() +
+                    " bytes) with " + threads + " threads";
+        }
+        System.out.println(summary);
+        return summary;
+    }
+
+
+    /**
+     * Stop the compression, close and delete the unfinished archive. The previous archive is kept.
+     */
+    @Override
+    public void abort() {
+        if (finished) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // The archive is deleted anyway
+        }
+        try {
+            Files.deleteIfExists(tmpFile.toPath());
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed to delete the unfinished archive " + tmpFile + ". " + e);
+        }
+    }
+
+
+    /**
+     * Rethrow the cause of a failed compression
+     */
+    protected static IOException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+
+
+    protected static InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+        return new InterruptedIOException("Interrupted while writing the archive");
+    }
+
+
+    /**
+     * Writes a zip archive. Every entry is deflated as a task of the pool and written as soon as it is done,
+     * with its sizes and CRC in the local header. The entries above 65535 and the offsets above 4 GB
+     * are written with the Zip64 extensions.
+     */
+    static class ZipWriter extends ArchiveWriter {
+
+        private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+        private static final int ZIP64_ENTRIES = 0xFFFF;
+        private static final int UTF8_FLAG = 0x0800;
+
+        private final List<ZipEntryRecord> records = new ArrayList<>();
+        private final Semaphore pending;
+        private final int dosTime;
+        private final int dosDate;
+        private IOException failure;
+
+
+        ZipWriter(File file, int threads) throws IOException {
+            super(file, threads);
+            // Bounds the memory held by the entries deflated but not written yet
+            this.pending = new Semaphore(threads * 4);
+            LocalDateTime now = LocalDateTime.now();
+            this.dosTime = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+            this.dosDate = ((now.getYear() - 1980) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+        }
+
+
+        @Override
+        protected void write(String path, byte[] content) throws IOException {
+            synchronized (this) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+            try {
+                pending.acquire();
+            } catch (InterruptedException e) {
+                throw interrupted();
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        writeEntry(path, content);
+                    } catch (IOException | RuntimeException e) {
+                        synchronized (this) {
+                            if (failure == null) {
+                                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                            }
+                        }
+                    } finally {
+                        pending.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pending.release();
+                throw new IOException("The archive " + file + " is already finished");
+            }
+        }
+
+
+        private void writeEntry(String path, byte[] content) throws IOException {
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length);
+            byte[] compressed = deflate(content);
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+
+            synchronized (this) {
+                if (failure != null) {
+                    return;
+                }
+                ZipEntryRecord record = new ZipEntryRecord(name, crc.getValue(), compressed.length, content.length,
+                        out.getCount());
+                LittleEndian header = new LittleEndian(30 + name.length);
+                header.int32(0x04034b50).int16(20).int16(UTF8_FLAG).int16(Deflater.DEFLATED)
+                        .int16(dosTime).int16(dosDate).int32(record.crc).int32(record.compressedSize)
+                        .int32(record.size).int16(name.length).int16(0).bytes(name);
+                out.write(header.toByteArray());
+                out.write(compressed);
+                records.add(record);
+            }
+        }
+
+
+        private static byte[] deflate(byte[] content) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+
+        @Override
+        protected void complete() throws IOException {
+            // Wait for all the entries
+            try {
+                pending.acquire(threads * 4);
+            } catch (InterruptedException e) {
+                throw interrupted();
+            }
+            writeCentralDirectory();
+        }
+
+
+        private synchronized void writeCentralDirectory() throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+
+            // Central directory
+            long directoryOffset = out.getCount();
+            for (ZipEntryRecord record : records) {
+                boolean zip64 = record.offset >= ZIP64_LIMIT;
+                LittleEndian header = new LittleEndian(46 + record.name.length + (zip64 ? 12 : 0));
+                header.int32(0x02014b50).int16(zip64 ? 45 : 20).int16(zip64 ? 45 : 20).int16(UTF8_FLAG)
+                        .int16(Deflater.DEFLATED).int16(dosTime).int16(dosDate).int32(record.crc)
+                        .int32(record.compressedSize).int32(record.size).int16(record.name.length)
+                        .int16(zip64 ? 12 : 0).int16(0).int16(0).int16(0).int32(0)
+                        .int32(zip64 ? ZIP64_LIMIT : record.offset).bytes(record.name);
+                if (zip64) {
+                    header.int16(0x0001).int16(8).int64(record.offset);
+                }
+                out.write(header.toByteArray());
+            }
+            long directoryEnd = out.getCount();
+            long directorySize = directoryEnd - directoryOffset;
+
+            LittleEndian end = new LittleEndian(98);
+            if (records.size() >= ZIP64_ENTRIES || directoryOffset >= ZIP64_LIMIT || directorySize >= ZIP64_LIMIT) {
+                end.int32(0x06064b50).int64(44).int16(45).int16(45).int32(0).int32(0)
+                        .int64(records.size()).int64(records.size()).int64(directorySize).int64(directoryOffset);
+                end.int32(0x07064b50).int32(0).int64(directoryEnd).int32(1);
+            }
+            end.int32(0x06054b50).int16(0).int16(0)
+                    .int16(Math.min(records.size(), ZIP64_ENTRIES)).int16(Math.min(records.size(), ZIP64_ENTRIES))
+                    .int32(Math.min(directorySize, ZIP64_LIMIT)).int32(Math.min(directoryOffset, ZIP64_LIMIT))
+                    .int16(0);
+            out.write(end.toByteArray());
+        }
+    }
+
+
+    private static class ZipEntryRecord {
+
+        private final byte[] name;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+
+
+        private ZipEntryRecord(byte[] name, long crc, long compressedSize, long size, long offset) {
+            this.name = name;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+    }
+
+
+    /**
+     * Writes a tar.gz archive. The entries are appended to a block of the tar stream, and every full block
+     * is compressed as a task of the pool into a gzip member. The members are written in the order of the blocks.
+     */
+    static class TarGzWriter extends ArchiveWriter {
+
+        static final int BLOCK_SIZE = 1024 * 1024;
+
+        private static final int RECORD_SIZE = 512;
+
+        private final Deque<Future<byte[]>> blocks = new ArrayDeque<>();
+        private final long mtime = System.currentTimeMillis() / 1000;
+        private ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + RECORD_SIZE);
+
+
+        TarGzWriter(File file, int threads) throws IOException {
+            super(file, threads);
+        }
+
+
+        @Override
+        protected synchronized void write(String path, byte[] content) throws IOException {
+            byte[] name = path.getBytes(StandardCharsets.UTF_8);
+            if (name.length > 100 || name.length != path.length()) {
+                // A long or non-ASCII path is given in a PAX extended header
+                byte[] record = paxRecord("path", path);
+                writeRecord(header("PaxHeaders/" + Math.abs(path.hashCode()), record.length, 'x'), record);
+            }
+            writeRecord(header(path, content.length, '0'), content);
+        }
+
+
+        private void writeRecord(byte[] header, byte[] content) throws IOException {
+            block.write(header);
+            block.write(content);
+            int padding = (RECORD_SIZE - content.length % RECORD_SIZE) % RECORD_SIZE;
+            block.write(new byte[padding]);
+            if (block.size() >= BLOCK_SIZE) {
+                submitBlock();
+            }
+        }
+
+
+        private void submitBlock() throws IOException {
+            byte[] data = block.toByteArray();
+            block = new ByteArrayOutputStream(BLOCK_SIZE + RECORD_SIZE);
+            blocks.add(executor.submit(() -> gzip(data)));
+
+            // Write the compressed blocks in order, keeping at most two blocks per thread in memory
+            while (!blocks.isEmpty() && (blocks.peek().isDone() || blocks.size() > threads * 2)) {
+                writeBlock(blocks.poll());
+            }
+        }
+
+
+        private void writeBlock(Future<byte[]> compressed) throws IOException {
+            try {
+                out.write(compressed.get());
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } catch (InterruptedException e) {
+                throw interrupted();
+            }
+        }
+
+
+        private static byte[] gzip(byte[] data) throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 8192)) {
+                gzip.write(data);
+            }
+            return compressed.toByteArray();
+        }
+
+
+        @Override
+        protected synchronized void complete() throws IOException {
+            // The end of the archive: two empty records
+            block.write(new byte[RECORD_SIZE * 2]);
+            submitBlock();
+            while (!blocks.isEmpty()) {
+                writeBlock(blocks.poll());
+            }
+        }
+
+
+        private byte[] header(String name, long size, char type) {
+            byte[] header = new byte[RECORD_SIZE];
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+            octal(header, 100, 8, 0644);
+            octal(header, 108, 8, 0);
+            octal(header, 116, 8, 0);
+            octal(header, 124, 12, size);
+            octal(header, 136, 12, mtime);
+            header[156] = (byte) type;
+            System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+
+            // The checksum is calculated with the checksum field filled with spaces
+            for (int i = 148; i < 156; i++) {
+                header[i] = ' ';
+            }
+            long checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xFF;
+            }
+            octal(header, 148, 7, checksum);
+            return header;
+        }
+
+
+        private static void octal(byte[] header, int offset, int length, long value) {
+            String digits = Long.toOctalString(value);
+            int width = length - 1;
+            for (int i = 0; i < width; i++) {
+                int j = digits.length() - width + i;
+                header[offset + i] = (byte) (j < 0 ? '0' : digits.charAt(j));
+            }
+            header[offset + width] = 0;
+        }
+
+
+        /**
+         * A PAX record: '<length> <key>=<value>\n', where the length includes its own digits
+         */
+        static byte[] paxRecord(String key, String value) {
+            int length = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+            int digits = String.valueOf(length).length();
+            if (String.valueOf(length + digits).length() > digits) {
+                digits++;
+            }
+            return ((length + digits) + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /**
+     * Counts the bytes written, for the offsets of the zip entries
+     */
+    static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+
+        long getCount() {
+            return count;
+        }
+    }
+
+
+    /**
+     * Builds the little-endian records of the zip format
+     */
+    private static class LittleEndian {
+
+        private final ByteArrayOutputStream bytes;
+
+
+        private LittleEndian(int size) {
+            this.bytes = new ByteArrayOutputStream(size);
+        }
+
+
+        private LittleEndian int16(long value) {
+            bytes.write((int) value);
+            bytes.write((int) (value >> 8));
+            return this;
+        }
+
+
+        private LittleEndian int32(long value) {
+            return int16(value).int16(value >> 16);
+        }
+
+
+        private LittleEndian int64(long value) {
+            return int32(value).int32(value >> 32);
+        }
+
+
+        private LittleEndian bytes(byte[] value) {
+            bytes.write(value, 0, value.length);
+            return this;
+        }
+
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+}
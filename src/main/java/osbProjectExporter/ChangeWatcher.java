@@ -0,0 +1,222 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+
+/**
+ * Keeps an export directory in sync with the server by polling: every poll reads a cheap fingerprint of every
+ * watched resource from its metadata, exports only the resources whose fingerprint changed since the last
+ * successful poll, with ConfigMBean.export without dependencies, and deletes the files of the removed resources.
+ * A poll costs the enumeration and the metadata of the resources, and an export of the changed resources only.
+ * <p>
+ * The fingerprints of the last successful poll are kept in exportDir/{@value #FILE_NAME} in the format
+ * of {@link ExportManifest}, by the jar entry name of the resource, and the manifest of the export directory
+ * is updated with the written files, so that a later export with '--incremental' continues from the directory.
+ * The first poll of a directory without fingerprints exports all the watched resources.
+ */
+public class ChangeWatcher {
+
+    public static final String FILE_NAME = ".osbexport-fingerprints";
+    public static final int DEFAULT_INTERVAL = 60;
+
+    private final OsbConnection connection;
+    private final List<String> projects;
+    private final File exportDir;
+    private final RefFilter filter;
+    private final int shardSize;
+    private final boolean canonicalize;
+    private ExportManifest fingerprints;
+
+
+    /**
+     * @param connection   OsbConnection The connection to poll over
+     * @param projects     List<String> The names of the watched projects or null to watch all the projects
+     * @param exportDir    File The export directory
+     * @param filter       RefFilter The filter of the watched resources
+     * @param shardSize    int The maximum number of resources exported in one call
+     * @param canonicalize boolean True to format the XML resources with {@link XmlCanonicalizer}
+     */
+    public ChangeWatcher(OsbConnection connection, List<String> projects, File exportDir, RefFilter filter,
+                         int shardSize, boolean canonicalize) throws IOException {
+        this.connection = connection;
+        this.projects = projects;
+        this.exportDir = exportDir;
+        this.filter = filter;
+        this.shardSize = shardSize;
+        this.canonicalize = canonicalize;
+        this.fingerprints = ExportManifest.read(new File(exportDir, FILE_NAME));
+    }
+
+
+    /**
+     * Watch the projects given in the arguments, or the domain if the option '--domain' is given,
+     * over one connection until the process is stopped
+     *
+     * @param args Map<String, String> The arguments
+     * @return boolean False if the connection could not be opened
+     */
+    public static boolean watch(Map<String, String> args) {
+        int interval = Integer.parseInt(args.getOrDefault("watch", String.valueOf(DEFAULT_INTERVAL)));
+        List<String> projects = args.containsKey("domain") ? null : Arrays.asList(args.get("projects").split(","));
+        System.out.println("Connecting to the server");
+        try (OsbConnection connection = OsbConnection.open(args.get("url"), args.get("userName"),
+                args.get("password"), OsbConnection.DOMAIN_RUNTIME)) {
+            ChangeWatcher watcher = new ChangeWatcher(connection, projects, new File(args.get("exportDir")),
+                    RefFilter.fromArgs(args),
+                    Integer.parseInt(args.getOrDefault("shard-size", String.valueOf(DomainExporter.DEFAULT_SHARD_SIZE))),
+                    Boolean.parseBoolean(args.get("canonicalize")));
+            System.out.println("Watching " + (projects == null ? "the domain" : String.join(", ", projects)) +
+                    " every " + interval + " seconds, exporting the changes to " + args.get("exportDir"));
+            watcher.run(interval * 1000L);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed to watch the changes. " + e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * Poll at the given interval until the thread is interrupted. A failed poll is reported and repeated
+     * at the next interval, as the fingerprints are kept from the last successful poll.
+     *
+     * @param intervalMillis long The interval between the end of a poll and the start of the next one
+     */
+    public void run(long intervalMillis) throws InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                poll();
+            } catch (IOException e) {
+                System.out.println("[ERROR] Failed writing the changes to " + exportDir + ". " + e);
+            } catch (Exception e) {
+                System.out.println("[ERROR] Failed polling the changes. " + e.getMessage());
+            }
+            Thread.sleep(intervalMillis);
+        }
+    }
+
+
+    /**
+     * Export the resources changed since the last successful poll to the export directory
+     * and delete the files of the removed resources
+     *
+     * @return String The summary of the poll
+     */
+    public String poll() throws Exception {
+        ExportMetrics.reset();
+        long start = System.currentTimeMillis();
+
+        // The fingerprints of the watched resources by their jar entry name
+        Set<Ref> refs = new TreeSet<>();
+        for (String project : projects != null ? projects : getProjectNames()) {
+            for (Ref ref : filter.select(connection.getResourceRefs(project))) {
+                if (ref.isResourceRef()) {
+                    refs.add(ref);
+                }
+            }
+        }
+        Map<Ref, String> currentFingerprints = refs.isEmpty()
+                ? Collections.<Ref, String>emptyMap()
+                : connection.getFingerprints(refs);
+        ExportManifest nextFingerprints = new ExportManifest();
+        List<Ref> changed = new ArrayList<>();
+        for (Ref ref : refs) {
+            String entryName = getEntryName(ref);
+            String fingerprint = currentFingerprints.get(ref);
+            // A resource without a digest cannot be compared, so it is exported on every poll
+            if (fingerprint == null || !fingerprint.equals(fingerprints.getHash(entryName))) {
+                changed.add(ref);
+            }
+            if (fingerprint != null) {
+                nextFingerprints.put(entryName, fingerprint);
+            }
+        }
+        Set<String> removed = new TreeSet<>(fingerprints.getPaths());
+        for (Ref ref : refs) {
+            removed.remove(getEntryName(ref));
+        }
+
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return "No changes in " + refs.size() + " resources";
+        }
+
+        // Apply the changes
+        ExportManifest manifest = ExportManifest.load(exportDir);
+        ResourceSink sink = (path, content) -> {
+            FileUtil.writeFile(new File(exportDir, path), content);
+            synchronized (manifest) {
+                manifest.put(path, ExportManifest.hash(content));
+            }
+        };
+        for (int i = 0; i < changed.size(); i += shardSize) {
+            // Copied, as a sublist cannot be sent over JMX
+            List<Ref> shard = new ArrayList<>(changed.subList(i, Math.min(i + shardSize, changed.size())));
+            FileUtil.unpackAndProcessJar(connection.export(shard, false), sink, canonicalize);
+        }
+        for (String entryName : removed) {
+            String path = getPath(entryName);
+            File file = new File(exportDir, path);
+            Files.deleteIfExists(file.toPath());
+            deleteEmptyParents(file);
+            manifest.remove(path);
+        }
+        manifest.save(exportDir);
+        nextFingerprints.write(new File(exportDir, FILE_NAME));
+        fingerprints = nextFingerprints;
+
+        String summary = "Exported " + changed.size() + " changed and deleted " + removed.size() +
+                " removed of " + refs.size() + " resources to " + exportDir + " in " +
+                (System.currentTimeMillis() - start) + " ms";
+        System.out.println(summary);
+        return summary;
+    }
+
+
+    private List<String> getProjectNames() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (Ref project : connection.getProjects()) {
+            names.add(project.getProjectName());
+        }
+        return names;
+    }
+
+
+    /**
+     * @param ref Ref The resource
+     * @return String The name of the resource's entry in an exported jar, e.g. 'Project/XSD/Schema.XMLSchema'
+     */
+    static String getEntryName(Ref ref) {
+        return ref.getFullName() + "." + ref.getTypeId();
+    }
+
+
+    /**
+     * @param entryName String The name of the resource's entry in an exported jar
+     * @return String The path of the processed resource in the export directory, e.g. 'Project/XSD/Schema.xsd'
+     */
+    static String getPath(String entryName) {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        ResourceType type = ResourceTypes.get(fileName, FileUtil.getFileExtension(new File(fileName)));
+        return type == null ? entryName : type.rename(entryName);
+    }
+
+
+    private void deleteEmptyParents(File file) {
+        File parent = file.getParentFile();
+        while (parent != null && !parent.equals(exportDir)) {
+            String[] children = parent.list();
+            if (children == null || children.length > 0 || !parent.delete()) {
+                return;
+            }
+            parent = parent.getParentFile();
+        }
+    }
+}
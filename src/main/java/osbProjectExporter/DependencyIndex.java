@@ -0,0 +1,347 @@
+package osbProjectExporter;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+
+/**
+ * The index of the references between the exported resources, kept next to the export in the file
+ * {@value #FILE_NAME}. The resources are numbered and the references are stored as adjacency arrays in both
+ * directions, so the dependencies and the dependents of a resource are found without scanning the export.
+ * A resource is identified by its path relative to the export directory. A referenced resource that is not
+ * exported is kept under the path of the reference. A path without the file extension that several resources share,
+ * e.g. of Order.xsd and Order.wsdl, is ambiguous: a reference to it is kept under the path of the reference too,
+ * rather than resolved to either of the resources.
+ */
+public class DependencyIndex {
+
+    public static final String FILE_NAME = ".osbexport-index";
+
+    private static final int MAGIC = 0x4F534249; // OSBI
+    private static final int VERSION = 1;
+
+    private final String[] resources;
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+    private final int[] dependentOffsets;
+    private final int[] dependents;
+    private final Set<String> ambiguous = new TreeSet<>();
+    private final Map<String, Integer> ids;
+
+
+    private DependencyIndex(String[] resources, int[] dependencyOffsets, int[] dependencies) {
+        this.resources = resources;
+        this.dependencyOffsets = dependencyOffsets;
+        this.dependencies = dependencies;
+        ids = mapIds(Arrays.asList(resources), ambiguous);
+
+        // Invert the dependencies
+        dependentOffsets = new int[resources.length + 1];
+        for (int dependency : dependencies) {
+            dependentOffsets[dependency + 1]++;
+        }
+        for (int i = 0; i < resources.length; i++) {
+            dependentOffsets[i + 1] += dependentOffsets[i];
+        }
+        dependents = new int[dependencies.length];
+        int[] next = Arrays.copyOf(dependentOffsets, resources.length);
+        for (int i = 0; i < resources.length; i++) {
+            for (int j = dependencyOffsets[i]; j < dependencyOffsets[i + 1]; j++) {
+                dependents[next[dependencies[j]]++] = i;
+            }
+        }
+    }
+
+
+    /**
+     * Load the index from the given export directory
+     *
+     * @param dir File The export directory
+     * @return DependencyIndex The index
+     */
+    public static DependencyIndex load(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!file.isFile()) {
+            throw new FileNotFoundException("[ERROR] No dependency index found in " + dir +
+                    ". Export with the option '--index' first.");
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("[ERROR] " + file + " is not a dependency index");
+            }
+            String[] resources = new String[in.readInt()];
+            for (int i = 0; i < resources.length; i++) {
+                resources[i] = in.readUTF();
+            }
+            int[] offsets = new int[resources.length + 1];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readInt();
+            }
+            int[] dependencies = new int[offsets[resources.length]];
+            for (int i = 0; i < dependencies.length; i++) {
+                dependencies[i] = in.readInt();
+            }
+            return new DependencyIndex(resources, offsets, dependencies);
+        }
+    }
+
+
+    /**
+     * Save the index to the given export directory
+     *
+     * @param dir File The export directory
+     */
+    public void save(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        File tmpFile = new File(dir, FILE_NAME + ".tmp");
+        // An export to an archive does not create the export directory
+        Files.createDirectories(dir.toPath());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(resources.length);
+            for (String resource : resources) {
+                out.writeUTF(resource);
+            }
+            for (int offset : dependencyOffsets) {
+                out.writeInt(offset);
+            }
+            for (int dependency : dependencies) {
+                out.writeInt(dependency);
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * @return int The number of resources in the index
+     */
+    public int size() {
+        return resources.length;
+    }
+
+
+    /**
+     * @return int The number of references in the index
+     */
+    public int getReferenceCount() {
+        return dependencies.length;
+    }
+
+
+    /**
+     * @return Set<String> The paths without the file extension that several resources share, e.g. of Order.xsd
+     * and Order.wsdl
+     */
+    public Set<String> getAmbiguous() {
+        return Collections.unmodifiableSet(ambiguous);
+    }
+
+
+    /**
+     * Get the resources the given resource refers to
+     *
+     * @param resource   String The path of the resource, with or without the file extension
+     * @param transitive boolean True to get the dependencies of the dependencies too
+     * @return List<String> The paths of the dependencies
+     */
+    public List<String> getDependencies(String resource, boolean transitive) {
+        return query(resource, transitive, dependencyOffsets, dependencies);
+    }
+
+
+    /**
+     * Get the resources referring to the given resource, i.e. the resources that may break if it changes
+     *
+     * @param resource   String The path of the resource, with or without the file extension
+     * @param transitive boolean True to get the dependents of the dependents too
+     * @return List<String> The paths of the dependents
+     */
+    public List<String> getDependents(String resource, boolean transitive) {
+        return query(resource, transitive, dependentOffsets, dependents);
+    }
+
+
+    /**
+     * @param resource String The path of the resource, with or without the file extension
+     * @return boolean True if the resource is in the index
+     */
+    public boolean contains(String resource) {
+        return ids.containsKey(normalize(resource));
+    }
+
+
+    private List<String> query(String resource, boolean transitive, int[] offsets, int[] edges) {
+        Integer id = ids.get(normalize(resource));
+        if (id == null && ambiguous.contains(normalize(resource))) {
+            throw new IllegalArgumentException("[ERROR] The resource " + resource + " is ambiguous. " +
+                    "Give it with the file extension, e.g. " + resource + ".xsd");
+        }
+        if (id == null) {
+            throw new IllegalArgumentException("[ERROR] The resource " + resource + " is not found in the index");
+        }
+
+        BitSet visited = new BitSet(resources.length);
+        visited.set(id);
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(id);
+        List<String> result = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+                int next = edges[i];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    result.add(resources[next]);
+                    if (transitive) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+
+    private static String normalize(String resource) {
+        return resource.replace('\\', '/');
+    }
+
+
+    /**
+     * Map the paths of the given resources, and their paths without the file extension unless they are ambiguous,
+     * to the numbers of the resources
+     *
+     * @param resources List<String> The paths of the resources
+     * @param ambiguous Set<String> The set to add the ambiguous paths without the file extension to
+     * @return Map<String, Integer> The numbers of the resources by their paths
+     */
+    private static Map<String, Integer> mapIds(List<String> resources, Set<String> ambiguous) {
+        Map<String, Integer> ids = new HashMap<>();
+        Map<String, Integer> withoutExtension = new HashMap<>();
+        for (int i = 0; i < resources.size(); i++) {
+            String resource = resources.get(i);
+            ids.put(resource, i);
+            String base = withoutExtension(resource);
+            if (!base.equals(resource) && withoutExtension.putIfAbsent(base, i) != null) {
+                ambiguous.add(base);
+            }
+        }
+        for (Map.Entry<String, Integer> entry : withoutExtension.entrySet()) {
+            if (!ambiguous.contains(entry.getKey())) {
+                ids.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        return ids;
+    }
+
+
+    private static String withoutExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(0, dot) : path;
+    }
+
+
+    /**
+     * Collects the references of the resources while they are processed. The resources may be added concurrently.
+     */
+    public static class Builder {
+
+        private final Map<String, Set<String>> references = new TreeMap<>();
+
+
+        /**
+         * Extract and add the references of the given resource
+         *
+         * @param path    String The path of the resource relative to the export directory, with '/' as separator
+         * @param content byte[] The processed content of the resource
+         */
+        public void add(String path, byte[] content) {
+            add(path, ReferenceExtractor.extract(path, content));
+        }
+
+
+        /**
+         * Add the given references of the given resource
+         *
+         * @param path       String The path of the resource relative to the export directory, with '/' as separator
+         * @param references Set<String> The paths of the referenced resources
+         */
+        public synchronized void add(String path, Set<String> references) {
+            this.references.put(path, references);
+        }
+
+
+        /**
+         * Wrap the given sink, so that the references of every resource are added before it is passed on
+         *
+         * @param sink ResourceSink The sink to wrap
+         * @return ResourceSink The wrapping sink
+         */
+        public ResourceSink wrap(ResourceSink sink) {
+            return (path, content) -> {
+                add(path, content);
+                sink.accept(path, content);
+            };
+        }
+
+
+        /**
+         * Build the index. A reference is resolved to an exported resource by its path with or without
+         * the file extension, unless the path without the file extension is ambiguous.
+         *
+         * @return DependencyIndex The index
+         */
+        public synchronized DependencyIndex build() {
+            List<String> resources = new ArrayList<>(references.keySet());
+            Map<String, Integer> ids = mapIds(resources, new HashSet<>());
+
+            // Resolve the references, adding the resources that are not exported
+            List<int[]> adjacency = new ArrayList<>();
+            int edgeCount = 0;
+            for (int i = 0; i < references.size(); i++) {
+                Set<Integer> targets = new TreeSet<>();
+                for (String reference : references.get(resources.get(i))) {
+                    Integer target = ids.get(reference);
+                    if (target == null) {
+                        target = ids.get(withoutExtension(reference));
+                    }
+                    if (target == null) {
+                        target = resources.size();
+                        resources.add(reference);
+                        ids.put(reference, target);
+                    }
+                    if (target != i) {
+                        targets.add(target);
+                    }
+                }
+                int[] edges = new int[targets.size()];
+                int j = 0;
+                for (int target : targets) {
+                    edges[j++] = target;
+                }
+                adjacency.add(edges);
+                edgeCount += edges.length;
+            }
+
+            int[] offsets = new int[resources.size() + 1];
+            int[] dependencies = new int[edgeCount];
+            int k = 0;
+            for (int i = 0; i < resources.size(); i++) {
+                offsets[i] = k;
+                if (i < adjacency.size()) {
+                    for (int target : adjacency.get(i)) {
+                        dependencies[k++] = target;
+                    }
+                }
+            }
+            offsets[resources.size()] = k;
+            return new DependencyIndex(resources.toArray(new String[0]), offsets, dependencies);
+        }
+    }
+}
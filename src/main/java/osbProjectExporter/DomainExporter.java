@@ -0,0 +1,267 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Export of the whole domain. The resources of all the projects are split into shards of a bounded size,
+ * which are exported concurrently over a pool of connections, each with a call to ConfigMBean.export without
+ * dependencies, and merged into one export tree. Every call stays small, so it does not run into the JMX request
+ * timeout, a failed shard is retried and does not fail the other shards, and the wall time scales with the number
+ * of connections rather than with the size of the domain.
+ */
+public class DomainExporter {
+
+    public static final int DEFAULT_CONNECTIONS = 4;
+    public static final int DEFAULT_SHARD_SIZE = 500;
+
+    private static final int MAX_ATTEMPTS = 2;
+
+
+    /**
+     * Export all the projects of the domain to the export directory
+     *
+     * @param args Map<String, String> The arguments
+     * @return boolean True if all the shards were exported successfully
+     */
+    public static boolean exportDomain(Map<String, String> args) {
+        ExportMetrics.reset();
+        int connections = Integer.parseInt(args.getOrDefault("connections", String.valueOf(DEFAULT_CONNECTIONS)));
+        int shardSize = Integer.parseInt(args.getOrDefault("shard-size", String.valueOf(DEFAULT_SHARD_SIZE)));
+        String exportDir = args.get("exportDir");
+
+        BlockingQueue<OsbConnection> pool = new LinkedBlockingQueue<>();
+        List<OsbConnection> opened = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        ExportWriter writer = null;
+        try {
+            // Connect
+            System.out.println("Connecting to the server with " + connections + " connections");
+            List<Future<OsbConnection>> connecting = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                connecting.add(executor.submit(() -> {
+                    OsbConnection connection = OsbConnection.open(args.get("url"), args.get("userName"),
+                            args.get("password"), OsbConnection.DOMAIN_RUNTIME);
+                    opened.add(connection);
+                    return connection;
+                }));
+            }
+            for (Future<OsbConnection> future : connecting) {
+                pool.add(future.get());
+            }
+
+            // Enumerate the resources of every project
+            OsbConnection connection = pool.take();
+            Set<Ref> projects;
+            try {
+                projects = connection.getProjects();
+            } finally {
+                pool.add(connection);
+            }
+            System.out.println("Getting the resources of " + projects.size() + " projects");
+            List<Future<Set<Ref>>> enumerating = new ArrayList<>();
+            for (Ref project : projects) {
+                enumerating.add(executor.submit(() -> withConnection(pool,
+                        c -> c.getResourceRefs(project.getProjectName()))));
+            }
+            SortedSet<Ref> refs = new TreeSet<>(Comparator.comparing(Ref::getFullName).thenComparing(Ref::getTypeId));
+            for (Future<Set<Ref>> future : enumerating) {
+                refs.addAll(future.get());
+            }
+            RefFilter filter = RefFilter.fromArgs(args);
+            if (filter.isActive()) {
+                Set<Ref> selected = filter.select(refs);
+                System.out.println("Selected " + selected.size() + " of " + refs.size() + " resources");
+                refs.retainAll(filter.isClosure() ? resolveClosure(pool, executor, selected) : selected);
+            }
+            List<List<Ref>> shards = shard(refs, shardSize);
+            System.out.println("Exporting " + refs.size() + " resources of " + projects.size() + " projects in " +
+                    shards.size() + " shards to " + args.getOrDefault("archive", exportDir));
+
+            // Export and merge the shards
+            writer = OsbProjectExporter.createWriter(args, "domain");
+            DependencyIndex.Builder index = Boolean.parseBoolean(args.get("index")) ? new DependencyIndex.Builder() : null;
+            SearchIndex.Builder search = OsbProjectExporter.createSearchIndex(args);
+            ResourceSink sink = writer != null
+                    ? writer
+                    : (path, content) -> FileUtil.writeFile(new File(exportDir, path), content);
+            sink = OsbProjectExporter.wrapIndexes(sink, index, search);
+            ResourceSink shardSink = sink;
+            boolean canonicalize = Boolean.parseBoolean(args.get("canonicalize"));
+            List<Future<?>> exporting = new ArrayList<>();
+            for (List<Ref> shard : shards) {
+                exporting.add(executor.submit(() -> {
+                    exportShard(pool, shard, shardSink, canonicalize);
+                    return null;
+                }));
+            }
+
+            int failed = 0;
+            for (int i = 0; i < exporting.size(); i++) {
+                try {
+                    exporting.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    List<Ref> shard = shards.get(i);
+                    System.out.println("[ERROR] Failed exporting the shard " + (i + 1) + " (" +
+                            shard.get(0).getFullName() + " .. " + shard.get(shard.size() - 1).getFullName() + "). " +
+                            e.getCause().getMessage());
+                }
+            }
+
+            if (failed > 0) {
+                // The archive and the snapshot are only completed by finish, the files are written as they come
+                System.out.println("[ERROR] Failed exporting " + failed + " of " + shards.size() + " shards. " +
+                        (writer == null || writer instanceof IncrementalWriter
+                                ? exportDir + " has the files of the exported shards and of the previous export"
+                                : "The previous export in " + args.getOrDefault("archive", exportDir) + " is kept"));
+                return false;
+            }
+            if (writer != null) {
+                writer.finish();
+            }
+            OsbProjectExporter.saveIndex(index, exportDir);
+            OsbProjectExporter.saveSearchIndex(search, exportDir);
+            System.out.println("Exported " + refs.size() + " resources of " + projects.size() + " projects to " +
+                    args.getOrDefault("archive", exportDir));
+            return true;
+        } catch (ExecutionException e) {
+            System.out.println("[ERROR] Failed to export the domain. " + e.getCause().getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[ERROR] Interrupted while exporting the domain");
+            return false;
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed to export the domain. " + e.getMessage());
+            return false;
+        } finally {
+            executor.shutdownNow();
+            if (writer != null) {
+                writer.abort();
+            }
+            for (OsbConnection connection : opened) {
+                try {
+                    connection.close();
+                } catch (IOException e) {
+                    System.out.println("Failed to close the connection. " + e);
+                }
+            }
+            OsbProjectExporter.writeReport(args);
+        }
+    }
+
+
+    /**
+     * Resolve the dependency closure of the given resources: the resources and their transitive dependencies.
+     * The dependencies of every level are got concurrently over the pool of connections.
+     *
+     * @param pool     BlockingQueue<OsbConnection> The pool of connections
+     * @param executor ExecutorService The executor to get the dependencies with
+     * @param refs     Set<Ref> The resources
+     * @return Set<Ref> The resources and their dependencies
+     */
+    static Set<Ref> resolveClosure(BlockingQueue<OsbConnection> pool, ExecutorService executor, Set<Ref> refs)
+            throws InterruptedException, ExecutionException {
+        Set<Ref> closure = new HashSet<>(refs);
+        Collection<Ref> level = refs;
+        while (!level.isEmpty()) {
+            List<Future<Set<Ref>>> resolving = new ArrayList<>();
+            for (Ref ref : level) {
+                resolving.add(executor.submit(() -> withConnection(pool, c -> c.getDependencies(ref))));
+            }
+            List<Ref> next = new ArrayList<>();
+            for (Future<Set<Ref>> future : resolving) {
+                for (Ref dependency : future.get()) {
+                    if (closure.add(dependency)) {
+                        next.add(dependency);
+                    }
+                }
+            }
+            level = next;
+        }
+        System.out.println("Resolved " + (closure.size() - refs.size()) + " dependencies of " + refs.size() +
+                " resources");
+        return closure;
+    }
+
+
+    /**
+     * Split the given resources into shards of the given size in the order of the resources
+     *
+     * @param refs      Collection<Ref> The resources
+     * @param shardSize int The maximum number of resources in a shard
+     * @return List<List<Ref>> The shards
+     */
+    static List<List<Ref>> shard(Collection<Ref> refs, int shardSize) {
+        List<List<Ref>> shards = new ArrayList<>();
+        List<Ref> shard = new ArrayList<>(Math.min(shardSize, refs.size()));
+        for (Ref ref : refs) {
+            if (shard.size() == shardSize) {
+                shards.add(shard);
+                shard = new ArrayList<>(shardSize);
+            }
+            shard.add(ref);
+        }
+        if (!shard.isEmpty()) {
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+
+    /**
+     * Export the given shard over a connection from the pool and pass its resources to the given sink.
+     * The export is retried once if it fails.
+     *
+     * @param pool         BlockingQueue<OsbConnection> The pool of connections
+     * @param shard        List<Ref> The resources to export
+     * @param sink         ResourceSink The sink to pass the processed resources to
+     * @param canonicalize boolean True to format the XML resources with {@link XmlCanonicalizer}
+     */
+    private static void exportShard(BlockingQueue<OsbConnection> pool, List<Ref> shard, ResourceSink sink,
+                                    boolean canonicalize) throws Exception {
+        byte[] jarBinary = null;
+        for (int attempt = 1; jarBinary == null; attempt++) {
+            try {
+                jarBinary = withConnection(pool, connection -> connection.export(shard, false));
+            } catch (Exception e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                System.out.println("Retrying the export of " + shard.size() + " resources starting with " +
+                        shard.get(0).getFullName() + ". " + e);
+            }
+        }
+        FileUtil.unpackAndProcessJar(jarBinary, sink, canonicalize);
+    }
+
+
+    /**
+     * Call the given function with a connection taken from the pool and return the connection to the pool
+     *
+     * @param pool     BlockingQueue<OsbConnection> The pool of connections
+     * @param function ConnectionFunction The function to call
+     * @return T The result of the function
+     */
+    private static <T> T withConnection(BlockingQueue<OsbConnection> pool, ConnectionFunction<T> function)
+            throws Exception {
+        OsbConnection connection = pool.take();
+        try {
+            return function.apply(connection);
+        } finally {
+            pool.add(connection);
+        }
+    }
+
+
+    private interface ConnectionFunction<T> {
+
+        T apply(OsbConnection connection) throws Exception;
+    }
+}
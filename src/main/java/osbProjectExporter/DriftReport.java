@@ -0,0 +1,231 @@
+package osbProjectExporter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * The configuration drift of the same projects between several environments, e.g. dev, test, preprod and prod.
+ * The projects are exported from all the environments concurrently, one connection per environment, and processed
+ * in memory: only the SHA-256 hash of every processed resource is kept, so no export tree is written and the check
+ * takes as long as the slowest environment. The resources are then compared by their hashes.
+ * <p>
+ * The environments are configured as for the daemon:
+ * <pre>
+ * environment.dev.url=t3://dev:7001
+ * environment.dev.userName=weblogic
+ * environment.dev.password=welcome1
+ * </pre>
+ */
+public class DriftReport {
+
+    private static final int SHORT_HASH = 8;
+
+    private final List<String> environments;
+    private final SortedMap<String, Map<String, String>> drifts = new TreeMap<>();
+    private int resources;
+    private int missing;
+    private int differing;
+
+
+    private DriftReport(List<String> environments) {
+        this.environments = environments;
+    }
+
+
+    /**
+     * Compare the manifests of the given environments
+     *
+     * @param manifests Map<String, ExportManifest> The manifest of the processed resources by environment,
+     *                  in the order of the report
+     * @return DriftReport The report
+     */
+    public static DriftReport compare(Map<String, ExportManifest> manifests) {
+        DriftReport report = new DriftReport(new ArrayList<>(manifests.keySet()));
+        SortedSet<String> paths = new TreeSet<>();
+        for (ExportManifest manifest : manifests.values()) {
+            paths.addAll(manifest.getPaths());
+        }
+
+        for (String path : paths) {
+            Map<String, String> hashes = new LinkedHashMap<>();
+            for (Map.Entry<String, ExportManifest> manifest : manifests.entrySet()) {
+                hashes.put(manifest.getKey(), manifest.getValue().getHash(path));
+            }
+            Set<String> distinct = new HashSet<>(hashes.values());
+            if (distinct.contains(null)) {
+                report.missing++;
+            } else if (distinct.size() > 1) {
+                report.differing++;
+            } else {
+                continue;
+            }
+            report.drifts.put(path, hashes);
+        }
+        report.resources = paths.size();
+        return report;
+    }
+
+
+    /**
+     * @return boolean True if any resource is missing in an environment or differs between the environments
+     */
+    public boolean hasDrift() {
+        return !drifts.isEmpty();
+    }
+
+
+    /**
+     * @return SortedMap<String, Map<String, String>> The hashes of the drifted resources by environment,
+     * null where the resource is missing, by the path of the resource
+     */
+    public SortedMap<String, Map<String, String>> getDrifts() {
+        return Collections.unmodifiableSortedMap(drifts);
+    }
+
+
+    /**
+     * Format the report: a line per drifted resource with the environments it is only in,
+     * or the short hashes of the resource in every environment
+     *
+     * @return String The report
+     */
+    public String format() {
+        StringBuilder sb = new StringBuilder("Drift between ").append(String.join(", ", environments)).append(": ")
+                .append(resources).append(" resources compared, ").append(missing)
+                .append(" missing in some environments, ").append(differing).append(" differing");
+        for (Map.Entry<String, Map<String, String>> drift : drifts.entrySet()) {
+            List<String> presentIn = new ArrayList<>();
+            StringBuilder hashes = new StringBuilder();
+            for (Map.Entry<String, String> hash : drift.getValue().entrySet()) {
+                if (hash.getValue() != null) {
+                    presentIn.add(hash.getKey());
+                }
+                hashes.append(hashes.length() == 0 ? "" : ", ").append(hash.getKey()).append('=')
+                        .append(hash.getValue() == null ? "-" : hash.getValue().substring(0, SHORT_HASH));
+            }
+            sb.append("\n   ").append(drift.getKey()).append(": ");
+            if (presentIn.size() < drift.getValue().size()) {
+                sb.append("only in ").append(String.join(", ", presentIn));
+                if (new HashSet<>(drift.getValue().values()).size() > 2) {
+                    sb.append(", differing (").append(hashes).append(')');
+                }
+            } else {
+                sb.append("differing (").append(hashes).append(')');
+            }
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * Compare the given projects between the environments of the given configuration:
+     * 'drift configFile projectName [options]'. The options are the filters and '--canonicalize'.
+     *
+     * @param args String[] The arguments of the command
+     * @return boolean True if the projects are the same in all the environments
+     */
+    static boolean run(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        args = OsbProjectExporter.parseOptions(args, options);
+        if (args.length != 3) {
+            System.out.println("[ERROR] Incorrect arguments of the drift command.\n" +
+                    OsbProjectExporter.USAGE);
+            return false;
+        }
+
+        try {
+            DriftReport report = export(ExporterDaemon.loadConfig(args[1]),
+                    OsbProjectExporter.parseProjectNames(args[2]), RefFilter.fromArgs(options),
+                    Boolean.parseBoolean(options.get("canonicalize")));
+            System.out.println(report.format());
+            return !report.hasDrift();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("[ERROR] Failed to compare the environments. " + e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[ERROR] Interrupted while comparing the environments");
+            return false;
+        }
+    }
+
+
+    /**
+     * Export the given projects from all the configured environments concurrently and compare them
+     *
+     * @param config       Properties The configuration with the environments
+     * @param projects     List<String> The project names
+     * @param filter       RefFilter The filter of the resources
+     * @param canonicalize boolean True to format the XML resources with {@link XmlCanonicalizer} before hashing
+     * @return DriftReport The report
+     */
+    public static DriftReport export(Properties config, List<String> projects, RefFilter filter,
+                                     boolean canonicalize) throws IOException, InterruptedException {
+        SortedSet<String> environments = new TreeSet<>();
+        for (String key : config.stringPropertyNames()) {
+            if (key.startsWith("environment.") && key.endsWith(".url")) {
+                environments.add(key.substring("environment.".length(), key.length() - ".url".length()));
+            }
+        }
+        if (environments.size() < 2) {
+            throw new IllegalArgumentException("[ERROR] At least two environments are required. " +
+                    "E.g. environment.dev.url=t3://dev:7001 and environment.prod.url=t3://prod:7001");
+        }
+
+        System.out.println("Exporting " + String.join(", ", projects) + " from " + String.join(", ", environments));
+        ExecutorService executor = Executors.newFixedThreadPool(environments.size());
+        try {
+            Map<String, Future<ExportManifest>> exporting = new LinkedHashMap<>();
+            for (String environment : environments) {
+                exporting.put(environment, executor.submit(() -> exportEnvironment(
+                        config.getProperty("environment." + environment + ".url"),
+                        config.getProperty("environment." + environment + ".userName"),
+                        config.getProperty("environment." + environment + ".password"),
+                        projects, filter, canonicalize)));
+            }
+
+            Map<String, ExportManifest> manifests = new LinkedHashMap<>();
+            List<String> failures = new ArrayList<>();
+            for (Map.Entry<String, Future<ExportManifest>> result : exporting.entrySet()) {
+                try {
+                    manifests.put(result.getKey(), result.getValue().get());
+                } catch (ExecutionException e) {
+                    failures.add(result.getKey() + ": " + e.getCause().getMessage());
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new IOException("Failed exporting from " + String.join("; ", failures));
+            }
+            return compare(manifests);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Export the given projects from one environment and hash the processed resources in memory
+     *
+     * @return ExportManifest The hashes of the processed resources
+     */
+    private static ExportManifest exportEnvironment(String url, String userName, String password,
+                                                    List<String> projects, RefFilter filter,
+                                                    boolean canonicalize) throws Exception {
+        ExportManifest manifest = new ExportManifest();
+        ResourceSink sink = (path, content) -> {
+            String hash = ExportManifest.hash(content);
+            synchronized (manifest) {
+                manifest.put(path, hash);
+            }
+        };
+        try (OsbConnection connection = OsbConnection.open(url, userName, password, OsbConnection.DOMAIN_RUNTIME)) {
+            for (String project : projects) {
+                FileUtil.unpackAndProcessJar(OsbUtils.exportProjectJar(connection, project, filter), sink, canonicalize);
+            }
+        }
+        System.out.println("Exported " + manifest.getPaths().size() + " resources from " + url);
+        return manifest;
+    }
+}
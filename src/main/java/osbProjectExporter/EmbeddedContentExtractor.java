@@ -0,0 +1,154 @@
+package osbProjectExporter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+
+/**
+ * Streaming extractor of the content embedded into OSB resources, e.g. the CDATA of an XSD, WSDL or XSLT entry
+ * or the java-script-content of a javaScriptEntry.
+ * The resource is read with StAX only up to the end of the embedded content, which is written in chunks,
+ * so memory use does not depend on the size of the resource.
+ */
+public class EmbeddedContentExtractor {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        if (factory.isPropertySupported("http://java.sun.com/xml/stream/properties/report-cdata-event")) {
+            factory.setProperty("http://java.sun.com/xml/stream/properties/report-cdata-event", true);
+        }
+        XML_INPUT_FACTORY = factory;
+    }
+
+
+    /**
+     * Opens the channel to write the embedded content to. It is called only if the resource has embedded content.
+     */
+    public interface ChannelOpener {
+
+        WritableByteChannel open() throws IOException;
+    }
+
+
+    /**
+     * Extract the embedded content from the given resource.
+     * If the first node of the first child element of the root is CDATA, the content of the CDATA is extracted.
+     * If the root is a javaScriptEntry, the text of the first child element is extracted.
+     *
+     * @param in     InputStream The resource to extract the content from
+     * @param opener ChannelOpener Opens the channel to write the content to as UTF-8
+     * @return boolean True if the content was extracted and written, false if the resource has no embedded content
+     * @throws XMLStreamException if the resource is not a well-formed XML
+     */
+    public static boolean extract(InputStream in, ChannelOpener opener) throws XMLStreamException, IOException {
+        return extract(in, opener, true, true);
+    }
+
+
+    /**
+     * Extract the embedded content from the given resource, only of the given kinds
+     *
+     * @param in         InputStream The resource to extract the content from
+     * @param opener     ChannelOpener Opens the channel to write the content to as UTF-8
+     * @param cdata      boolean True to extract the CDATA of the first child element of the root
+     * @param javaScript boolean True to extract the text of a javaScriptEntry
+     * @return boolean True if the content was extracted and written, false if the resource has no embedded content
+     * @throws XMLStreamException if the resource is not a well-formed XML
+     */
+    public static boolean extract(InputStream in, ChannelOpener opener, boolean cdata, boolean javaScript)
+            throws XMLStreamException, IOException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            // Root element
+            if (!nextStartElement(reader)) {
+                return false;
+            }
+            boolean javaScriptEntry = reader.getLocalName().equals("javaScriptEntry");
+            if (javaScriptEntry ? !javaScript : !cdata) {
+                return false;
+            }
+
+            // First child element of the root
+            if (!nextStartElement(reader)) {
+                return false;
+            }
+
+            // First node of the first child element
+            int event = reader.next();
+            if (event != CDATA && !(javaScriptEntry && (event == CHARACTERS || event == SPACE))) {
+                return false;
+            }
+
+            try (WritableByteChannel channel = opener.open();
+                 Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), 8192)) {
+                copyText(reader, event, writer);
+            }
+            return true;
+        } finally {
+            reader.close();
+        }
+    }
+
+
+    /**
+     * Move the reader to the next start element
+     *
+     * @param reader XMLStreamReader The reader
+     * @return boolean True if the element is found, false if the current element or the document ends before
+     */
+    private static boolean nextStartElement(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == START_ELEMENT) {
+                return true;
+            } else if (event == END_ELEMENT || event == END_DOCUMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Copy the text of the current event and the following events of the same kind to the given writer
+     *
+     * @param reader XMLStreamReader The reader positioned at a CDATA or text event
+     * @param event  int The current event
+     * @param writer Writer The writer to copy the text to
+     */
+    private static void copyText(XMLStreamReader reader, int event, Writer writer) throws XMLStreamException, IOException {
+        boolean cdata = event == CDATA;
+        char[] buffer = new char[8192];
+        while (true) {
+            int start = 0;
+            int length;
+            while ((length = reader.getTextCharacters(start, buffer, 0, buffer.length)) > 0) {
+                writer.write(buffer, 0, length);
+                start += length;
+            }
+
+            event = reader.next();
+            boolean sameKind = cdata
+                    ? event == CDATA
+                    : event == CHARACTERS || event == SPACE;
+            if (!sameKind) {
+                return;
+            }
+        }
+    }
+}
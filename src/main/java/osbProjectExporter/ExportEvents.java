@@ -0,0 +1,93 @@
+package osbProjectExporter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+
+/**
+ * Flight Recorder events of the export. The events are recorded with e.g.
+ * '-XX:StartFlightRecording=filename=export.jfr' and can be charted in JDK Mission Control.
+ * The class is compiled against jdk.jfr, so the build needs a JDK with Flight Recorder (8u262 or later). It is only
+ * used by ExportMetrics when Flight Recorder is available, so the exporter still runs on JDKs without it.
+ */
+class ExportEvents {
+
+    @Name("osbProjectExporter.Phase")
+    @Label("Export Phase")
+    @Category("OSB Project Exporter")
+    @Description("A phase of the export, e.g. connect, export, unpack or parse")
+    static class PhaseEvent extends Event {
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+
+    @Name("osbProjectExporter.Resource")
+    @Label("Resource Processed")
+    @Category("OSB Project Exporter")
+    @Description("A resource processed and written to the export directory")
+    @StackTrace(false)
+    static class ResourceEvent extends Event {
+
+        @Label("Path")
+        String path;
+
+        @Label("Extension")
+        String extension;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Processing Time")
+        @Timespan
+        long processingTime;
+    }
+
+
+    /**
+     * Begin the event of the given phase
+     *
+     * @param phase String The name of the phase
+     * @return Object The event to commit when the phase ends or null if the event is disabled
+     */
+    static Object beginPhase(String phase) {
+        PhaseEvent event = new PhaseEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.phase = phase;
+        event.begin();
+        return event;
+    }
+
+
+    static void commitPhase(Object event, long bytes) {
+        PhaseEvent phaseEvent = (PhaseEvent) event;
+        phaseEvent.bytes = bytes;
+        phaseEvent.commit();
+    }
+
+
+    static void commitResource(String path, String extension, long bytes, long nanos) {
+        ResourceEvent event = new ResourceEvent();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.extension = extension;
+            event.bytes = bytes;
+            event.processingTime = nanos;
+            event.commit();
+        }
+    }
+}
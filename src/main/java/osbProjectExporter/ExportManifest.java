@@ -0,0 +1,136 @@
+package osbProjectExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+
+/**
+ * The manifest of an export directory: the SHA-256 hash of every exported resource by its relative path.
+ * The manifest is stored in the export directory in the format of sha256sum, one resource per line.
+ */
+public class ExportManifest {
+
+    public static final String FILE_NAME = ".osbexport-manifest";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Map<String, String> hashes = new TreeMap<>();
+
+
+    /**
+     * Load the manifest from the given export directory
+     *
+     * @param exportDir File The export directory
+     * @return ExportManifest The manifest, empty if the directory has no manifest
+     */
+    public static ExportManifest load(File exportDir) throws IOException {
+        return read(new File(exportDir, FILE_NAME));
+    }
+
+
+    /**
+     * Read the manifest from the given file
+     *
+     * @param file File The manifest file
+     * @return ExportManifest The manifest, empty if the file does not exist
+     */
+    public static ExportManifest read(File file) throws IOException {
+        ExportManifest manifest = new ExportManifest();
+        if (!file.isFile()) {
+            return manifest;
+        }
+
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            int i = line.indexOf("  ");
+            if (i > 0) {
+                manifest.hashes.put(line.substring(i + 2), line.substring(0, i));
+            }
+        }
+        return manifest;
+    }
+
+
+    /**
+     * Save the manifest to the given export directory. The manifest file is replaced atomically.
+     *
+     * @param exportDir File The export directory
+     */
+    public void save(File exportDir) throws IOException {
+        write(new File(exportDir, FILE_NAME));
+    }
+
+
+    /**
+     * Write the manifest to the given file. The file is replaced atomically.
+     *
+     * @param file File The manifest file
+     */
+    public void write(File file) throws IOException {
+        List<String> lines = new ArrayList<>(hashes.size());
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            lines.add(entry.getValue() + "  " + entry.getKey());
+        }
+
+        Path path = file.getAbsoluteFile().toPath();
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.createDirectories(path.getParent());
+        Files.write(tmpPath, lines, StandardCharsets.UTF_8);
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    public String getHash(String path) {
+        return hashes.get(path);
+    }
+
+
+    public void put(String path, String hash) {
+        hashes.put(path, hash);
+    }
+
+
+    public void remove(String path) {
+        hashes.remove(path);
+    }
+
+
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(hashes.keySet());
+    }
+
+
+    public Collection<String> getHashes() {
+        return Collections.unmodifiableCollection(hashes.values());
+    }
+
+
+    /**
+     * Get the SHA-256 hash of the given content
+     *
+     * @param content byte[] The content
+     * @return String The hash as a lower case hex string
+     */
+    public static String hash(byte[] content) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+
+        byte[] bytes = digest.digest(content);
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+}
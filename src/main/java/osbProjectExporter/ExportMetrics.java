@@ -0,0 +1,385 @@
+package osbProjectExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.*;
+
+
+/**
+ * Timing and throughput of an export: the duration of every phase (connect, getResourceRefs, export, unpack, parse,
+ * move, ...), the bytes transferred from the server, the number, size and parse time of the resources per extension
+ * and the slowest resources.
+ * The metrics are collected for the current export, are safe to update from several threads and can be written
+ * as a JSON report. An export running next to others in the same process, e.g. in an {@link ExportSession}, binds
+ * its own metrics to its thread; the threads it starts inherit them. Every phase and resource is also emitted
+ * as a JFR event when running with Flight Recorder.
+ */
+public class ExportMetrics {
+
+    public static final int SLOWEST_RESOURCES = 10;
+
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    private static volatile ExportMetrics current = new ExportMetrics();
+
+    private static final InheritableThreadLocal<ExportMetrics> bound = new InheritableThreadLocal<>();
+
+    private final long startTime = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Stats> phases = new LinkedHashMap<>();
+    private final Map<String, Stats> extensions = new TreeMap<>();
+    private final PriorityQueue<ResourceTiming> slowest =
+            new PriorityQueue<>(Comparator.comparingLong((ResourceTiming timing) -> timing.nanos));
+    private long bytesTransferred;
+    private long files;
+    private long bytesWritten;
+
+
+    /**
+     * @return ExportMetrics The metrics bound to the current thread, otherwise the metrics of the current export
+     */
+    public static ExportMetrics get() {
+        ExportMetrics metrics = bound.get();
+        return metrics != null ? metrics : current;
+    }
+
+
+    /**
+     * Bind the given metrics to the current thread and the threads it starts, so that the export running on it
+     * does not record to the metrics of other exports
+     *
+     * @param metrics ExportMetrics The metrics or null to unbind the metrics of the thread
+     * @return ExportMetrics The metrics bound before or null
+     */
+    static ExportMetrics bind(ExportMetrics metrics) {
+        ExportMetrics previous = bound.get();
+        if (metrics == null) {
+            bound.remove();
+        } else {
+            bound.set(metrics);
+        }
+        return previous;
+    }
+
+
+    /**
+     * Start collecting the metrics of a new export
+     *
+     * @return ExportMetrics The metrics of the new export
+     */
+    public static ExportMetrics reset() {
+        current = new ExportMetrics();
+        return current;
+    }
+
+
+    /**
+     * Start a phase of the export. The phase is recorded when it is closed, so it is used with try-with-resources.
+     * A phase started several times, e.g. once per project, is recorded with the total duration. The duration of
+     * a phase running on several threads at once, e.g. the shards of a domain export, is the wall time while any of
+     * them runs; the sum of their durations is recorded as the thread time.
+     *
+     * @param name String The name of the phase
+     * @return Phase The started phase
+     */
+    public Phase startPhase(String name) {
+        return new Phase(name);
+    }
+
+
+    /**
+     * Record the bytes received from the server
+     *
+     * @param bytes long The number of bytes
+     */
+    public synchronized void addBytesTransferred(long bytes) {
+        bytesTransferred += bytes;
+    }
+
+
+    /**
+     * Record a processed resource
+     *
+     * @param path      String The path of the resource
+     * @param extension String The extension of the resource
+     * @param bytes     long The size of the resource
+     * @param nanos     long The time spent processing the resource in nanoseconds
+     */
+    public void recordResource(String path, String extension, long bytes, long nanos) {
+        synchronized (this) {
+            files++;
+            bytesWritten += bytes;
+            extensions.computeIfAbsent(extension, key -> new Stats()).add(bytes, nanos);
+            if (slowest.size() < SLOWEST_RESOURCES) {
+                slowest.add(new ResourceTiming(path, bytes, nanos));
+            } else if (slowest.peek().nanos < nanos) {
+                slowest.poll();
+                slowest.add(new ResourceTiming(path, bytes, nanos));
+            }
+        }
+        if (JFR_AVAILABLE) {
+            ExportEvents.commitResource(path, extension, bytes, nanos);
+        }
+    }
+
+
+    private synchronized void beginPhase(String name, long start) {
+        Stats stats = phases.computeIfAbsent(name, key -> new Stats());
+        if (stats.active++ == 0) {
+            stats.activeSince = start;
+        }
+    }
+
+
+    private synchronized void recordPhase(String name, long bytes, long start, long end) {
+        Stats stats = phases.get(name);
+        stats.add(bytes, end - start);
+        if (--stats.active == 0) {
+            stats.wallNanos += end - stats.activeSince;
+        }
+    }
+
+
+    /**
+     * Get a short summary of the export: the duration of the phases and the throughput
+     *
+     * @return String The summary
+     */
+    public synchronized String getSummary() {
+        double seconds = getElapsedNanos() / 1e9;
+        StringBuilder sb = new StringBuilder("Export metrics:");
+        for (Map.Entry<String, Stats> phase : phases.entrySet()) {
+            sb.append("\n   ").append(phase.getKey()).append(": ").append(millis(phase.getValue().wallNanos)).append(" ms");
+            if (phase.getValue().nanos > phase.getValue().wallNanos) {
+                sb.append(" (").append(millis(phase.getValue().nanos)).append(" ms on all threads)");
+            }
+        }
+        sb.append("\n   Transferred ").append(bytesTransferred).append(" bytes, wrote ").append(files)
+                .append(" files (").append(bytesWritten).append(" bytes) in ").append(format(seconds)).append(" s: ")
+                .append(format(files / seconds)).append(" files/s, ").append(format(bytesWritten / seconds)).append(" bytes/s");
+        return sb.toString();
+    }
+
+
+    /**
+     * Get the metrics as JSON
+     *
+     * @return String The JSON report
+     */
+    public synchronized String toJson() {
+        long elapsedNanos = getElapsedNanos();
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder sb = new StringBuilder("{\n");
+        sb.append("  \"startTime\": ").append(quote(Instant.ofEpochMilli(startTime).toString())).append(",\n");
+        sb.append("  \"elapsedMillis\": ").append(millis(elapsedNanos)).append(",\n");
+        sb.append("  \"bytesTransferred\": ").append(bytesTransferred).append(",\n");
+        sb.append("  \"files\": ").append(files).append(",\n");
+        sb.append("  \"bytesWritten\": ").append(bytesWritten).append(",\n");
+        sb.append("  \"filesPerSecond\": ").append(format(files / seconds)).append(",\n");
+        sb.append("  \"bytesPerSecond\": ").append(format(bytesWritten / seconds)).append(",\n");
+
+        sb.append("  \"phases\": [");
+        String separator = "\n";
+        for (Map.Entry<String, Stats> phase : phases.entrySet()) {
+            Stats stats = phase.getValue();
+            sb.append(separator).append("    {\"name\": ").append(quote(phase.getKey()))
+                    .append(", \"count\": ").append(stats.count)
+                    .append(", \"millis\": ").append(millis(stats.wallNanos))
+                    .append(", \"threadMillis\": ").append(millis(stats.nanos))
+                    .append(", \"bytes\": ").append(stats.bytes).append("}");
+            separator = ",\n";
+        }
+        sb.append(phases.isEmpty() ? "],\n" : "\n  ],\n");
+
+        sb.append("  \"extensions\": [");
+        separator = "\n";
+        for (Map.Entry<String, Stats> extension : extensions.entrySet()) {
+            Stats stats = extension.getValue();
+            sb.append(separator).append("    {\"extension\": ").append(quote(extension.getKey()))
+                    .append(", \"files\": ").append(stats.count)
+                    .append(", \"bytes\": ").append(stats.bytes)
+                    .append(", \"parseMillis\": ").append(millis(stats.nanos)).append("}");
+            separator = ",\n";
+        }
+        sb.append(extensions.isEmpty() ? "],\n" : "\n  ],\n");
+
+        sb.append("  \"slowestResources\": [");
+        separator = "\n";
+        for (ResourceTiming timing : getSlowestResources()) {
+            sb.append(separator).append("    {\"path\": ").append(quote(timing.path))
+                    .append(", \"bytes\": ").append(timing.bytes)
+                    .append(", \"millis\": ").append(millis(timing.nanos)).append("}");
+            separator = ",\n";
+        }
+        sb.append(slowest.isEmpty() ? "]\n" : "\n  ]\n");
+        return sb.append("}\n").toString();
+    }
+
+
+    /**
+     * Write the metrics as JSON to the given file
+     *
+     * @param file File The file to write the report to
+     */
+    public void writeReport(File file) throws IOException {
+        FileUtil.writeFile(file.getAbsoluteFile(), toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    /**
+     * @return long The number of processed resources
+     */
+    public synchronized long getFiles() {
+        return files;
+    }
+
+
+    /**
+     * @return long The bytes received from the server
+     */
+    public synchronized long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+
+    /**
+     * @return List<String> The paths of the slowest resources, the slowest first
+     */
+    public synchronized List<String> getSlowestPaths() {
+        List<String> paths = new ArrayList<>();
+        for (ResourceTiming timing : getSlowestResources()) {
+            paths.add(timing.path);
+        }
+        return paths;
+    }
+
+
+    private List<ResourceTiming> getSlowestResources() {
+        List<ResourceTiming> timings = new ArrayList<>(slowest);
+        timings.sort(Comparator.comparingLong((ResourceTiming timing) -> timing.nanos).reversed());
+        return timings;
+    }
+
+
+    private long getElapsedNanos() {
+        return Math.max(System.nanoTime() - startNanos, 1);
+    }
+
+
+    private static String millis(long nanos) {
+        return format(nanos / 1e6);
+    }
+
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+
+    /**
+     * Quote the given value as a JSON string
+     *
+     * @param value String The value
+     * @return String The JSON string
+     */
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+
+    /**
+     * Flight Recorder is part of OpenJDK 8u262 and later and of JDK 11 and later
+     */
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * A phase of the export being timed
+     */
+    public class Phase implements AutoCloseable {
+
+        private final String name;
+        private final long start = System.nanoTime();
+        private final Object event;
+        private long bytes;
+
+
+        private Phase(String name) {
+            this.name = name;
+            beginPhase(name, start);
+            this.event = JFR_AVAILABLE ? ExportEvents.beginPhase(name) : null;
+        }
+
+
+        /**
+         * Record the bytes handled in the phase, e.g. the size of the exported jar
+         *
+         * @param bytes long The number of bytes
+         */
+        public void addBytes(long bytes) {
+            this.bytes += bytes;
+        }
+
+
+        @Override
+        public void close() {
+            recordPhase(name, bytes, start, System.nanoTime());
+            if (event != null) {
+                ExportEvents.commitPhase(event, bytes);
+            }
+        }
+    }
+
+
+    private static class Stats {
+
+        private long count;
+        private long bytes;
+        private long nanos;
+        private int active;
+        private long activeSince;
+        private long wallNanos;
+
+
+        private void add(long bytes, long nanos) {
+            this.count++;
+            this.bytes += bytes;
+            this.nanos += nanos;
+        }
+    }
+
+
+    private static class ResourceTiming {
+
+        private final String path;
+        private final long bytes;
+        private final long nanos;
+
+
+        private ResourceTiming(String path, long bytes, long nanos) {
+            this.path = path;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+    }
+}
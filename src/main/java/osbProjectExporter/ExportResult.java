@@ -0,0 +1,88 @@
+package osbProjectExporter;
+
+
+/**
+ * The result of an export of an {@link ExportSession}: where the project was exported to, how long it took and
+ * its metrics, or why it failed
+ */
+public class ExportResult {
+
+    private final String projectName;
+    private final String target;
+    private final long durationMillis;
+    private final ExportMetrics metrics;
+    private final Exception error;
+
+
+    ExportResult(String projectName, String target, long durationMillis, ExportMetrics metrics, Exception error) {
+        this.projectName = projectName;
+        this.target = target;
+        this.durationMillis = durationMillis;
+        this.metrics = metrics;
+        this.error = error;
+    }
+
+
+    /**
+     * @return String The exported project
+     */
+    public String getProjectName() {
+        return projectName;
+    }
+
+
+    /**
+     * @return String The export directory or the archive given in the option 'archive'
+     */
+    public String getTarget() {
+        return target;
+    }
+
+
+    /**
+     * @return boolean True if the project was exported
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+
+    /**
+     * @return Exception The cause of a failed export or null
+     */
+    public Exception getError() {
+        return error;
+    }
+
+
+    /**
+     * @return long The duration of the export in milliseconds
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+
+    /**
+     * @return long The number of exported resources
+     */
+    public long getResourceCount() {
+        return metrics.getFiles();
+    }
+
+
+    /**
+     * @return ExportMetrics The metrics of this export only
+     */
+    public ExportMetrics getMetrics() {
+        return metrics;
+    }
+
+
+    @Override
+    public String toString() {
+        return projectName + ": " + (isSuccess()
+                ? "OK, " + getResourceCount() + " resources to " + target + " (" + durationMillis + " ms)"
+                : "FAILED. " + error.getMessage());
+    }
+}
@@ -0,0 +1,198 @@
+package osbProjectExporter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * An export session for embedding the exporter, e.g. in a build plugin or a deploy service: the session owns
+ * its connection to the Admin server and the MBean proxies of the connection, and is safe to use from several
+ * threads. Every export records to its own metrics and returns an {@link ExportResult} instead of exiting,
+ * so that several sessions and exports can run in one process.
+ * <pre>
+ * try (ExportSession session = ExportSession.open("t3://localhost:7001", "weblogic", "welcome1")) {
+ *     ExportResult result = session.export("MyProject", "/path/to/export", options);
+ * }
+ * </pre>
+ * The options are the command line options without '--', e.g. 'streaming' = 'true' or 'archive' = 'export.zip'.
+ */
+public class ExportSession implements Closeable {
+
+    /**
+     * The options that are not exports of a project over one connection
+     */
+    static final List<String> UNSUPPORTED_OPTIONS = Arrays.asList("domain", "watch", "resume", "from-jar", "all");
+
+    private final OsbConnection connection;
+    private volatile boolean closed;
+
+
+    ExportSession(OsbConnection connection) {
+        this.connection = connection;
+    }
+
+
+    /**
+     * Open a session with a new connection to the Runtime MBean Server of the Admin server
+     *
+     * @param url      String t3 URL of the Admin server or a complete JMX service URL starting with 'service:jmx:'
+     * @param userName String WLS user part of security group Administrators
+     * @param password String WLS user password
+     * @return ExportSession The open session
+     */
+    public static ExportSession open(String url, String userName, String password) throws Exception {
+        return new ExportSession(OsbConnection.open(url, userName, password, OsbConnection.DOMAIN_RUNTIME));
+    }
+
+
+    /**
+     * Export the jar of the resources of the project selected by the given filter
+     *
+     * @param projectName String The project name
+     * @param filter      RefFilter The filter of the resources
+     * @return byte[] The project jar as a byte array
+     */
+    public byte[] exportJar(String projectName, RefFilter filter) throws Exception {
+        checkOpen();
+        try {
+            return OsbUtils.exportProjectJar(connection, projectName, filter);
+        } catch (Exception e) {
+            throw new Exception("[ERROR] Failed exporting the project " + projectName + ". " + e.getMessage(), e);
+        }
+    }
+
+
+    /**
+     * Export the project with its dependencies, unless the filters of the options exclude them, and process it
+     * to the export directory or the writer given by the options
+     *
+     * @param projectName String The project name
+     * @param exportDir   String The export directory
+     * @param options     Map<String, String> The options, e.g. 'streaming' = 'true'
+     * @return ExportResult The result of the export
+     * @throws IllegalArgumentException If an option is unknown, invalid or not supported by a session
+     */
+    public ExportResult export(String projectName, String exportDir, Map<String, String> options) {
+        Map<String, String> args = toArgs(options);
+        args.put("projectName", projectName);
+        args.put("exportDir", exportDir);
+        return export(args);
+    }
+
+
+    /**
+     * Export the given projects concurrently, limited by the option 'concurrency', each to its own folder
+     * in the export directory
+     *
+     * @param projects  List<String> The project names
+     * @param exportDir String The export directory
+     * @param options   Map<String, String> The options, e.g. 'streaming' = 'true'
+     * @return List<ExportResult> The results in the order of the projects
+     * @throws IllegalArgumentException If an option is unknown, invalid or not supported by a session
+     */
+    public List<ExportResult> export(List<String> projects, String exportDir, Map<String, String> options)
+            throws InterruptedException {
+        Map<String, String> args = toArgs(options);
+        int concurrency = Math.max(1, Math.min(Integer.parseInt(args.getOrDefault("concurrency", "4")), projects.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<ExportResult>> futures = new ArrayList<>();
+            for (String project : projects) {
+                Map<String, String> projectArgs = new HashMap<>(args);
+                projectArgs.put("projectName", project);
+                projectArgs.put("exportDir", exportDir + File.separator + project);
+                if (args.containsKey("archive")) {
+                    projectArgs.put("archive", OsbProjectExporter.getProjectArchive(args.get("archive"), project));
+                }
+                futures.add(executor.submit(() -> export(projectArgs)));
+            }
+
+            List<ExportResult> results = new ArrayList<>();
+            for (Future<ExportResult> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    // The export reports its failures in the result
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Export and process the project given in the arguments with its own metrics bound to the current thread
+     */
+    private ExportResult export(Map<String, String> args) {
+        checkOpen();
+        String projectName = args.get("projectName");
+        ExportMetrics metrics = new ExportMetrics();
+        ExportMetrics previous = ExportMetrics.bind(metrics);
+        long start = System.currentTimeMillis();
+        try {
+            OsbProjectExporter.processJarBinary(exportJar(projectName, RefFilter.fromArgs(args)), args);
+            return new ExportResult(projectName, args.getOrDefault("archive", args.get("exportDir")),
+                    System.currentTimeMillis() - start, metrics, null);
+        } catch (Exception e) {
+            return new ExportResult(projectName, args.getOrDefault("archive", args.get("exportDir")),
+                    System.currentTimeMillis() - start, metrics, e);
+        } finally {
+            OsbProjectExporter.writeReport(args);
+            ExportMetrics.bind(previous);
+        }
+    }
+
+
+    /**
+     * @return boolean True until the session is closed
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+
+    /**
+     * Close the connection of the session. The exports still running on it fail.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            connection.close();
+        }
+    }
+
+
+    /**
+     * Copy and validate the given options
+     */
+    private static Map<String, String> toArgs(Map<String, String> options) {
+        Map<String, String> args = new HashMap<>(options);
+        for (String option : args.keySet()) {
+            if (!OsbProjectExporter.OPTIONS.contains(option)) {
+                throw new IllegalArgumentException("[ERROR] Unknown option '" + option + "'.");
+            }
+            if (UNSUPPORTED_OPTIONS.contains(option)) {
+                throw new IllegalArgumentException("[ERROR] The option '" + option + "' is not supported by a session.");
+            }
+        }
+        OsbProjectExporter.checkOptions(args);
+        return args;
+    }
+
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The export session is closed");
+        }
+    }
+}
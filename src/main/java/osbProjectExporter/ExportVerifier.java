@@ -0,0 +1,280 @@
+package osbProjectExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Verifies that a local export directory, e.g. a folder tracked in git, matches the project on the server.
+ * The project is exported and processed in memory as in a streaming export, keeping only the SHA-256 hash of every
+ * processed resource, and compared with a parallel hash scan of the directory. Nothing is written to the directory.
+ * <p>
+ * The hashes of the scan are cached by the size and modification time of the files in a cache file in the
+ * cache directory of the user, so a repeated verification reads only the files changed since the previous one.
+ * A file modified no earlier than the cache was written is hashed again, as it may have changed after it was hashed
+ * within the resolution of the modification time.
+ * Files and folders whose names start with '.', e.g. .git and the manifest, are not compared.
+ */
+public class ExportVerifier {
+
+    public static final String CACHE_DIR = "osbexport";
+
+
+    /**
+     * Verify the export directory against the server:
+     * 'verify url userName password projectName exportDir [options]'
+     *
+     * @param args String[] The arguments of the command
+     * @return boolean True if the export directory matches the server
+     */
+    static boolean run(String[] args) {
+        String[] exportArgs = Arrays.copyOfRange(args, 1, args.length);
+        if (OsbProjectExporter.parseOptions(exportArgs, new HashMap<>()).length != 5) {
+            System.out.println("[ERROR] Incorrect arguments of the verify command.\n" +
+                    OsbProjectExporter.USAGE);
+            return false;
+        }
+        Map<String, String> parsedArgs = OsbProjectExporter.parseArgs(exportArgs);
+        if (parsedArgs.containsKey("domain") || parsedArgs.get("projects").contains(",")) {
+            System.out.println("[ERROR] The verify command compares one project with its export directory.");
+            return false;
+        }
+
+        try {
+            List<String> mismatches = verify(OsbUtils.getJarBinary(parsedArgs), new File(parsedArgs.get("exportDir")),
+                    Integer.parseInt(parsedArgs.getOrDefault("parallel",
+                            String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                    Boolean.parseBoolean(parsedArgs.get("canonicalize")));
+            for (String mismatch : mismatches) {
+                System.out.println(mismatch);
+            }
+            System.out.println(mismatches.isEmpty()
+                    ? parsedArgs.get("exportDir") + " matches " + parsedArgs.get("projectName") + " on the server"
+                    : "[ERROR] " + mismatches.size() + " mismatches between " + parsedArgs.get("exportDir") +
+                    " and " + parsedArgs.get("projectName") + " on the server");
+            return mismatches.isEmpty();
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed to verify " + parsedArgs.get("exportDir") + ". " + e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * Compare the given exported jar with the export directory
+     *
+     * @param jarBinary    byte[] The exported jar
+     * @param exportDir    File The export directory
+     * @param threads      int The number of threads of the hash scan
+     * @param canonicalize boolean True if the export directory was exported with '--canonicalize'
+     * @return List<String> The mismatches, empty if the directory matches the jar
+     */
+    public static List<String> verify(byte[] jarBinary, File exportDir, int threads, boolean canonicalize)
+            throws IOException, InterruptedException {
+        if (!exportDir.isDirectory()) {
+            throw new IOException("The export directory " + exportDir + " does not exist");
+        }
+
+        // The server side, processed in memory
+        ExportManifest expected = new ExportManifest();
+        FileUtil.unpackAndProcessJar(jarBinary, (path, content) -> {
+            String hash = ExportManifest.hash(content);
+            synchronized (expected) {
+                expected.put(path, hash);
+            }
+        }, canonicalize);
+
+        // The local side
+        Map<String, String> actual;
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("scan")) {
+            actual = scan(exportDir, threads, getCacheFile(exportDir));
+        }
+
+        List<String> mismatches = new ArrayList<>();
+        for (String path : expected.getPaths()) {
+            String hash = actual.get(path);
+            if (hash == null) {
+                mismatches.add("missing:   " + path);
+            } else if (!hash.equals(expected.getHash(path))) {
+                mismatches.add("differing: " + path);
+            }
+        }
+        for (String path : actual.keySet()) {
+            if (expected.getHash(path) == null) {
+                mismatches.add("extra:     " + path);
+            }
+        }
+        return mismatches;
+    }
+
+
+    /**
+     * @param exportDir File The export directory
+     * @return File The file the hashes of the given directory are cached in, in $XDG_CACHE_HOME/osbexport or
+     * ~/.cache/osbexport. The cache is not kept in the shared temporary directory, where another user could
+     * plant it.
+     */
+    static File getCacheFile(File exportDir) {
+        String key = ExportManifest.hash(exportDir.getAbsolutePath().getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        File cacheDir = cacheHome != null && !cacheHome.isEmpty()
+                ? new File(cacheHome, CACHE_DIR)
+                : new File(System.getProperty("user.home"), ".cache" + File.separator + CACHE_DIR);
+        return new File(cacheDir, "verify-" + key + ".cache");
+    }
+
+
+    /**
+     * Hash the files of the given directory in parallel. The hash of a file whose size and modification time
+     * are in the cache is taken from the cache without reading the file.
+     *
+     * @param dir       File The directory
+     * @param threads   int The number of threads
+     * @param cacheFile File The cache file, updated if any file was hashed
+     * @return Map<String, String> The hashes by the path relative to the directory, with '/' as separator
+     */
+    static Map<String, String> scan(File dir, int threads, File cacheFile) throws IOException, InterruptedException {
+        Map<String, CacheEntry> cache = readCache(cacheFile);
+        Map<String, CacheEntry> scanned = new ConcurrentHashMap<>();
+        Path root = dir.getAbsoluteFile().toPath();
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
+                return !path.equals(root) && path.getFileName().toString().startsWith(".")
+                        ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && !path.getFileName().toString().startsWith(".")) {
+                    files.add(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        int hashed = 0;
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (Path file : files) {
+                results.add(executor.submit(() -> {
+                    String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    long size = attributes.size();
+                    long modified = attributes.lastModifiedTime().toMillis();
+                    CacheEntry entry = cache.get(path);
+                    boolean cached = entry != null && entry.size == size && entry.modified == modified;
+                    if (!cached) {
+                        entry = new CacheEntry(size, modified, ExportManifest.hash(Files.readAllBytes(file)));
+                    }
+                    scanned.put(path, entry);
+                    return !cached;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    hashed++;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IOException("Failed hashing the files of " + dir + ". " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        if (hashed > 0 || scanned.size() != cache.size()) {
+            writeCache(cacheFile, scanned);
+        }
+        System.out.println("Scanned " + files.size() + " files in " + dir + ", " + hashed + " hashed, " +
+                (files.size() - hashed) + " from the cache");
+
+        Map<String, String> hashes = new TreeMap<>();
+        for (Map.Entry<String, CacheEntry> entry : scanned.entrySet()) {
+            hashes.put(entry.getKey(), entry.getValue().hash);
+        }
+        return hashes;
+    }
+
+
+    private static Map<String, CacheEntry> readCache(File cacheFile) {
+        Map<String, CacheEntry> cache = new HashMap<>();
+        if (!cacheFile.isFile()) {
+            return cache;
+        }
+        try {
+            long written = Files.getLastModifiedTime(cacheFile.toPath()).toMillis();
+            for (String line : Files.readAllLines(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", 4);
+                // A racy entry, modified no earlier than the cache was written, is hashed again
+                if (fields.length == 4 && Long.parseLong(fields[2]) < written) {
+                    cache.put(fields[3], new CacheEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // A broken cache is rebuilt
+            System.out.println("Ignoring the hash cache " + cacheFile + ". " + e);
+            cache.clear();
+        }
+        return cache;
+    }
+
+
+    private static void writeCache(File cacheFile, Map<String, CacheEntry> cache) {
+        List<String> lines = new ArrayList<>(cache.size());
+        for (Map.Entry<String, CacheEntry> entry : new TreeMap<>(cache).entrySet()) {
+            CacheEntry value = entry.getValue();
+            lines.add(value.hash + "\t" + value.size + "\t" + value.modified + "\t" + entry.getKey());
+        }
+        Path path = cacheFile.getAbsoluteFile().toPath();
+        Path tmpPath = null;
+        try {
+            if (!Files.isDirectory(path.getParent())) {
+                // The cache directory is private to the user where the file system supports it
+                if (path.getParent().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                    Files.createDirectories(path.getParent(),
+                            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+                } else {
+                    Files.createDirectories(path.getParent());
+                }
+            }
+            tmpPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+            Files.write(tmpPath, lines, StandardCharsets.UTF_8);
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // The cache only saves time, the verification does not depend on it
+            System.out.println("Failed writing the hash cache " + cacheFile + ". " + e);
+        } finally {
+            if (tmpPath != null) {
+                try {
+                    Files.deleteIfExists(tmpPath);
+                } catch (IOException ignored) {
+                    // Only a leftover temporary file
+                }
+            }
+        }
+    }
+
+
+    private static class CacheEntry {
+
+        private final long size;
+        private final long modified;
+        private final String hash;
+
+
+        private CacheEntry(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
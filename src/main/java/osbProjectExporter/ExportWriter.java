@@ -0,0 +1,26 @@
+package osbProjectExporter;
+
+import java.io.IOException;
+
+
+/**
+ * A sink that writes the processed resources of an export somewhere other than plain files in the export directory,
+ * and completes the export once all the resources are written.
+ */
+public interface ExportWriter extends ResourceSink {
+
+    /**
+     * Complete the export after all the resources are written
+     *
+     * @return String The summary of the export
+     */
+    String finish() throws IOException;
+
+
+    /**
+     * Release the resources of an export that failed. It does nothing after a successful {@link #finish()},
+     * so that it can be called in a finally block.
+     */
+    default void abort() {
+    }
+}
@@ -0,0 +1,514 @@
+package osbProjectExporter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * A long-running exporter that keeps an authenticated connection to every configured environment open and
+ * exports projects on request, so that an export costs only the export itself instead of a JVM start,
+ * the t3 handshake and the creation of the MBean proxies.
+ * <p>
+ * The daemon listens on the loopback interface only. Every request must carry the configured token in the header
+ * 'Authorization: Bearer &lt;token&gt;', and requests with an 'Origin' header, i.e. from a browser, are rejected,
+ * so that neither another local user nor a web page can run exports:
+ * <ul>
+ * <li>POST /export?environment=dev&amp;project=Project_1&amp;exportDir=/path[&amp;option=value...] exports the project
+ * with dependencies. The options are those of the command line, e.g. streaming=true or incremental=true, except
+ * domain, watch, resume, from-jar and all. The export directory and the files of the options archive, store and
+ * report must be in the configured export root. The request returns when the export is done.</li>
+ * <li>GET /health returns the state of the connection to every environment.</li>
+ * </ul>
+ * The exports are queued and run with a limited concurrency. The connections are checked periodically
+ * and reopened when they fail.
+ * <p>
+ * The configuration is a properties file:
+ * <pre>
+ * port=7070
+ * token=a-long-random-secret
+ * export-root=/var/osb/exports
+ * concurrency=4
+ * queue-size=100
+ * health-check-interval=60
+ * environment.dev.url=t3://localhost:7001
+ * environment.dev.userName=weblogic
+ * environment.dev.password=welcome1
+ * </pre>
+ */
+public class ExporterDaemon implements Closeable {
+
+    public static final int DEFAULT_PORT = 7070;
+    public static final int DEFAULT_CONCURRENCY = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+    public static final int DEFAULT_HEALTH_CHECK_INTERVAL = 60;
+
+    private static final Set<String> REQUEST_PARAMETERS = new HashSet<>(Arrays.asList(
+            "environment", "project", "exportDir"));
+    private static final List<String> PATH_OPTIONS = Arrays.asList("archive", "store", "report");
+
+    private final Map<String, Environment> environments = new TreeMap<>();
+    private final ThreadPoolExecutor exportExecutor;
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService requestExecutor = Executors.newCachedThreadPool();
+    private final HttpServer httpServer;
+    private final byte[] token;
+    private final File exportRoot;
+
+
+    private ExporterDaemon(Properties config) throws IOException {
+        String token = config.getProperty("token", "").trim();
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("[ERROR] No token is configured. E.g. token=a-long-random-secret");
+        }
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        String exportRoot = config.getProperty("export-root", "").trim();
+        if (exportRoot.isEmpty() || !new File(exportRoot).isDirectory()) {
+            throw new IllegalArgumentException("[ERROR] The export root must be an existing directory. " +
+                    "E.g. export-root=/var/osb/exports");
+        }
+        this.exportRoot = new File(exportRoot).getCanonicalFile();
+
+        for (String key : config.stringPropertyNames()) {
+            if (key.startsWith("environment.") && key.endsWith(".url")) {
+                String name = key.substring("environment.".length(), key.length() - ".url".length());
+                environments.put(name, new Environment(name, config.getProperty(key),
+                        config.getProperty("environment." + name + ".userName"),
+                        config.getProperty("environment." + name + ".password")));
+            }
+        }
+        if (environments.isEmpty()) {
+            throw new IllegalArgumentException("[ERROR] No environment is configured. " +
+                    "E.g. environment.dev.url=t3://localhost:7001");
+        }
+
+        int concurrency = getInt(config, "concurrency", DEFAULT_CONCURRENCY);
+        exportExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(getInt(config, "queue-size", DEFAULT_QUEUE_SIZE)));
+
+        httpServer = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), getInt(config, "port", DEFAULT_PORT)), 0);
+        httpServer.createContext("/export", this::handleExport);
+        httpServer.createContext("/health", this::handleHealth);
+        httpServer.setExecutor(requestExecutor);
+
+        int interval = getInt(config, "health-check-interval", DEFAULT_HEALTH_CHECK_INTERVAL);
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.SECONDS);
+    }
+
+
+    /**
+     * Start the daemon: connect to the configured environments and start listening for requests
+     *
+     * @param config Properties The configuration
+     * @return ExporterDaemon The started daemon
+     */
+    public static ExporterDaemon start(Properties config) throws IOException {
+        ExporterDaemon daemon = new ExporterDaemon(config);
+        daemon.checkHealth();
+        daemon.httpServer.start();
+        System.out.println("Listening on http://localhost:" + daemon.getPort() + " for exports from " +
+                daemon.environments.keySet());
+        return daemon;
+    }
+
+
+    /**
+     * Run the daemon with the given configuration file until the process is stopped
+     *
+     * @param configFile String The path of the configuration file
+     */
+    public static void run(String configFile) throws IOException, InterruptedException {
+        ExporterDaemon daemon = start(loadConfig(configFile));
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+        Thread.currentThread().join();
+    }
+
+
+    /**
+     * Load the configuration file
+     *
+     * @param configFile String The path of the configuration file
+     * @return Properties The configuration
+     */
+    static Properties loadConfig(String configFile) throws IOException {
+        Properties config = new Properties();
+        try (InputStream in = new FileInputStream(configFile)) {
+            config.load(in);
+        }
+        return config;
+    }
+
+
+    /**
+     * @return int The port the daemon listens on
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        healthChecker.shutdownNow();
+        exportExecutor.shutdownNow();
+        requestExecutor.shutdownNow();
+        for (Environment environment : environments.values()) {
+            environment.disconnect();
+        }
+    }
+
+
+    /**
+     * Check the connection to every environment, reconnecting the failed ones
+     */
+    private void checkHealth() {
+        for (Environment environment : environments.values()) {
+            environment.checkHealth();
+        }
+    }
+
+
+    private void handleExport(HttpExchange exchange) throws IOException {
+        if (!authorize(exchange)) {
+            return;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "{\"status\": \"FAILED\", \"error\": \"Use POST\"}");
+            return;
+        }
+
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        Environment environment = environments.get(parameters.get("environment"));
+        String project = parameters.get("project");
+        String exportDir = parameters.get("exportDir");
+        if (environment == null || project == null || exportDir == null) {
+            respond(exchange, 400, "{\"status\": \"FAILED\", \"error\": " + ExportMetrics.quote(
+                    "The parameters environment (one of " + environments.keySet() + "), project and exportDir " +
+                            "are required") + "}");
+            return;
+        }
+
+        Map<String, String> args = new HashMap<>();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            if (!REQUEST_PARAMETERS.contains(parameter.getKey())) {
+                if (!OsbProjectExporter.OPTIONS.contains(parameter.getKey())) {
+                    respond(exchange, 400, "{\"status\": \"FAILED\", \"error\": " +
+                            ExportMetrics.quote("Unknown option " + parameter.getKey()) + "}");
+                    return;
+                }
+                if (ExportSession.UNSUPPORTED_OPTIONS.contains(parameter.getKey())) {
+                    respond(exchange, 400, "{\"status\": \"FAILED\", \"error\": " +
+                            ExportMetrics.quote("The option " + parameter.getKey() + " is not supported by the daemon") + "}");
+                    return;
+                }
+                args.put(parameter.getKey(), parameter.getValue());
+            }
+        }
+        args.put("projectName", project);
+        args.put("exportDir", exportDir);
+        for (String option : PATH_OPTIONS) {
+            if (args.containsKey(option) && !args.get(option).equals("true")) {
+                args.put(option, resolvePath(args.get(option)));
+            }
+        }
+        args.put("exportDir", resolvePath(exportDir));
+        if (args.containsValue(null)) {
+            respond(exchange, 403, "{\"status\": \"FAILED\", \"error\": " + ExportMetrics.quote(
+                    "The export directory and the files of the options must be in " + exportRoot) + "}");
+            return;
+        }
+        try {
+            OsbProjectExporter.checkOptions(args);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, "{\"status\": \"FAILED\", \"error\": " + ExportMetrics.quote(e.getMessage()) + "}");
+            return;
+        }
+
+        Future<Long> result;
+        try {
+            result = exportExecutor.submit(() -> environment.export(project, args));
+        } catch (RejectedExecutionException e) {
+            respond(exchange, 503, "{\"status\": \"FAILED\", \"error\": \"Too many queued exports\"}");
+            return;
+        }
+
+        try {
+            long millis = result.get();
+            respond(exchange, 200, "{\"status\": \"OK\", \"environment\": " + ExportMetrics.quote(environment.name) +
+                    ", \"project\": " + ExportMetrics.quote(project) +
+                    ", \"exportDir\": " + ExportMetrics.quote(args.get("exportDir")) + ", \"millis\": " + millis + "}");
+        } catch (ExecutionException e) {
+            System.out.println("[ERROR] Failed to export " + project + " from " + environment.name + ". " +
+                    e.getCause().getMessage());
+            respond(exchange, 500, "{\"status\": \"FAILED\", \"error\": " +
+                    ExportMetrics.quote(String.valueOf(e.getCause().getMessage())) + "}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            respond(exchange, 503, "{\"status\": \"FAILED\", \"error\": \"Interrupted\"}");
+        }
+    }
+
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        if (!authorize(exchange)) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("{\"environments\": [");
+        String separator = "";
+        boolean up = true;
+        for (Environment environment : environments.values()) {
+            sb.append(separator).append(environment.toJson());
+            separator = ", ";
+            up &= environment.isUp();
+        }
+        sb.append("], \"queued\": ").append(exportExecutor.getQueue().size())
+                .append(", \"active\": ").append(exportExecutor.getActiveCount()).append("}");
+        respond(exchange, up ? 200 : 503, sb.toString());
+    }
+
+
+    /**
+     * Check that the request carries the token and does not come from a browser, and reject it otherwise
+     *
+     * @param exchange HttpExchange The request
+     * @return boolean True if the request may be handled
+     */
+    private boolean authorize(HttpExchange exchange) throws IOException {
+        if (exchange.getRequestHeaders().containsKey("Origin")) {
+            respond(exchange, 403, "{\"status\": \"FAILED\", \"error\": \"Requests from a browser are not allowed\"}");
+            return false;
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ") ||
+                !MessageDigest.isEqual(token, authorization.substring("Bearer ".length()).getBytes(StandardCharsets.UTF_8))) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            respond(exchange, 401, "{\"status\": \"FAILED\", \"error\": \"The token is missing or wrong\"}");
+            return false;
+        }
+        return true;
+    }
+
+
+    /**
+     * Resolve the given path against the export root. Relative paths are relative to the export root.
+     *
+     * @param path String The path of a request
+     * @return String The canonical path or null if it is not in the export root
+     */
+    String resolvePath(String path) throws IOException {
+        File file = new File(path);
+        File canonical = (file.isAbsolute() ? file : new File(exportRoot, path)).getCanonicalFile();
+        return canonical.toPath().startsWith(exportRoot.toPath()) ? canonical.getPath() : null;
+    }
+
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+
+    /**
+     * Parse the query of a request. A parameter without a value, e.g. 'streaming', is 'true'.
+     *
+     * @param query String The raw query or null
+     * @return Map<String, String> The parameters
+     */
+    static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.isEmpty()) {
+                continue;
+            }
+            int i = parameter.indexOf('=');
+            String name = URLDecoder.decode(i == -1 ? parameter : parameter.substring(0, i), "UTF-8");
+            String value = i == -1 ? "true" : URLDecoder.decode(parameter.substring(i + 1), "UTF-8");
+            parameters.put(name, value);
+        }
+        return parameters;
+    }
+
+
+    private static int getInt(Properties config, String key, int defaultValue) {
+        String value = config.getProperty(key);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("[ERROR] The value of " + key + " must be an integer: " + value);
+        }
+    }
+
+
+    /**
+     * A configured environment with its warm connection
+     */
+    private static class Environment {
+
+        private final String name;
+        private final String url;
+        private final String userName;
+        private final String password;
+        private OsbConnection connection;
+        private String lastError;
+        private long lastCheck;
+
+
+        private Environment(String name, String url, String userName, String password) {
+            this.name = name;
+            this.url = url;
+            this.userName = userName;
+            this.password = password;
+        }
+
+
+        /**
+         * Export the given project, with dependencies unless filtered, over the warm connection. If the export fails because
+         * the connection is broken, the connection is reopened and the export is retried once. The export records
+         * to its own metrics bound to the current thread, so that its report does not mix in concurrent exports.
+         *
+         * @param project String The project name
+         * @param args    Map<String, String> The export arguments
+         * @return long The duration of the export in milliseconds
+         */
+        private long export(String project, Map<String, String> args) throws Exception {
+            long start = System.currentTimeMillis();
+            ExportMetrics previous = ExportMetrics.bind(new ExportMetrics());
+            try {
+                System.out.println("Exporting the jar for project " + project + " from " + name);
+                byte[] jarBinary;
+                RefFilter filter = RefFilter.fromArgs(args);
+                OsbConnection current = getConnection();
+                try {
+                    jarBinary = OsbUtils.exportProjectJar(current, project, filter);
+                } catch (Exception e) {
+                    if (isAlive(current)) {
+                        throw new Exception("[ERROR] Failed exporting the project " + project + ". " + e);
+                    }
+                    System.out.println("The connection to " + name + " is broken. Reconnecting");
+                    reconnect(current);
+                    current = getConnection();
+                    jarBinary = OsbUtils.exportProjectJar(current, project, filter);
+                }
+                OsbProjectExporter.processJarBinary(jarBinary, args);
+                return System.currentTimeMillis() - start;
+            } finally {
+                OsbProjectExporter.writeReport(args);
+                ExportMetrics.bind(previous);
+            }
+        }
+
+
+        private synchronized OsbConnection getConnection() throws Exception {
+            if (connection == null) {
+                try {
+                    connection = OsbConnection.open(url, userName, password, OsbConnection.DOMAIN_RUNTIME);
+                    lastError = null;
+                } catch (Exception e) {
+                    lastError = e.getMessage();
+                    throw e;
+                }
+            }
+            return connection;
+        }
+
+
+        /**
+         * Check the connection with a cheap call and reopen it if it fails
+         */
+        private void checkHealth() {
+            OsbConnection current;
+            try {
+                current = getConnection();
+            } catch (Exception e) {
+                System.out.println("[ERROR] The environment " + name + " is down. " + e.getMessage());
+                markChecked();
+                return;
+            }
+            if (!isAlive(current)) {
+                System.out.println("The connection to " + name + " is broken. Reconnecting");
+                reconnect(current);
+                try {
+                    getConnection();
+                } catch (Exception e) {
+                    System.out.println("[ERROR] The environment " + name + " is down. " + e.getMessage());
+                }
+            }
+            markChecked();
+        }
+
+
+        private boolean isAlive(OsbConnection current) {
+            try {
+                current.getProjects();
+                synchronized (this) {
+                    lastError = null;
+                }
+                return true;
+            } catch (Exception e) {
+                synchronized (this) {
+                    lastError = e.getMessage();
+                }
+                return false;
+            }
+        }
+
+
+        /**
+         * Close the given connection, unless it has already been replaced by another thread
+         */
+        private synchronized void reconnect(OsbConnection broken) {
+            if (connection == broken) {
+                disconnect();
+            }
+        }
+
+
+        private synchronized void disconnect() {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (IOException ignored) {
+                    // The connection is broken anyway
+                }
+                connection = null;
+            }
+        }
+
+
+        private synchronized void markChecked() {
+            lastCheck = System.currentTimeMillis();
+        }
+
+
+        private synchronized boolean isUp() {
+            return connection != null;
+        }
+
+
+        private synchronized String toJson() {
+            return "{\"name\": " + ExportMetrics.quote(name) + ", \"url\": " + ExportMetrics.quote(url) +
+                    ", \"status\": \"" + (connection != null ? "UP" : "DOWN") + "\"" +
+                    ", \"lastCheck\": " + (lastCheck == 0 ? "null" : ExportMetrics.quote(Instant.ofEpochMilli(lastCheck).toString())) +
+                    ", \"lastError\": " + (lastError == null ? "null" : ExportMetrics.quote(lastError)) + "}";
+        }
+    }
+}
@@ -1,48 +1,43 @@
 package osbProjectExporter;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 
 public class FileUtil {
 
-    public static final Map<String, String> validExtensions;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
-    static {
-        Map<String, String> extensions = new HashMap<>();
-        extensions.put("BusinessService", "bix");
-        extensions.put("ProxyService", "proxy");
-        extensions.put("Pipeline", "pipeline");
-        extensions.put("XML", "xml");
-        extensions.put("XMLSchema", "xsd");
-        extensions.put("Xquery", "xqy");
-        extensions.put("XSLT", "xsl");
-        extensions.put("MFL", "mfl");
-        extensions.put("WADL", "wadl");
-        extensions.put("WSDL", "wsdl");
-        extensions.put("ServiceAccount", "sa");
-        extensions.put("Archive", "jar");
-        extensions.put("JCA", "jca");
-        extensions.put("JavaScript", "js");
-        validExtensions = Collections.unmodifiableMap(extensions);
-    }
+    /**
+     * The extensions the resource types are renamed to, by the resource type, as registered in {@link ResourceTypes}
+     */
+    public static final Map<String, String> validExtensions = ResourceTypes.getExtensions();
+
+    private static final ResourceType EMBEDDED_CONTENT = ResourceType.of("EmbeddedContent", null,
+            (in, opener) -> ResourceTransformer.extract(in, opener, true, true));
 
 
     /**
@@ -68,7 +63,8 @@ public class FileUtil {
         Path sourcePath = new File(source).toPath();
         Path targetPath = new File(target).toPath();
 
-        try (Stream<Path> paths = Files.walk(sourcePath)) {
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("move");
+             Stream<Path> paths = Files.walk(sourcePath)) {
             paths.skip(1) // Skip the root directory itself
                     .forEach(sp -> {
                         Path tp = targetPath.resolve(sourcePath.relativize(sp));
@@ -89,7 +85,17 @@ public class FileUtil {
         }
 
         // Recursively delete the source directory
-        try (Stream<Path> paths = Files.walk(sourcePath)) {
+        deleteFolder(source);
+    }
+
+
+    /**
+     * Delete the given folder recursively
+     *
+     * @param folder String The folder to delete
+     */
+    public static void deleteFolder(String folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(new File(folder).toPath())) {
             paths.sorted(Comparator.reverseOrder())
                     .forEach(path -> {
                         try {
@@ -191,26 +197,131 @@ public class FileUtil {
      */
     public static void unpackJar(byte[] jarBytes, String destDir) throws IOException {
         System.out.println("Unpacking the jar to " + destDir);
-        try (JarInputStream jarInputStream = new JarInputStream(new ByteArrayInputStream(jarBytes))) {
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("unpack");
+             JarInputStream jarInputStream = new JarInputStream(new ByteArrayInputStream(jarBytes))) {
+            phase.addBytes(jarBytes.length);
             JarEntry entry;
             while ((entry = jarInputStream.getNextJarEntry()) != null) {
-                File file = new File(destDir, entry.getName());
-                if (entry.isDirectory()) {
-                    if (!file.exists() && !file.mkdirs()) {
-                        throw new IOException("Failed to create directory " + file);
-                    }
-                } else {
-                    File parent = file.getParentFile();
-                    if (parent != null && !parent.exists() && !parent.mkdirs()) {
-                        throw new IOException("Failed to create directory " + parent);
-                    }
-                    try (FileOutputStream fos = new FileOutputStream(file)) {
-                        byte[] buffer = new byte[1024];
-                        int bytesRead;
-                        while ((bytesRead = jarInputStream.read(buffer)) != -1) {
-                            fos.write(buffer, 0, bytesRead);
-                        }
-                    }
+                unpackEntry(entry, jarInputStream, destDir);
+                jarInputStream.closeEntry();
+            }
+        }
+    }
+
+
+    /**
+     * Unpack the given jar file to the given directory. The entries are read through ZipFile,
+     * so the jar is never loaded into memory as a whole.
+     *
+     * @param jarFile File The jar file
+     * @param destDir String The directory to export to
+     */
+    public static void unpackJar(File jarFile, String destDir) throws IOException {
+        System.out.println("Unpacking the jar " + jarFile + " to " + destDir);
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("unpack");
+             ZipFile zipFile = new ZipFile(jarFile)) {
+            phase.addBytes(jarFile.length());
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    unpackEntry(entry, in, destDir);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Unpack a single jar entry to the given directory
+     *
+     * @param entry   ZipEntry The entry
+     * @param in      InputStream The content of the entry
+     * @param destDir String The directory to export to
+     */
+    private static void unpackEntry(ZipEntry entry, InputStream in, String destDir) throws IOException {
+        File file = new File(destDir, entry.getName());
+        if (entry.isDirectory()) {
+            if (!file.exists() && !file.mkdirs()) {
+                throw new IOException("Failed to create directory " + file);
+            }
+        } else {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directory " + parent);
+            }
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                byte[] buffer = new byte[COPY_BUFFER_SIZE];
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    fos.write(buffer, 0, bytesRead);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Write the given jar binary to a temporary file
+     *
+     * @param jarBytes byte[] The jar binary
+     * @return File The temporary file
+     */
+    public static File writeTempJar(byte[] jarBytes) throws IOException {
+        File file = File.createTempFile("osbexport-", ".jar");
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(jarBytes);
+        } catch (IOException e) {
+            Files.deleteIfExists(file.toPath());
+            throw new IOException("[ERROR] Failed writing the jar to the file system. " + e);
+        }
+        return file;
+    }
+
+
+    /**
+     * Unpack the given jar binary and process its entries in a single pass.
+     * Every entry is classified by its extension, transformed and written once to its final path in the given
+     * directory: ExportInfo and LocationData entries are dropped, entries with valid extensions are renamed and
+     * their CDATA or java-script-content is extracted, other entries are written as is.
+     *
+     * @param jarBytes byte[] The jar binary
+     * @param destDir  String The directory to export to
+     */
+    public static void unpackAndProcessJar(byte[] jarBytes, String destDir) throws IOException {
+        System.out.println("Unpacking and parsing the jar to " + destDir);
+        unpackAndProcessJar(jarBytes, (path, content) -> writeFile(new File(destDir, path), content));
+    }
+
+
+    /**
+     * Unpack the given jar binary and pass every processed resource to the given sink in a single pass
+     *
+     * @param jarBytes byte[] The jar binary
+     * @param sink     ResourceSink The sink to pass the processed resources to
+     */
+    public static void unpackAndProcessJar(byte[] jarBytes, ResourceSink sink) throws IOException {
+        unpackAndProcessJar(jarBytes, sink, false);
+    }
+
+
+    /**
+     * Unpack the given jar binary and pass every processed resource to the given sink in a single pass,
+     * optionally formatting the XML resources into the canonical form
+     *
+     * @param jarBytes     byte[] The jar binary
+     * @param sink         ResourceSink The sink to pass the processed resources to
+     * @param canonicalize boolean True to format the XML resources with {@link XmlCanonicalizer}
+     */
+    public static void unpackAndProcessJar(byte[] jarBytes, ResourceSink sink, boolean canonicalize)
+            throws IOException {
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("unpackAndParse");
+             JarInputStream jarInputStream = new JarInputStream(new ByteArrayInputStream(jarBytes))) {
+            phase.addBytes(jarBytes.length);
+            JarEntry entry;
+            while ((entry = jarInputStream.getNextJarEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    processJarEntry(entry.getName(), readEntry(jarInputStream, entry.getSize()), sink, canonicalize);
                 }
                 jarInputStream.closeEntry();
             }
@@ -218,6 +329,154 @@ public class FileUtil {
     }
 
 
+    /**
+     * Unpack the given jar file and pass every processed resource to the given sink in a single pass.
+     * The entries are read through ZipFile, so only one entry at a time is held in memory.
+     *
+     * @param jarFile File The jar file
+     * @param sink    ResourceSink The sink to pass the processed resources to
+     */
+    public static void unpackAndProcessJar(File jarFile, ResourceSink sink) throws IOException {
+        unpackAndProcessJar(jarFile, sink, false);
+    }
+
+
+    /**
+     * Unpack the given jar file and pass every processed resource to the given sink in a single pass,
+     * optionally formatting the XML resources into the canonical form
+     *
+     * @param jarFile      File The jar file
+     * @param sink         ResourceSink The sink to pass the processed resources to
+     * @param canonicalize boolean True to format the XML resources with {@link XmlCanonicalizer}
+     */
+    public static void unpackAndProcessJar(File jarFile, ResourceSink sink, boolean canonicalize) throws IOException {
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("unpackAndParse");
+             ZipFile zipFile = new ZipFile(jarFile)) {
+            phase.addBytes(jarFile.length());
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    try (InputStream in = zipFile.getInputStream(entry)) {
+                        processJarEntry(entry.getName(), readEntry(in, entry.getSize()), sink, canonicalize);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Process a single jar entry and pass the result to the given sink
+     *
+     * @param entryName    String The name of the jar entry
+     * @param content      byte[] The content of the jar entry
+     * @param sink         ResourceSink The sink to pass the processed resource to
+     * @param canonicalize boolean True to format an XML resource with {@link XmlCanonicalizer}
+     */
+    private static void processJarEntry(String entryName, byte[] content, ResourceSink sink, boolean canonicalize)
+            throws IOException {
+        String fileName = entryName.substring(entryName.lastIndexOf('/') + 1);
+        String fileExtension = getFileExtension(new File(fileName));
+        ResourceType type = ResourceTypes.get(fileName, fileExtension);
+
+        if (type == null) {
+            System.out.println("Extension " + fileExtension + " is not supported. Writing " + entryName + " as is");
+            ExportMetrics.get().recordResource(entryName, fileExtension, content.length, 0);
+            sink.accept(entryName, content);
+            return;
+        }
+
+        // Skip the entry if unnecessary
+        if (type.isDropped()) {
+            return;
+        }
+
+        if (canonicalize) {
+            type = type.canonical();
+        }
+
+        long start = System.nanoTime();
+        String path = type.rename(entryName);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length);
+        if (type.transform(content, () -> {
+            bos.reset();
+            return Channels.newChannel(bos);
+        })) {
+            content = bos.toByteArray();
+        }
+        ExportMetrics.get().recordResource(path, type.getExtension(), content.length, System.nanoTime() - start);
+        sink.accept(path, content);
+    }
+
+
+    /**
+     * Write the given content to the given file, creating the parent directories if needed. The content is written
+     * to a temporary file which replaces the file, so that a file hard linked to an object of a {@link SnapshotStore}
+     * is replaced rather than written through, which would change the object of every snapshot using it.
+     *
+     * @param file    File The file to write
+     * @param content byte[] The content to write
+     */
+    static void writeFile(File file, byte[] content) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        // The directory may be created concurrently by another thread writing to the same directory
+        if (!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        Path tmpPath = writeTempFile(parent.toPath(), "." + file.getName(), content);
+        try {
+            Files.move(tmpPath, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+    }
+
+
+    /**
+     * Write the given content to a new temporary file in the given directory. Unlike {@link Files#createTempFile},
+     * which creates the file for the owner only, the file gets the default permissions of the process, e.g.
+     * rw-r--r-- with the umask 022, so that the file it is moved to is as readable as a file written directly.
+     *
+     * @param dir     Path The directory
+     * @param prefix  String The prefix of the name of the temporary file
+     * @param content byte[] The content to write
+     * @return Path The temporary file
+     */
+    static Path writeTempFile(Path dir, String prefix, byte[] content) throws IOException {
+        while (true) {
+            Path tmpPath = dir.resolve(prefix + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmpPath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                out.write(content);
+                return tmpPath;
+            } catch (FileAlreadyExistsException e) {
+                // A name taken by another writer, try another one
+            } catch (IOException e) {
+                Files.deleteIfExists(tmpPath);
+                throw e;
+            }
+        }
+    }
+
+
+    /**
+     * Read the content of a jar entry
+     *
+     * @param in   InputStream The content of the entry
+     * @param size long The size of the entry or -1 if unknown
+     * @return byte[] The content of the entry
+     */
+    private static byte[] readEntry(InputStream in, long size) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int) size : 8192);
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int bytesRead;
+        while ((bytesRead = in.read(buffer)) != -1) {
+            bos.write(buffer, 0, bytesRead);
+        }
+        return bos.toByteArray();
+    }
+
+
     /**
      * Process the files in the given folder. The method will delete unnecessary files, rename the files with valid extensions,
      * and parse the files with CDATA content.
@@ -225,73 +484,231 @@ public class FileUtil {
      * @param folder String The folder to parse
      */
     public static void processFilesInFolder(String folder) {
-        System.out.println("Parsing the files in " + folder);
+        processFilesInFolder(folder, 1);
+    }
+
+
+    /**
+     * Process the files in the given folder using the given number of threads.
+     * The files are processed in the order of their paths. When more than one thread is used, a failure to process
+     * a file does not stop processing of the other files and is reported after all the files are processed.
+     *
+     * @param folder  String The folder to parse
+     * @param threads int The number of threads to process the files with
+     */
+    public static void processFilesInFolder(String folder, int threads) {
+        processFilesInFolder(folder, threads, null, false);
+    }
+
+
+    /**
+     * Process the files in the given folder using the given number of threads, optionally formatting the XML files
+     * into the canonical form, and pass every processed file to the given indexer, e.g. the sink of a dependency
+     * index or of a search index
+     *
+     * @param folder       String The folder to parse
+     * @param threads      int The number of threads to process the files with
+     * @param indexer      ResourceSink The sink to pass the processed files to or null
+     * @param canonicalize boolean True to format the XML files with {@link XmlCanonicalizer}
+     */
+    public static void processFilesInFolder(String folder, int threads, ResourceSink indexer, boolean canonicalize) {
+        System.out.println("Parsing the files in " + folder + (threads > 1 ? " using " + threads + " threads" : ""));
         // Get the list of files in the directory recursively
         List<File> listOfFiles = listFilesRecursively(folder);
+        listOfFiles.sort(Comparator.comparing(File::getPath));
 
-        for (File file : listOfFiles) {
-            if (file.isFile()) {
-                String fileExtension = getFileExtension(file);
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("parse")) {
+            processFiles(folder, listOfFiles, threads, indexer, canonicalize);
+        }
+    }
 
-                // Delete the file if unnecessary
-                if (file.getName().equals("ExportInfo") || fileExtension.equals("LocationData")) {
-                    if (!file.delete()) {
-                        System.out.println("Failed to delete the file: " + file.getPath());
-                    }
-                    continue;
-                }
 
-                if (validExtensions.containsKey(fileExtension)) {
-                    // Rename the file
-                    file = changeFileExtension(file, validExtensions.get(fileExtension));
+    /**
+     * Process the given files in the given folder sequentially or with a pool of the given number of threads
+     *
+     * @param folder       String The folder the files are in
+     * @param listOfFiles  List<File> The files to process
+     * @param threads      int The number of threads to process the files with
+     * @param indexer      ResourceSink The sink to pass the processed files to or null
+     * @param canonicalize boolean True to format the XML files with {@link XmlCanonicalizer}
+     */
+    private static void processFiles(String folder, List<File> listOfFiles, int threads, ResourceSink indexer,
+                                     boolean canonicalize) {
+        Path root = new File(folder).getAbsoluteFile().toPath();
+        if (threads <= 1) {
+            for (File file : listOfFiles) {
+                printMessage(processFile(file, root, indexer, canonicalize));
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>(listOfFiles.size());
+            for (File file : listOfFiles) {
+                futures.add(executor.submit(() -> processFile(file, root, indexer, canonicalize)));
+            }
 
-                    // Parse the file
-                    parseFile(file);
-                } else {
-                    System.out.println("Extension " + fileExtension + " is not supported. Skipping " + file.getPath());
+            // Report in the order of the files to keep the output deterministic
+            int failed = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    printMessage(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.out.println("[ERROR] Failed processing the file " + listOfFiles.get(i).getPath() + ". " + e.getCause());
                 }
             }
+            if (failed > 0) {
+                System.out.println("[ERROR] Failed processing " + failed + " of " + listOfFiles.size() + " files");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing the files in " + folder, e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * Process the given file. Delete the file if unnecessary, otherwise rename and parse it if its extension is valid.
+     *
+     * @param file         File The file to process
+     * @param root         Path The folder the paths of the files in the index are relative to
+     * @param indexer      ResourceSink The sink to pass the processed file to or null
+     * @param canonicalize boolean True to format an XML file with {@link XmlCanonicalizer}
+     * @return String The message to report or null if there is nothing to report
+     */
+    private static String processFile(File file, Path root, ResourceSink indexer, boolean canonicalize) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        String fileExtension = getFileExtension(file);
+        ResourceType type = ResourceTypes.get(file.getName(), fileExtension);
+
+        // Delete the file if unnecessary
+        if (type != null && type.isDropped()) {
+            if (!file.delete()) {
+                return "Failed to delete the file: " + file.getPath();
+            }
+            return null;
+        }
+
+        if (type != null) {
+            long start = System.nanoTime();
+            if (canonicalize) {
+                type = type.canonical();
+            }
+
+            // Rename the file
+            if (type.getExtension() != null) {
+                file = changeFileExtension(file, type.getExtension());
+            }
+
+            // Transform the file
+            transformFile(file, type);
+            ExportMetrics.get().recordResource(file.getPath(), type.getExtension(), file.length(),
+                    System.nanoTime() - start);
+            return addToIndex(file, root, indexer);
+        }
+
+        ExportMetrics.get().recordResource(file.getPath(), fileExtension, file.length(), 0);
+        String message = addToIndex(file, root, indexer);
+        return message != null ? message : "Extension " + fileExtension + " is not supported. Skipping " + file.getPath();
+    }
+
+
+    /**
+     * Pass the given processed file to the given indexer
+     *
+     * @param file    File The processed file
+     * @param root    Path The folder the paths of the files in the index are relative to
+     * @param indexer ResourceSink The sink to pass the file to or null
+     * @return String The message to report or null if there is nothing to report
+     */
+    private static String addToIndex(File file, Path root, ResourceSink indexer) {
+        if (indexer == null) {
+            return null;
+        }
+        try {
+            indexer.accept(root.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/'),
+                    Files.readAllBytes(file.toPath()));
+            return null;
+        } catch (IOException e) {
+            return "Failed to index the file: " + file.getPath();
+        }
+    }
+
+
+    private static void printMessage(String message) {
+        if (message != null) {
+            System.out.println(message);
         }
     }
 
 
     /**
      * The method tries to parse the file as an XML.
-     * If the content of the first child is CDATA, write the content of the CDATA to the file
+     * If the content of the first child is CDATA, write the content of the CDATA to the file.
+     * The file is read with a streaming parser and replaced only when the content is completely extracted.
      *
      * @param file File The file to parse
      */
     public static void parseFile(File file) {
-        // Parse the file as XML
-        Document doc;
+        transformFile(file, EMBEDDED_CONTENT);
+    }
+
+
+    /**
+     * Transform the given file with the transformers of the given resource type.
+     * The transformed content is written to a temporary file, which replaces the file only when it is complete.
+     *
+     * @param file File The file to transform
+     * @param type ResourceType The resource type of the file
+     */
+    static void transformFile(File file, ResourceType type) {
+        Path path = file.toPath();
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        boolean transformed;
         try {
-            doc = getXmlDocFromFile(file);
-        } catch (ParserConfigurationException | IOException | SAXException e) {
+            transformed = type.transform(path, () -> openChannel(tmpPath));
+        } catch (IOException e) {
+            deleteQuietly(tmpPath);
+            System.out.println("Failed to write the embedded content to the file: " + file.getPath());
             return;
         }
 
-        Element root = doc.getDocumentElement();
-        Node child = root.getFirstChild().getNextSibling().getFirstChild();
-        if (child == null) {
+        if (!transformed) {
+            deleteQuietly(tmpPath);
             return;
         }
+        try {
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            deleteQuietly(tmpPath);
+            System.out.println("Failed to write the embedded content to the file: " + file.getPath());
+        }
+    }
 
-        if (child.getNodeType() == Node.CDATA_SECTION_NODE) {
-            String nodeValue = child.getNodeValue();
-            // Write the nodeValue to the file
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                fos.write(nodeValue.getBytes());
-            } catch (IOException e) {
-                System.out.println("Failed to write the content of the CDATA to the file: " + file.getPath());
-            }
-        } else if (root.getLocalName().equals("javaScriptEntry")) {
-            // Write the content of the java-script-content to the file
-            String nodeValue = child.getTextContent();
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                fos.write(nodeValue.getBytes());
-            } catch (IOException e) {
-                System.out.println("Failed to write the content of the java-script-content to the file: " + file.getPath());
-            }
+
+    /**
+     * Open the channel to write the file from scratch
+     *
+     * @param path Path The file to write
+     * @return FileChannel The channel
+     */
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
         }
     }
 
@@ -304,13 +721,23 @@ public class FileUtil {
      */
     public static Document getXmlDocFromFile(File file) throws ParserConfigurationException, IOException, SAXException {
 
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        dbf.setValidating(false);
-        DocumentBuilder db = dbf.newDocumentBuilder();
+        DocumentBuilder db = newDocumentBuilder();
         Document doc = db.parse(file);
         doc.getDocumentElement().normalize();
 
         return doc;
     }
+
+
+    /**
+     * Create a namespace aware, non-validating document builder
+     *
+     * @return DocumentBuilder The document builder
+     */
+    private static DocumentBuilder newDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        dbf.setValidating(false);
+        return dbf.newDocumentBuilder();
+    }
 }
@@ -0,0 +1,86 @@
+package osbProjectExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+
+/**
+ * Writes the processed resources to the export directory incrementally. A resource is written only if its hash
+ * differs from the one in the manifest of the previous export. The resources that are no longer exported are
+ * deleted when the export is finished.
+ */
+public class IncrementalWriter implements ExportWriter {
+
+    private final File exportDir;
+    private final ExportManifest previousManifest;
+    private final ExportManifest manifest = new ExportManifest();
+
+    private int added;
+    private int changed;
+    private int unchanged;
+
+
+    public IncrementalWriter(String exportDir) throws IOException {
+        this.exportDir = new File(exportDir);
+        this.previousManifest = ExportManifest.load(this.exportDir);
+    }
+
+
+    @Override
+    public synchronized void accept(String path, byte[] content) throws IOException {
+        String hash = ExportManifest.hash(content);
+        manifest.put(path, hash);
+
+        File file = new File(exportDir, path);
+        String previousHash = previousManifest.getHash(path);
+        if (hash.equals(previousHash) && file.isFile()) {
+            unchanged++;
+            return;
+        }
+
+        FileUtil.writeFile(file, content);
+        if (previousHash == null) {
+            added++;
+        } else {
+            changed++;
+        }
+    }
+
+
+    /**
+     * Delete the resources that are no longer exported, save the manifest and report the changes
+     *
+     * @return String The summary of the changes
+     */
+    @Override
+    public synchronized String finish() throws IOException {
+        int removed = 0;
+        for (String path : previousManifest.getPaths()) {
+            if (manifest.getHash(path) == null) {
+                File file = new File(exportDir, path);
+                Files.deleteIfExists(file.toPath());
+                deleteEmptyParents(file);
+                removed++;
+            }
+        }
+        manifest.save(exportDir);
+
+        String summary = "Incremental export to " + exportDir + ": " + added + " added, " + changed + " changed, " +
+                removed + " removed, " + unchanged + " unchanged";
+        System.out.println(summary);
+        return summary;
+    }
+
+
+    private void deleteEmptyParents(File file) {
+        File parent = file.getParentFile();
+        while (parent != null && !parent.equals(exportDir)) {
+            String[] children = parent.list();
+            if (children == null || children.length > 0 || !parent.delete()) {
+                return;
+            }
+            parent = parent.getParentFile();
+        }
+    }
+}
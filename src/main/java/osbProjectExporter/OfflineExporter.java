@@ -0,0 +1,168 @@
+package osbProjectExporter;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Processes sbconfig jars exported earlier, e.g. by another tool or kept as backups, without a server:
+ * '--from-jar=file|dir [exportDir] [options]'. Only the local pipeline runs, the same as for a jar exported
+ * from the server, so no JMX connection is opened and no WebLogic or OSB class is loaded.
+ * <p>
+ * A single jar is processed to exportDir. The jars of a directory are processed concurrently, limited by
+ * the option '--concurrency', each to its own folder in exportDir named after the jar.
+ */
+public class OfflineExporter {
+
+    /**
+     * The options that select resources by reference before the export call and need a server
+     */
+    private static final List<String> SERVER_OPTIONS = Arrays.asList(
+            "include-types", "exclude-types", "include-paths", "exclude-paths", "closure", "domain", "watch", "resume");
+
+
+    /**
+     * Process the jars given in the option '--from-jar'
+     *
+     * @param args String[] The arguments
+     * @return boolean True if all the jars were processed successfully
+     */
+    static boolean run(String[] args) {
+        Map<String, String> parsedArgs = new HashMap<>();
+        String[] positionalArgs = OsbProjectExporter.parseOptions(args, parsedArgs);
+        String source = parsedArgs.get("from-jar");
+        if (source == null || source.equals("true") || positionalArgs.length > 1) {
+            System.out.println("[ERROR] Incorrect arguments of the offline export, e.g. --from-jar=sbconfig.jar exportDir\n" +
+                    OsbProjectExporter.USAGE);
+            return false;
+        }
+        for (String option : SERVER_OPTIONS) {
+            if (parsedArgs.containsKey(option)) {
+                System.out.println("[ERROR] The option '" + option + "' needs a server and cannot be used with 'from-jar'.");
+                return false;
+            }
+        }
+        try {
+            OsbProjectExporter.checkOptions(parsedArgs);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+
+        List<File> jars = listJars(new File(source));
+        if (jars.isEmpty()) {
+            System.out.println("[ERROR] No jar found in " + source);
+            return false;
+        }
+        if (positionalArgs.length == 1) {
+            parsedArgs.put("exportDir", positionalArgs[0].trim());
+        } else {
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+            parsedArgs.put("exportDir", System.getProperty("user.dir") + File.separator + "OSBExport" +
+                    File.separator + "OSBExport_" + getName(jars.size() == 1 ? jars.get(0) : new File(source)) +
+                    "_" + timestamp);
+        }
+        return export(jars, parsedArgs);
+    }
+
+
+    /**
+     * Process the given jars to the export directory, each to its own folder if there are several
+     *
+     * @param jars List<File> The jars
+     * @param args Map<String, String> The arguments
+     * @return boolean True if all the jars were processed successfully
+     */
+    public static boolean export(List<File> jars, Map<String, String> args) {
+        ExportMetrics.reset();
+        long start = System.currentTimeMillis();
+        int concurrency = Math.min(Integer.parseInt(args.getOrDefault("concurrency", "4")), jars.size());
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        Map<File, Future<Long>> results = new LinkedHashMap<>();
+        try {
+            for (File jar : jars) {
+                results.put(jar, executor.submit(() -> processJar(jar, jarArgs(jar, args, jars.size() > 1))));
+            }
+
+            int failed = 0;
+            StringBuilder summary = new StringBuilder("Offline export summary:");
+            for (Map.Entry<File, Future<Long>> result : results.entrySet()) {
+                summary.append("\n   ").append(result.getKey().getName()).append(": ");
+                try {
+                    long millis = result.getValue().get();
+                    summary.append("OK (").append(millis).append(" ms)");
+                } catch (ExecutionException e) {
+                    failed++;
+                    summary.append("FAILED. ").append(e.getCause().getMessage());
+                }
+            }
+            summary.append("\nProcessed ").append(jars.size() - failed).append(" of ").append(jars.size())
+                    .append(" jars to ").append(args.getOrDefault("archive", args.get("exportDir"))).append(" in ")
+                    .append(System.currentTimeMillis() - start).append(" ms");
+            System.out.println(summary);
+            return failed == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[ERROR] Interrupted while processing the jars");
+            return false;
+        } finally {
+            executor.shutdownNow();
+            OsbProjectExporter.writeReport(args);
+        }
+    }
+
+
+    /**
+     * @param source File A jar or a directory
+     * @return List<File> The jar, or the jars in the directory sorted by name
+     */
+    static List<File> listJars(File source) {
+        if (source.isFile()) {
+            return Collections.singletonList(source);
+        }
+        File[] files = source.listFiles(file -> file.isFile() && file.getName().toLowerCase().endsWith(".jar"));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+
+    /**
+     * The arguments of the given jar: its own folder in the export directory, its own archive and its name
+     * as the export name, if several jars are processed
+     */
+    private static Map<String, String> jarArgs(File jar, Map<String, String> args, boolean several) {
+        Map<String, String> jarArgs = new HashMap<>(args);
+        String name = getName(jar);
+        jarArgs.put("projectName", name);
+        if (several) {
+            jarArgs.put("exportDir", args.get("exportDir") + File.separator + name);
+            if (args.containsKey("archive")) {
+                jarArgs.put("archive", OsbProjectExporter.getProjectArchive(args.get("archive"), name));
+            }
+        }
+        return jarArgs;
+    }
+
+
+    private static long processJar(File jar, Map<String, String> args) throws Exception {
+        long start = System.currentTimeMillis();
+        System.out.println("Processing " + jar);
+        OsbProjectExporter.processJar(null, jar, args);
+        return System.currentTimeMillis() - start;
+    }
+
+
+    private static String getName(File file) {
+        String name = file.getName();
+        return name.toLowerCase().endsWith(".jar") ? name.substring(0, name.length() - 4) : name;
+    }
+}
@@ -0,0 +1,228 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import com.bea.wli.config.importexport.EncryptionScope;
+import com.bea.wli.config.mbeans.ConfigMBean;
+import com.bea.wli.config.project.ResourceMetadata;
+import com.bea.wli.config.resource.Digest;
+import com.bea.wli.sb.management.configuration.ALSBConfigurationMBean;
+
+import javax.management.JMX;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import javax.naming.Context;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A connection to the Runtime MBean Server of the Admin server with the OSB MBean proxies created once per connection.
+ * The MBean proxies may be used concurrently, so several exports can run over the same connection.
+ */
+public class OsbConnection implements Closeable {
+
+    public static final String DOMAIN_RUNTIME = "weblogic.management.mbeanservers.domainruntime";
+
+    private final String url;
+    private final JMXConnector connector;
+    private final MBeanServerConnection connection;
+    private ConfigMBean configMBean;
+    private ALSBConfigurationMBean alsbConfigurationMBean;
+
+
+    private OsbConnection(String url, JMXConnector connector) throws IOException {
+        this.url = url;
+        this.connector = connector;
+        this.connection = connector.getMBeanServerConnection();
+    }
+
+
+    /**
+     * Open a connection to the Runtime MBean Server
+     *
+     * @param url,          String, t3 URL of the Admin server, or a complete JMX service URL starting with
+     *                      'service:jmx:' to connect to another MBean server, e.g. a local stand-in of the Admin server
+     * @param username,     String, WLS user part of security group Administrators
+     * @param password,     String, WLS user password
+     * @param mbServerType, MBeanServer type, e.g. "weblogic.management.mbeanservers.domainruntime" or
+     *                      "weblogic.management.mbeanservers.runtime"
+     * @return OsbConnection The open connection
+     */
+    public static OsbConnection open(String url, String username, String password, String mbServerType)
+            throws Exception {
+        String jndiRoot = "/jndi/";
+        boolean serviceUrl = url.startsWith("service:jmx:");
+        JMXServiceURL serviceURL = new JMXServiceURL(serviceUrl ? url : "service:jmx:" + url + jndiRoot + mbServerType);
+        HashMap<String, Object> connectionMap = new HashMap<>();
+        if (!serviceUrl) {
+            connectionMap.put(JMXConnectorFactory.PROTOCOL_PROVIDER_PACKAGES, "weblogic.management.remote");
+        }
+        connectionMap.put(Context.SECURITY_PRINCIPAL, username);
+        connectionMap.put(Context.SECURITY_CREDENTIALS, password);
+        connectionMap.put("jmx.remote.x.request.waiting.timeout", 30000L);
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("connect")) {
+            return new OsbConnection(url, JMXConnectorFactory.connect(serviceURL, connectionMap));
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed connecting to " + url + ". " + e);
+            throw new Exception("[ERROR] Failed to connect to " + url + ". " + e);
+        }
+    }
+
+
+    /**
+     * @return String The URL the connection is open to
+     */
+    public String getUrl() {
+        return url;
+    }
+
+
+    /**
+     * Get the names of all the projects in the domain
+     *
+     * @return Set<Ref> The project references
+     */
+    public Set<Ref> getProjects() throws Exception {
+        try {
+            return getALSBConfigurationMBean().getProjects();
+        } catch (Exception e) {
+            throw new Exception("[ERROR] Failed getting the projects. " + e);
+        }
+    }
+
+
+    /**
+     * Get the project references
+     *
+     * @param projectName String The project name
+     * @return Set<Ref> The project references
+     */
+    public Set<Ref> getResourceRefs(String projectName) throws Exception {
+        ALSBConfigurationMBean alsbCore = getALSBConfigurationMBean();
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("getResourceRefs")) {
+            return alsbCore.getRefs(new Ref("Project", Ref.DOMAIN, projectName));
+        } catch (Exception e) {
+            throw new RuntimeException("[ERROR] Failed getting the project references for project " +
+                    projectName + ". " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Get the resources the given resource depends on directly
+     *
+     * @param ref Ref The resource
+     * @return Set<Ref> The dependencies
+     */
+    public Set<Ref> getDependencies(Ref ref) throws Exception {
+        ConfigMBean configMBean = getConfigMBean();
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("getDependencies")) {
+            return configMBean.getDependencies(ref);
+        }
+    }
+
+
+    /**
+     * Get a cheap fingerprint of every given resource from its metadata, without exporting it: the version and
+     * the content fingerprint of the resource's digest, which change whenever the resource is changed
+     *
+     * @param refs Set<Ref> The resources
+     * @return Map<Ref, String> The fingerprints by resource, without the resources that have no digest
+     */
+    public Map<Ref, String> getFingerprints(Set<Ref> refs) throws Exception {
+        ConfigMBean configMBean = getConfigMBean();
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("getFingerprints")) {
+            Map<Ref, String> fingerprints = new HashMap<>();
+            for (Map.Entry<Ref, ResourceMetadata> entry : configMBean.getResourceMetadata(refs).entrySet()) {
+                Digest digest = entry.getValue() == null ? null : entry.getValue().getDigest();
+                if (digest != null) {
+                    fingerprints.put(entry.getKey(), digest.getVersion() + "-" + Long.toHexString(digest.getFingerprint()));
+                }
+            }
+            return fingerprints;
+        }
+    }
+
+
+    /**
+     * Export the given resources as a jar
+     *
+     * @param refs                Collection<Ref> The resources to export
+     * @param includeDependencies boolean True to export the dependencies of the resources too
+     * @return byte[] The jar as a byte array
+     */
+    public byte[] export(Collection<Ref> refs, boolean includeDependencies) throws Exception {
+        ConfigMBean configMBean = getConfigMBean();
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("export")) {
+            byte[] jarBinary = configMBean.export(refs, includeDependencies, EncryptionScope.NoEncryption, null);
+            phase.addBytes(jarBinary.length);
+            ExportMetrics.get().addBytesTransferred(jarBinary.length);
+            return jarBinary;
+        }
+    }
+
+
+    /**
+     * Close the connection
+     */
+    @Override
+    public void close() throws IOException {
+        connector.close();
+    }
+
+
+    /**
+     * The method returns ConfigMBean for the connection. The proxy is created once per connection.
+     *
+     * @return ConfigMBean
+     */
+    public synchronized ConfigMBean getConfigMBean() throws Exception {
+        if (configMBean == null) {
+            try {
+                configMBean = JMX.newMBeanProxy(
+                        connection,
+                        ObjectName.getInstance(
+                                "com.bea.wli.config:Name=Config.ServiceBus,Type=com.bea.wli.config.mbeans.ConfigMBean"),
+                        ConfigMBean.class);
+            } catch (Exception e) {
+                System.out.println(new Timestamp(System.currentTimeMillis())
+                        + " [ERROR] Could not get ConfigMBean");
+                connector.close();
+                throw new Exception("[ERROR] Could not get ConfigMBean");
+            }
+        }
+        return configMBean;
+    }
+
+
+    /**
+     * The method returns ALSBConfigurationMBean for the connection. The proxy is created once per connection.
+     *
+     * @return ALSBConfigurationMBean
+     */
+    public synchronized ALSBConfigurationMBean getALSBConfigurationMBean() throws Exception {
+        if (alsbConfigurationMBean == null) {
+            try {
+                alsbConfigurationMBean = JMX.newMBeanProxy(
+                        connection,
+                        ObjectName.getInstance("com.bea:Name=" + ALSBConfigurationMBean.NAME +
+                                ",Type=" + ALSBConfigurationMBean.TYPE),
+                        ALSBConfigurationMBean.class);
+            } catch (Exception e) {
+                System.out.println(new Timestamp(System.currentTimeMillis())
+                        + " [ERROR] Could not get ALSBConfigurationMBean");
+                connector.close();
+                throw new Exception("[ERROR] Could not get ALSBConfigurationMBean");
+            }
+        }
+        return alsbConfigurationMBean;
+    }
+}
@@ -1,10 +1,21 @@
 package osbProjectExporter;
 
 import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /**
@@ -13,16 +24,150 @@ import java.util.Map;
 public class OsbProjectExporter {
 
     public static final String USAGE = "Usage:\n" +
-            "java -jar OsbProjectExporter.jar [url userName password projectName [exportDir]]\n" +
+            "java -jar OsbProjectExporter.jar [url userName password projectName [exportDir]] [options]\n" +
+            "java -jar OsbProjectExporter.jar url userName password [exportDir] --domain [options]\n" +
+            "java -jar OsbProjectExporter.jar query exportDir dependencies|dependents resource [--transitive]\n" +
+            "java -jar OsbProjectExporter.jar search exportDir term...\n" +
+            "java -jar OsbProjectExporter.jar pack exportDir jarFile [--parallel[=threads]] [--all]\n" +
+            "java -jar OsbProjectExporter.jar daemon configFile\n" +
+            "java -jar OsbProjectExporter.jar drift configFile projectName [options]\n" +
+            "java -jar OsbProjectExporter.jar --from-jar=file|dir [exportDir] [options]\n" +
+            "java -jar OsbProjectExporter.jar verify url userName password projectName exportDir [options]\n" +
+            "java -jar OsbProjectExporter.jar store list|gc storeDir [--keep=n]\n" +
+            "java -jar OsbProjectExporter.jar store checkout storeDir exportName[/timestamp] targetDir [--materialize=link|copy]\n" +
             "where\n" +
             "   url: Required. WLS Admin host and port to connect to over t3 protocol. Required. E.g. 't3://localhost:7001'.\n" +
+            "       A complete JMX service URL starting with 'service:jmx:' is used as is.\n" +
             "   userName: User name to connect to WLS Admin server. Required.\n" +
             "   password: User password to connect to WLS Admin server. Required.\n" +
-            "   projectName: An OSB project name to be exported. Required.\n" +
-            "   exportDir: Path on the local machine to export to. Optional. Default: current directory.";
+            "   projectName: An OSB project name to be exported. Required. Several projects can be given as a comma separated\n" +
+            "       list, e.g. 'Project_1,Project_2', or as '@file' with one project name per line. Each project is exported\n" +
+            "       to its own folder in exportDir over one shared connection.\n" +
+            "   exportDir: Path on the local machine to export to. Optional. Default: current directory.\n" +
+            "   configFile: The properties file with the environments, e.g. environment.dev.url=t3://localhost:7001,\n" +
+            "       environment.dev.userName and environment.dev.password. The 'drift' command exports the projects from all\n" +
+            "       the environments concurrently and reports the resources that are missing or differ between them.\n" +
+            "   The 'verify' command compares exportDir with the project on the server without writing any files and lists\n" +
+            "       the missing, differing and extra files.\n" +
+            "   The 'pack' command packs exportDir back into an sbconfig jar that can be imported into OSB: the files are\n" +
+            "       renamed to their OSB types, the unwrapped payloads are wrapped into their entries again and the ExportInfo\n" +
+            "       is generated. If exportDir has a manifest, e.g. of an --incremental export, only the changed files are packed.\n" +
+            "options:\n" +
+            "   --from-jar=file|dir: Process an sbconfig jar exported earlier, or all the jars in a directory, without a server.\n" +
+            "       No connection is opened. Several jars are processed concurrently, limited by --concurrency, each to\n" +
+            "       the folder in exportDir named after the jar.\n" +
+            "   --streaming: Process the jar entries while unpacking and write every file once to its final path.\n" +
+            "   --parallel[=threads]: Process the files in parallel. Default number of threads: number of cores.\n" +
+            "   --concurrency=n: The number of projects exported concurrently when several projects are given. Default: 4.\n" +
+            "   --incremental: Write only the files changed since the previous export to exportDir and delete the files\n" +
+            "       that are no longer exported. The hashes of the exported files are kept in exportDir/" +
+            ExportManifest.FILE_NAME + ".\n" +
+            "   --spill-threshold=mb: Write an exported jar larger than the given size in MB to a temporary file and unpack\n" +
+            "       it from there, so that the jar is not kept in memory. The peak heap usage is reported.\n" +
+            "   --report=file: Write the duration of the export phases, the throughput and the slowest resources\n" +
+            "       as JSON to the given file and print a summary.\n" +
+            "   --index: Index the references between the exported resources in exportDir/" + DependencyIndex.FILE_NAME + ",\n" +
+            "       so that they can be queried with the 'query' command.\n" +
+            "   --search-index: Index the words, namespaces, endpoint URIs and references of the exported resources in\n" +
+            "       exportDir/" + SearchIndex.FILE_NAME + ", so that they can be searched with the 'search' command, e.g.\n" +
+            "       'search exportDir uri:http://host:8011/* ext:bix'. Only the changed resources are indexed again.\n" +
+            "   --domain: Export all the projects of the domain in shards over a pool of connections. No projectName is given.\n" +
+            "   --connections=n: The number of connections to export the domain over. Default: " +
+            DomainExporter.DEFAULT_CONNECTIONS + ".\n" +
+            "   --shard-size=n: The maximum number of resources exported in one call when exporting the domain. Default: " +
+            DomainExporter.DEFAULT_SHARD_SIZE + ".\n" +
+            "   --store=dir: Store the exported resources once by their hash in the given snapshot store and keep every export\n" +
+            "       as a snapshot of the paths and hashes, which is materialized to exportDir. Only the changed files are replaced.\n" +
+            "   --materialize=link|copy|none: How a snapshot is materialized: with hard links to the store, with copies or not\n" +
+            "       at all. The linked files are read-only. Default: link.\n" +
+            "   --archive=file: Write the processed resources straight into the given .zip, .tar.gz or .tgz archive instead of\n" +
+            "       exportDir, compressed in parallel with the threads given in --parallel. With several projects, every project\n" +
+            "       is archived to its own file, e.g. export_Project_1.zip.\n" +
+            "   --include-types=types, --exclude-types=types: Export only the resources of the given types, e.g. XMLSchema,WSDL,\n" +
+            "       or not of the given types. The resources are selected before the export call.\n" +
+            "   --include-paths=globs, --exclude-paths=globs: Export only the resources whose full name matches one of the given\n" +
+            "       globs, or none of them, e.g. 'Project/Contracts/**'. '**' matches any folders, '*' any part of a name.\n" +
+            "   --closure: With the filters above, export the dependencies of the selected resources too.\n" +
+            "       Without it, only the selected resources are exported.\n" +
+            "   --canonicalize: Format the exported XML resources in a canonical form: indented by two spaces, attributes\n" +
+            "       and namespace declarations sorted and redundant namespace declarations dropped, so that diffs stay small.\n" +
+            "   --watch[=seconds]: Keep polling the server at the given interval and export only the resources changed since\n" +
+            "       the last poll, detected by the version and fingerprint of every resource, to exportDir. The files of removed\n" +
+            "       resources are deleted. Works with projectName or --domain and the filters above. Default interval: " +
+            ChangeWatcher.DEFAULT_INTERVAL + ".\n" +
+            "   --resume: Export in batches of --shard-size resources, retrying a failed batch with backoff, and record the\n" +
+            "       progress in exportDir/" + ResumableExport.DIR_NAME + ". A failed export is resumed from the last processed batch\n" +
+            "       by running it again. exportDir is written only when all the batches are done. For one project or --domain.\n" +
+            "   --keep=n: With the 'store gc' command, the number of the latest snapshots kept per export. Default: " +
+            SnapshotStore.DEFAULT_KEEP + ".\n" +
+            "   --all: With the 'pack' command, pack all the files of exportDir, also the ones unchanged since the export.\n" +
+            "   --transitive: With the 'query' command, list the dependencies or dependents of the dependencies or dependents too.";
+
+    public static final Set<String> OPTIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "streaming", "parallel", "concurrency", "incremental", "spill-threshold", "report", "index",
+            "domain", "connections", "shard-size", "transitive", "store", "materialize", "keep",
+            "archive", "canonicalize", "include-types", "exclude-types", "include-paths", "exclude-paths",
+            "closure", "watch", "resume", "from-jar", "search-index", "all")));
+
+    private static final Set<String> MATERIALIZE_MODES = new HashSet<>(Arrays.asList("link", "copy", "none"));
 
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("query")) {
+            if (!query(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("search")) {
+            if (!search(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("pack")) {
+            if (!ResourcePacker.run(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("store")) {
+            if (!store(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        for (String arg : args) {
+            if (arg.startsWith("--from-jar")) {
+                // Without a server, so that no WebLogic class is loaded
+                if (!OfflineExporter.run(args)) {
+                    System.exit(1);
+                }
+                return;
+            }
+        }
+        if (args.length > 0 && args[0].equals("drift")) {
+            if (!DriftReport.run(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("verify")) {
+            if (!ExportVerifier.run(args)) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length == 2 && args[0].equals("daemon")) {
+            try {
+                ExporterDaemon.run(args[1]);
+            } catch (Exception e) {
+                System.out.println("[ERROR] Failed to run the exporter daemon. " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
         if (args.length < 4) {
             System.out.println("The utility exports the given OSB project sources and its dependencies from the given environment.\n" +
                     USAGE);
@@ -31,6 +176,35 @@ public class OsbProjectExporter {
 
         Map<String, String> parsedArgs = parseArgs(args);
 
+        if (parsedArgs.containsKey("watch")) {
+            if (!ChangeWatcher.watch(parsedArgs)) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (parsedArgs.containsKey("resume")) {
+            if (!ResumableExport.export(parsedArgs)) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        if (parsedArgs.containsKey("domain")) {
+            if (!DomainExporter.exportDomain(parsedArgs)) {
+                System.exit(1);
+            }
+            return;
+        }
+
+        List<String> projects = Arrays.asList(parsedArgs.get("projects").split(","));
+        if (projects.size() > 1) {
+            if (!exportProjectsFromServer(parsedArgs, projects)) {
+                System.exit(1);
+            }
+            return;
+        }
+
         try {
             exportProjectJarFromServer(parsedArgs);
         } catch (Exception e) {
@@ -46,25 +220,31 @@ public class OsbProjectExporter {
      * @return Map<String, String> A map with the parsed arguments
      */
     public static Map<String, String> parseArgs(String[] args) {
-        if (args.length < 4) {
+        Map<String, String> parsedArgs = new HashMap<>();
+
+        // Options
+        args = parseOptions(args, parsedArgs);
+        parseOptionValues(parsedArgs);
+
+        boolean domain = parsedArgs.containsKey("domain");
+        int requiredArgs = domain ? 3 : 4;
+        if (args.length < requiredArgs) {
             System.out.println("[ERROR] Incorrect number of arguments.\n" +
                     USAGE);
             System.exit(1);
         }
 
-        Map<String, String> parsedArgs = new HashMap<>();
-
         // URL
         String url = args[0].trim();
         if (url.isEmpty()) {
             System.out.println("[ERROR] The given URL cannot be empty. E.g. t3://localhost:7001");
             System.exit(1);
         }
-        if (!url.startsWith("t3://")) {
+        if (!url.startsWith("t3://") && !url.startsWith("service:jmx:")) {
             System.out.println("[ERROR] The given URL must start with 't3://'. E.g. t3://localhost:7001");
             System.exit(1);
         }
-        if (!url.substring(6).contains(":")) {
+        if (url.startsWith("t3://") && !url.substring(6).contains(":")) {
             System.out.println("[ERROR] The given URL must contain a port number. E.g. t3://localhost:7001");
             System.exit(1);
         }
@@ -87,23 +267,38 @@ public class OsbProjectExporter {
         parsedArgs.put("password", password);
 
         // Project name
-        String projectName = args[3].trim();
-        if (projectName.isEmpty()) {
-            System.out.println("[ERROR] The given project name cannot be empty.");
-            System.exit(1);
+        String exportName = "domain";
+        if (!domain) {
+            String projectName = args[3].trim();
+            if (projectName.isEmpty()) {
+                System.out.println("[ERROR] The given project name cannot be empty.");
+                System.exit(1);
+            }
+            parsedArgs.put("projectName", projectName);
+
+            List<String> projects = parseProjectNames(projectName);
+            if (projects.isEmpty()) {
+                System.out.println("[ERROR] The given project list " + projectName + " is empty.");
+                System.exit(1);
+            }
+            parsedArgs.put("projects", String.join(",", projects));
+            if (projects.size() > 1 && parsedArgs.containsKey("resume")) {
+                System.out.println("[ERROR] The option 'resume' exports one project or the domain.");
+                System.exit(1);
+            }
+            exportName = projects.size() > 1 ? "batch" : projectName;
         }
-        parsedArgs.put("projectName", projectName);
 
         // Path
-        if (args.length == 5) {
-            String path = args[4].trim();
+        if (args.length > requiredArgs) {
+            String path = args[requiredArgs].trim();
             parsedArgs.put("exportDir", path);
         } else {
             // Create default path in the current directory
             String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
             String exportDir = System.getProperty("user.dir") + File.separator
                     + "OSBExport" + File.separator
-                    + "OSBExport_" + projectName + "_" + timestamp;
+                    + "OSBExport_" + exportName + "_" + timestamp;
             parsedArgs.put("exportDir", exportDir);
         }
 
@@ -111,27 +306,669 @@ public class OsbProjectExporter {
     }
 
 
+    /**
+     * Validate the values of the parsed options and normalize the numbers, e.g. the default number of threads
+     * of '--parallel'. An invalid option is reported and the utility exits.
+     *
+     * @param parsedArgs Map<String, String> The parsed options
+     */
+    static void parseOptionValues(Map<String, String> parsedArgs) {
+        try {
+            checkOptions(parsedArgs);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+
+    /**
+     * Validate the given options and normalize the numbers, e.g. the default number of threads of '--parallel'
+     *
+     * @param options Map<String, String> The options, also other arguments such as 'exportDir'
+     * @throws IllegalArgumentException If an option is unknown or has an invalid value
+     */
+    static void checkOptions(Map<String, String> options) {
+        if (options.containsKey("parallel")) {
+            options.put("parallel", String.valueOf(parseThreads(options.get("parallel"))));
+        }
+        if (options.containsKey("concurrency")) {
+            options.put("concurrency", String.valueOf(parsePositiveInt(options.get("concurrency"), "concurrency")));
+        }
+        if (options.containsKey("spill-threshold")) {
+            parsePositiveInt(options.get("spill-threshold"), "spill-threshold");
+        }
+        if (options.containsKey("connections")) {
+            options.put("connections", String.valueOf(parsePositiveInt(options.get("connections"), "connections")));
+        }
+        if (options.containsKey("shard-size")) {
+            options.put("shard-size", String.valueOf(parsePositiveInt(options.get("shard-size"), "shard-size")));
+        }
+        if ("true".equals(options.get("report"))) {
+            throw new IllegalArgumentException("[ERROR] The option 'report' requires a file, e.g. --report=export-report.json");
+        }
+        if ("true".equals(options.get("store"))) {
+            throw new IllegalArgumentException("[ERROR] The option 'store' requires a directory, e.g. --store=/var/osb/store");
+        }
+        if (options.containsKey("archive") && !ArchiveWriter.isSupported(options.get("archive"))) {
+            throw new IllegalArgumentException(
+                    "[ERROR] The option 'archive' requires a .zip, .tar.gz or .tgz file, e.g. --archive=export.zip");
+        }
+        if (options.containsKey("archive") && (options.containsKey("store") || options.containsKey("incremental"))) {
+            throw new IllegalArgumentException("[ERROR] The option 'archive' cannot be combined with 'store' or 'incremental'.");
+        }
+        if (options.containsKey("materialize") && !MATERIALIZE_MODES.contains(options.get("materialize"))) {
+            throw new IllegalArgumentException("[ERROR] The value of the option --materialize must be one of link, copy or none.");
+        }
+        for (String type : RefFilter.fromArgs(options).getTypes()) {
+            if (!FileUtil.validExtensions.containsKey(type)) {
+                throw new IllegalArgumentException("[ERROR] Unknown resource type '" + type + "'. Valid types: " +
+                        new TreeSet<>(FileUtil.validExtensions.keySet()));
+            }
+        }
+        if (options.containsKey("watch")) {
+            String watch = options.get("watch");
+            options.put("watch", String.valueOf(watch.equals("true") ? ChangeWatcher.DEFAULT_INTERVAL
+                    : parsePositiveInt(watch, "watch")));
+            if (options.containsKey("archive") || options.containsKey("store")) {
+                throw new IllegalArgumentException("[ERROR] The option 'watch' cannot be combined with 'archive' or 'store'.");
+            }
+        }
+    }
+
+
+    /**
+     * Parse the options (arguments starting with '--') from the given arguments.
+     * An option is either a switch, e.g. '--streaming', or has a value, e.g. '--threads=4'.
+     *
+     * @param args       String[] The arguments to parse
+     * @param parsedArgs Map<String, String> The map to put the parsed options to
+     * @return String[] The remaining positional arguments
+     */
+    static String[] parseOptions(String[] args, Map<String, String> parsedArgs) {
+        List<String> positionalArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                positionalArgs.add(arg);
+                continue;
+            }
+
+            String option = arg.substring(2);
+            int i = option.indexOf('=');
+            String name = (i == -1) ? option : option.substring(0, i);
+            String value = (i == -1) ? "true" : option.substring(i + 1).trim();
+            if (!OPTIONS.contains(name)) {
+                System.out.println("[ERROR] Unknown option '" + arg + "'.\n" +
+                        USAGE);
+                System.exit(1);
+            }
+            parsedArgs.put(name, value);
+        }
+
+        return positionalArgs.toArray(new String[0]);
+    }
+
+
+    /**
+     * Parse the number of threads given in the option '--parallel'
+     *
+     * @param value String The option value, 'true' if the option is given without a value
+     * @return int The number of threads
+     */
+    private static int parseThreads(String value) {
+        if (value.equals("true")) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+        return parsePositiveInt(value, "parallel");
+    }
+
+
+    /**
+     * Parse the value of the given option as a positive integer
+     *
+     * @param value  String The option value
+     * @param option String The option name
+     * @return int The parsed value
+     * @throws IllegalArgumentException If the value is not a positive integer
+     */
+    private static int parsePositiveInt(String value, String option) {
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("[ERROR] The value of the option --" + option +
+                " must be a positive integer. E.g. --" + option + "=4");
+    }
+
+
+    /**
+     * Parse the given project names: either a single name, a comma separated list of names
+     * or '@file' with one name per line. Empty lines and lines starting with '#' in the file are ignored.
+     *
+     * @param projectName String The project names to parse
+     * @return List<String> The list of project names
+     */
+    static List<String> parseProjectNames(String projectName) {
+        List<String> names;
+        if (projectName.startsWith("@")) {
+            try {
+                names = Files.readAllLines(Paths.get(projectName.substring(1)), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.out.println("[ERROR] Failed reading the project list " + projectName.substring(1) + ". " + e);
+                System.exit(1);
+                return Collections.emptyList();
+            }
+        } else {
+            names = Arrays.asList(projectName.split(","));
+        }
+
+        Set<String> projects = new LinkedHashSet<>();
+        for (String name : names) {
+            name = name.trim();
+            if (!name.isEmpty() && !name.startsWith("#")) {
+                projects.add(name);
+            }
+        }
+        return new ArrayList<>(projects);
+    }
+
+
     /**
      * Export the jar of the project's sources with dependencies from the server and unpack it to the given directory
      *
      * @param args Map<String, String> The arguments
      */
     public static void exportProjectJarFromServer(Map<String, String> args) throws Exception {
+        resetPeakHeapUsage();
+        ExportMetrics.reset();
+
+        try {
+            // Get the byte array of the exported jar and process it
+            processJarBinary(OsbUtils.getJarBinary(args), args);
+        } finally {
+            writeReport(args);
+        }
+
+        if (args.containsKey("spill-threshold")) {
+            System.out.println("Peak heap used: " + getPeakHeapUsage() / (1024 * 1024) + " MB");
+        }
+    }
+
 
-        // Get the byte array of the exported jar
-        byte[] jarBinary = OsbUtils.getJarBinary(args);
+    /**
+     * Export the given projects over one connection to the server. Each project is exported with its dependencies
+     * to its own folder in the export directory. The projects are exported concurrently, limited by the option
+     * '--concurrency'. A summary is printed when all the projects are exported.
+     *
+     * @param args     Map<String, String> The arguments
+     * @param projects List<String> The project names
+     * @return boolean True if all the projects were exported successfully
+     */
+    public static boolean exportProjectsFromServer(Map<String, String> args, List<String> projects) {
+        ExportMetrics.reset();
+        System.out.println("Connecting to the server");
+        ExportSession session;
+        try {
+            session = ExportSession.open(args.get("url"), args.get("userName"), args.get("password"));
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed to export OSB project sources. " + e.getMessage());
+            return false;
+        }
+
+        resetPeakHeapUsage();
+        int concurrency = Math.min(Integer.parseInt(args.getOrDefault("concurrency", "4")), projects.size());
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        Map<String, Future<Long>> results = new LinkedHashMap<>();
+        try {
+            for (String project : projects) {
+                results.put(project, executor.submit(() -> exportProject(session, args, project)));
+            }
+
+            // Summary
+            int failed = 0;
+            StringBuilder summary = new StringBuilder("Export summary:");
+            for (Map.Entry<String, Future<Long>> result : results.entrySet()) {
+                summary.append("\n   ").append(result.getKey()).append(": ");
+                try {
+                    summary.append("OK (").append(result.getValue().get()).append(" ms)");
+                } catch (ExecutionException e) {
+                    failed++;
+                    summary.append("FAILED. ").append(e.getCause().getMessage());
+                }
+            }
+            summary.append("\nExported ").append(projects.size() - failed).append(" of ").append(projects.size())
+                    .append(" projects to ").append(args.get("exportDir"));
+            if (args.containsKey("spill-threshold")) {
+                summary.append("\nPeak heap used: ").append(getPeakHeapUsage() / (1024 * 1024)).append(" MB");
+            }
+            System.out.println(summary);
+            return failed == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[ERROR] Interrupted while exporting the projects");
+            return false;
+        } finally {
+            executor.shutdownNow();
+            try {
+                session.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close the connection. " + e);
+            }
+            writeReport(args);
+        }
+    }
+
+
+    /**
+     * Export the given project over the connection of the given session to its folder in the export directory
+     *
+     * @param session     ExportSession The session of the export
+     * @param args        Map<String, String> The arguments
+     * @param projectName String The project name
+     * @return long The duration of the export in milliseconds
+     */
+    private static long exportProject(ExportSession session, Map<String, String> args, String projectName)
+            throws Exception {
+        long start = System.currentTimeMillis();
+        Map<String, String> projectArgs = new HashMap<>(args);
+        projectArgs.put("projectName", projectName);
+        projectArgs.put("exportDir", args.get("exportDir") + File.separator + projectName);
+        if (args.containsKey("archive")) {
+            projectArgs.put("archive", getProjectArchive(args.get("archive"), projectName));
+        }
+
+        System.out.println("Exporting the jar for project " + projectName);
+        processJarBinary(session.exportJar(projectName, RefFilter.fromArgs(args)), projectArgs);
+        return System.currentTimeMillis() - start;
+    }
+
+
+    /**
+     * Get the archive of the given project when several projects are exported: the project name is appended
+     * to the name of the given archive, e.g. export.tar.gz to export_Project_1.tar.gz
+     *
+     * @param archive     String The archive given in the option '--archive'
+     * @param projectName String The project name
+     * @return String The archive of the project
+     */
+    static String getProjectArchive(String archive, String projectName) {
+        String lowerCaseArchive = archive.toLowerCase();
+        int i = lowerCaseArchive.endsWith(".tar.gz") ? archive.length() - 7 : archive.lastIndexOf('.');
+        return archive.substring(0, i) + "_" + projectName + archive.substring(i);
+    }
+
+
+    /**
+     * Unpack and process the given project jar to the export directory.
+     * If the option '--spill-threshold' is given and the jar is larger, the jar is written to a temporary file
+     * and unpacked from there, so that the binary can be garbage collected.
+     *
+     * @param jarBinary byte[] The project jar
+     * @param args      Map<String, String> The arguments
+     */
+    static void processJarBinary(byte[] jarBinary, Map<String, String> args) throws Exception {
+        long spillThreshold = Long.parseLong(args.getOrDefault("spill-threshold", "-1")) * 1024 * 1024;
+        if (spillThreshold < 0 || jarBinary.length <= spillThreshold) {
+            processJar(jarBinary, null, args);
+            return;
+        }
+
+        System.out.println("The jar is " + jarBinary.length / (1024 * 1024) + " MB. Writing it to a temporary file");
+        File jarFile;
+        try (ExportMetrics.Phase phase = ExportMetrics.get().startPhase("spill")) {
+            phase.addBytes(jarBinary.length);
+            jarFile = FileUtil.writeTempJar(jarBinary);
+        }
+        jarBinary = null;
+        try {
+            processJar(null, jarFile, args);
+        } finally {
+            Files.deleteIfExists(jarFile.toPath());
+        }
+    }
+
+
+    /**
+     * Unpack and process the project jar, given either as a binary or as a file, to the export directory
+     *
+     * @param jarBinary byte[] The project jar or null if the jar is given as a file
+     * @param jarFile   File The project jar file or null if the jar is given as a binary
+     * @param args      Map<String, String> The arguments
+     */
+    static void processJar(byte[] jarBinary, File jarFile, Map<String, String> args) throws Exception {
+        DependencyIndex.Builder index = Boolean.parseBoolean(args.get("index")) ? new DependencyIndex.Builder() : null;
+        SearchIndex.Builder search = createSearchIndex(args);
+        boolean canonicalize = Boolean.parseBoolean(args.get("canonicalize"));
+        if (Boolean.parseBoolean(args.get("streaming")) || args.containsKey("archive")) {
+            // Unpack, parse and write the files to the export directory in a single pass
+            String exportDir = args.get("exportDir");
+            System.out.println("Unpacking and parsing the jar to " + args.getOrDefault("archive", exportDir));
+            ExportWriter writer = createWriter(args, args.get("projectName"));
+            ResourceSink sink = writer != null
+                    ? writer
+                    : (path, content) -> FileUtil.writeFile(new File(exportDir, path), content);
+            sink = wrapIndexes(sink, index, search);
+            try {
+                if (jarFile != null) {
+                    FileUtil.unpackAndProcessJar(jarFile, sink, canonicalize);
+                } else {
+                    FileUtil.unpackAndProcessJar(jarBinary, sink, canonicalize);
+                }
+                if (writer != null) {
+                    writer.finish();
+                }
+            } finally {
+                if (writer != null) {
+                    writer.abort();
+                }
+            }
+            saveIndex(index, exportDir);
+            saveSearchIndex(search, exportDir);
+            return;
+        }
 
         // Write the unpacked jar to the file system
         String tmpDir = args.get("exportDir") + File.separator + "tmp";
-        FileUtil.unpackJar(jarBinary, tmpDir);
+        if (jarFile != null) {
+            FileUtil.unpackJar(jarFile, tmpDir);
+        } else {
+            FileUtil.unpackJar(jarBinary, tmpDir);
+        }
 
         // Copy the folder
 //        FileUtil.copyFolder(args.get("exportDir"), args.get("exportDir") + "_parsed");
 
         // Parse the files
-        FileUtil.processFilesInFolder(tmpDir);
+        ResourceSink indexer = index == null && search == null ? null : wrapIndexes((path, content) -> {
+        }, index, search);
+        FileUtil.processFilesInFolder(tmpDir, Integer.parseInt(args.getOrDefault("parallel", "1")), indexer, canonicalize);
+
+        ExportWriter writer = createWriter(args, args.get("projectName"));
+        if (writer != null) {
+            // Write the changed files to the export directory or the snapshot store
+            System.out.println("Writing the files from " + tmpDir + " with " + writer.getClass().getSimpleName());
+            try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase(
+                    args.containsKey("store") ? "store" : "incremental")) {
+                Path tmpPath = new File(tmpDir).getAbsoluteFile().toPath();
+                for (File file : FileUtil.listFilesRecursively(tmpDir)) {
+                    String path = tmpPath.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+                    writer.accept(path, Files.readAllBytes(file.toPath()));
+                }
+                FileUtil.deleteFolder(tmpDir);
+                writer.finish();
+            }
+            saveIndex(index, args.get("exportDir"));
+            saveSearchIndex(search, args.get("exportDir"));
+            return;
+        }
 
         // Move the parsed files to the export directory
         FileUtil.moveFolderContents(tmpDir, args.get("exportDir"));
+        saveIndex(index, args.get("exportDir"));
+        saveSearchIndex(search, args.get("exportDir"));
+    }
+
+
+    /**
+     * Create the writer of the processed resources given by the options: the archive given in the option
+     * '--archive', a snapshot in the store given in the option '--store', or an incremental writer
+     * if the option '--incremental' is given
+     *
+     * @param args       Map<String, String> The arguments
+     * @param exportName String The name of the export in the snapshot store, e.g. the project name
+     * @return ExportWriter The writer or null to write the resources to the export directory as they are
+     */
+    static ExportWriter createWriter(Map<String, String> args, String exportName) throws IOException {
+        if (args.containsKey("archive")) {
+            int threads = Integer.parseInt(args.getOrDefault("parallel", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            return ArchiveWriter.create(new File(args.get("archive")), threads);
+        }
+        if (args.containsKey("store")) {
+            String materialize = args.getOrDefault("materialize", "link");
+            return new SnapshotStore(args.get("store")).newWriter(exportName,
+                    materialize.equals("none") ? null : args.get("exportDir"), materialize.equals("copy"));
+        }
+        if (Boolean.parseBoolean(args.get("incremental"))) {
+            return new IncrementalWriter(args.get("exportDir"));
+        }
+        return null;
+    }
+
+
+    /**
+     * Build the dependency index and save it to the export directory
+     *
+     * @param index     DependencyIndex.Builder The collected references or null if the option '--index' is not given
+     * @param exportDir String The export directory
+     */
+    static void saveIndex(DependencyIndex.Builder index, String exportDir) throws IOException {
+        if (index == null) {
+            return;
+        }
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("index")) {
+            DependencyIndex dependencyIndex = index.build();
+            dependencyIndex.save(new File(exportDir));
+            System.out.println("Indexed " + dependencyIndex.getReferenceCount() + " references between " +
+                    dependencyIndex.size() + " resources in " + new File(exportDir, DependencyIndex.FILE_NAME));
+            if (!dependencyIndex.getAmbiguous().isEmpty()) {
+                System.out.println("The references without a file extension to " + dependencyIndex.getAmbiguous() +
+                        " are not resolved, as several resources have the same name");
+            }
+        }
+    }
+
+
+    /**
+     * Create the builder of the search index if the option '--search-index' is given. The builder takes over
+     * the terms of the unchanged resources from the search index already in the export directory.
+     *
+     * @param args Map<String, String> The arguments
+     * @return SearchIndex.Builder The builder or null if the option '--search-index' is not given
+     */
+    static SearchIndex.Builder createSearchIndex(Map<String, String> args) throws IOException {
+        return Boolean.parseBoolean(args.get("search-index")) ? SearchIndex.Builder.update(new File(args.get("exportDir")))
+                : null;
+    }
+
+
+    /**
+     * Wrap the given sink, so that every resource is added to the given indexes before it is passed on
+     *
+     * @param sink   ResourceSink The sink to wrap
+     * @param index  DependencyIndex.Builder The dependency index or null
+     * @param search SearchIndex.Builder The search index or null
+     * @return ResourceSink The wrapping sink or the given sink if there are no indexes
+     */
+    static ResourceSink wrapIndexes(ResourceSink sink, DependencyIndex.Builder index, SearchIndex.Builder search) {
+        if (index != null) {
+            sink = index.wrap(sink);
+        }
+        if (search != null) {
+            sink = search.wrap(sink);
+        }
+        return sink;
+    }
+
+
+    /**
+     * Build the search index and save it to the export directory
+     *
+     * @param search    SearchIndex.Builder The collected terms or null if the option '--search-index' is not given
+     * @param exportDir String The export directory
+     */
+    static void saveSearchIndex(SearchIndex.Builder search, String exportDir) throws IOException {
+        if (search == null) {
+            return;
+        }
+        try (ExportMetrics.Phase ignored = ExportMetrics.get().startPhase("searchIndex")) {
+            SearchIndex searchIndex = search.build();
+            searchIndex.save(new File(exportDir));
+            System.out.println("Indexed " + searchIndex.getTermCount() + " terms of " + searchIndex.size() +
+                    " resources, " + search.getUnchangedCount() + " of them unchanged, in " +
+                    new File(exportDir, SearchIndex.FILE_NAME));
+        }
+    }
+
+
+    /**
+     * Search the search index of an export: 'search exportDir term...'
+     *
+     * @param args String[] The arguments of the command
+     * @return boolean True if the search succeeded
+     */
+    static boolean search(String[] args) {
+        if (args.length < 3) {
+            System.out.println("[ERROR] Incorrect arguments of the search command.\n" +
+                    USAGE);
+            return false;
+        }
+
+        try {
+            long start = System.nanoTime();
+            String query = String.join(" ", Arrays.asList(args).subList(2, args.length));
+            List<String> result = SearchIndex.open(new File(args[1])).search(query);
+            for (String path : result) {
+                System.out.println(path);
+            }
+            System.out.println(result.size() + " resources matching '" + query + "' found in " +
+                    (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * Query the dependency index of an export: 'query exportDir dependencies|dependents resource [--transitive]'
+     *
+     * @param args String[] The arguments of the command
+     * @return boolean True if the query succeeded
+     */
+    static boolean query(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        args = parseOptions(args, options);
+        if (args.length != 4 || !(args[2].equals("dependencies") || args[2].equals("dependents"))) {
+            System.out.println("[ERROR] Incorrect arguments of the query command.\n" +
+                    USAGE);
+            return false;
+        }
+
+        boolean transitive = Boolean.parseBoolean(options.get("transitive"));
+        try {
+            long start = System.nanoTime();
+            DependencyIndex index = DependencyIndex.load(new File(args[1]));
+            String resource = args[3];
+            List<String> result = args[2].equals("dependencies")
+                    ? index.getDependencies(resource, transitive)
+                    : index.getDependents(resource, transitive);
+            for (String path : result) {
+                System.out.println(path);
+            }
+            System.out.println(result.size() + (transitive ? " transitive " : " ") + args[2] + " of " + resource +
+                    " found in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * Manage the snapshot store: 'store list storeDir', 'store gc storeDir [--keep=n]'
+     * or 'store checkout storeDir exportName[/timestamp] targetDir [--materialize=link|copy]'
+     *
+     * @param args String[] The arguments of the command
+     * @return boolean True if the command succeeded
+     */
+    static boolean store(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        args = parseOptions(args, options);
+        String command = args.length > 1 ? args[1] : "";
+        boolean valid = (command.equals("list") || command.equals("gc")) ? args.length == 3
+                : command.equals("checkout") && args.length == 5;
+        if (!valid) {
+            System.out.println("[ERROR] Incorrect arguments of the store command.\n" +
+                    USAGE);
+            return false;
+        }
+
+        SnapshotStore store = new SnapshotStore(args[2]);
+        try {
+            switch (command) {
+                case "list":
+                    List<String> snapshots = store.listSnapshots();
+                    for (String id : snapshots) {
+                        System.out.println(id);
+                    }
+                    System.out.println(snapshots.size() + " snapshots found in " + args[2]);
+                    break;
+                case "gc":
+                    store.gc(parsePositiveInt(options.getOrDefault("keep", String.valueOf(SnapshotStore.DEFAULT_KEEP)), "keep"));
+                    break;
+                default:
+                    ExportManifest manifest = store.loadSnapshot(args[3]);
+                    int replaced = store.materialize(manifest, new File(args[4]),
+                            "copy".equals(options.get("materialize")));
+                    System.out.println("Checked out " + args[3] + " to " + args[4] + ": " +
+                            manifest.getPaths().size() + " resources, " + replaced + " files replaced");
+            }
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        }
+    }
+
+
+    /**
+     * Print the summary of the export metrics and write them as JSON to the file given in the option '--report'
+     *
+     * @param args Map<String, String> The arguments
+     */
+    static void writeReport(Map<String, String> args) {
+        if (!args.containsKey("report")) {
+            return;
+        }
+
+        ExportMetrics metrics = ExportMetrics.get();
+        System.out.println(metrics.getSummary());
+        File reportFile = new File(args.get("report"));
+        try {
+            metrics.writeReport(reportFile);
+            System.out.println("The export report is written to " + reportFile);
+        } catch (IOException e) {
+            System.out.println("[ERROR] Failed writing the export report to " + reportFile + ". " + e);
+        }
+    }
+
+
+    private static void resetPeakHeapUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+
+    /**
+     * Get the peak heap usage since the last reset as the sum of the peak usage of the heap memory pools
+     *
+     * @return long The peak heap usage in bytes
+     */
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
     }
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+
+/**
+ * Selects the resources of an export before the export call, so that the server serializes only the resources
+ * asked for: by resource type, e.g. 'XMLSchema', and by a glob of the full name, e.g. 'Project/Contracts/**'.
+ * A resource is selected if it matches any of the included types and paths, if given, and none of the excluded ones.
+ * The selected resources are exported without dependencies, or with their dependency closure if asked for.
+ */
+public class RefFilter {
+
+    /**
+     * The filter selecting all the resources of a project, exported with dependencies as before
+     */
+    public static final RefFilter ALL = new RefFilter(Collections.<String>emptySet(), Collections.<String>emptySet(),
+            Collections.<Pattern>emptyList(), Collections.<Pattern>emptyList(), true);
+
+    private final Set<String> includeTypes;
+    private final Set<String> excludeTypes;
+    private final List<Pattern> includePaths;
+    private final List<Pattern> excludePaths;
+    private final boolean closure;
+
+
+    private RefFilter(Set<String> includeTypes, Set<String> excludeTypes, List<Pattern> includePaths,
+                      List<Pattern> excludePaths, boolean closure) {
+        this.includeTypes = includeTypes;
+        this.excludeTypes = excludeTypes;
+        this.includePaths = includePaths;
+        this.excludePaths = excludePaths;
+        this.closure = closure;
+    }
+
+
+    /**
+     * Create the filter given by the options '--include-types', '--exclude-types', '--include-paths',
+     * '--exclude-paths' and '--closure'. The values are comma separated lists.
+     *
+     * @param args Map<String, String> The arguments
+     * @return RefFilter The filter
+     */
+    public static RefFilter fromArgs(Map<String, String> args) {
+        return new RefFilter(split(args.get("include-types")), split(args.get("exclude-types")),
+                globs(args.get("include-paths")), globs(args.get("exclude-paths")),
+                Boolean.parseBoolean(args.get("closure")));
+    }
+
+
+    /**
+     * @return boolean True if any of the types or paths are given, false if all the resources are selected
+     */
+    public boolean isActive() {
+        return !includeTypes.isEmpty() || !excludeTypes.isEmpty() || !includePaths.isEmpty() || !excludePaths.isEmpty();
+    }
+
+
+    /**
+     * @return boolean True if the dependencies of the selected resources are to be exported too
+     */
+    public boolean isClosure() {
+        return closure;
+    }
+
+
+    /**
+     * @return boolean True if the export call is to include the dependencies: if all the resources are selected,
+     * as in an export without filters, or if the dependency closure is asked for
+     */
+    public boolean includeDependencies() {
+        return !isActive() || closure;
+    }
+
+
+    /**
+     * @param ref Ref The reference
+     * @return boolean True if the reference is a resource selected by the filter
+     */
+    public boolean matches(Ref ref) {
+        if (!isActive()) {
+            return true;
+        }
+        if (!ref.isResourceRef()) {
+            return false;
+        }
+        String type = ref.getTypeId();
+        String fullName = ref.getFullName();
+        return (includeTypes.isEmpty() || includeTypes.contains(type))
+                && !excludeTypes.contains(type)
+                && (includePaths.isEmpty() || matchesAny(includePaths, fullName))
+                && !matchesAny(excludePaths, fullName);
+    }
+
+
+    /**
+     * Select the references matching the filter
+     *
+     * @param refs Set<Ref> The references
+     * @return Set<Ref> The selected references
+     */
+    public Set<Ref> select(Set<Ref> refs) {
+        if (!isActive()) {
+            return refs;
+        }
+        Set<Ref> selected = new LinkedHashSet<>();
+        for (Ref ref : refs) {
+            if (matches(ref)) {
+                selected.add(ref);
+            }
+        }
+        return selected;
+    }
+
+
+    /**
+     * @return Set<String> The types given in the filter, to validate them
+     */
+    public Set<String> getTypes() {
+        Set<String> types = new TreeSet<>(includeTypes);
+        types.addAll(excludeTypes);
+        return types;
+    }
+
+
+    private static boolean matchesAny(List<Pattern> patterns, String fullName) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(fullName).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static Set<String> split(String value) {
+        Set<String> values = new LinkedHashSet<>();
+        if (value != null) {
+            for (String part : value.split(",")) {
+                if (!part.trim().isEmpty()) {
+                    values.add(part.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+
+    private static List<Pattern> globs(String value) {
+        List<Pattern> patterns = new ArrayList<>();
+        for (String glob : split(value)) {
+            patterns.add(glob(glob));
+        }
+        return patterns;
+    }
+
+
+    /**
+     * Convert the given glob to a pattern: '**' matches any part of the name, '*' any part of a folder or resource
+     * name and '?' any character of it
+     *
+     * @param glob String The glob, e.g. 'Project/Contracts/**' or '*&#47;XSD/*'
+     * @return Pattern The pattern
+     */
+    static Pattern glob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                // '**/' also matches no folder at all
+                boolean folders = i + 2 < glob.length() && glob.charAt(i + 2) == '/';
+                regex.append(folders ? "(?:.*/)?" : ".*");
+                i += folders ? 2 : 1;
+            } else if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,152 @@
+package osbProjectExporter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+
+/**
+ * Extractor of the references from an exported resource to other resources:
+ * schema imports and includes of schemas and WSDLs (schemaLocation, location), XSLT imports and includes (href),
+ * references between OSB resources, e.g. from a pipeline to a business service or from a business service
+ * to a service account (ref), and schema and module imports of XQueries.
+ */
+public class ReferenceExtractor {
+
+    static final XMLInputFactory XML_INPUT_FACTORY;
+
+    private static final Pattern XQUERY_LOCATION = Pattern.compile("(?:\\bat\\s+|location=)\"([^\"]+)\"");
+
+    static {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_INPUT_FACTORY = factory;
+    }
+
+
+    /**
+     * Extract the references from the given resource
+     *
+     * @param path    String The path of the resource relative to the export directory, with '/' as separator
+     * @param content byte[] The processed content of the resource
+     * @return Set<String> The paths of the referenced resources relative to the export directory.
+     * The paths of resources referenced by location keep their file extension, OSB references have none.
+     */
+    public static Set<String> extract(String path, byte[] content) {
+        Set<String> references = new TreeSet<>();
+        try {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == START_ELEMENT) {
+                        addReferences(reader, path, references);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // Not an XML. XQueries import modules and schemas by location
+            if (path.endsWith(".xqy")) {
+                Matcher matcher = XQUERY_LOCATION.matcher(new String(content, StandardCharsets.UTF_8));
+                while (matcher.find()) {
+                    addReference(resolve(path, matcher.group(1)), path, references);
+                }
+            }
+        }
+        return references;
+    }
+
+
+    /**
+     * Add the references in the attributes of the current element
+     *
+     * @param reader     XMLStreamReader The reader positioned at a start element
+     * @param path       String The path of the resource
+     * @param references Set<String> The references to add to
+     */
+    static void addReferences(XMLStreamReader reader, String path, Set<String> references) {
+        String element = reader.getLocalName();
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String name = reader.getAttributeLocalName(i);
+            String value = reader.getAttributeValue(i).trim();
+            switch (name) {
+                case "schemaLocation":
+                case "location":
+                    addReference(resolve(path, value), path, references);
+                    break;
+                case "href":
+                    if (element.equals("import") || element.equals("include")) {
+                        addReference(resolve(path, value), path, references);
+                    }
+                    break;
+                case "ref":
+                    // OSB references are project paths, e.g. 'Project/Business/Service'. Schema refs are QNames.
+                    if (value.indexOf('/') > 0 && value.indexOf(':') == -1) {
+                        addReference(value, path, references);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+
+    private static void addReference(String reference, String path, Set<String> references) {
+        if (reference != null && !reference.isEmpty() && !reference.equals(path)) {
+            references.add(reference);
+        }
+    }
+
+
+    /**
+     * Resolve the given location relative to the given resource
+     *
+     * @param path     String The path of the resource
+     * @param location String The location, e.g. '../XSD/Common.xsd'
+     * @return String The path of the referenced resource or null if the location is not a relative path
+     * inside the export directory
+     */
+    static String resolve(String path, String location) {
+        if (location.isEmpty() || location.contains(":") || location.startsWith("/")) {
+            return null;
+        }
+        int end = location.length();
+        for (char c : new char[]{'?', '#'}) {
+            int i = location.indexOf(c);
+            if (i != -1 && i < end) {
+                end = i;
+            }
+        }
+
+        Deque<String> segments = new ArrayDeque<>();
+        String parent = path.lastIndexOf('/') == -1 ? "" : path.substring(0, path.lastIndexOf('/'));
+        for (String segment : (parent + "/" + location.substring(0, end)).split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.pollLast() == null) {
+                    return null;
+                }
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+}
@@ -0,0 +1,553 @@
+package osbProjectExporter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+
+/**
+ * Packs an export directory back into an sbconfig jar that can be imported into OSB: 'pack exportDir jarFile'.
+ * It reverses {@link FileUtil#processFilesInFolder}: every file is renamed back from the extension of its type in
+ * {@link FileUtil#validExtensions} to the OSB type, the unwrapped payloads are wrapped again into the entry of their
+ * type, e.g. an XSD into the CDATA of a schemaEntry, and the ExportInfo and the LocationData of the folders
+ * are generated. The files of the other types, e.g. business services and pipelines, are packed as they are.
+ * <p>
+ * The export keeps only the payload of an entry. The target namespace and the dependencies of the XSD and WSDL
+ * entries, i.e. the imports and includes mapped to the refs of the imported resources in the export directory,
+ * are rebuilt from the payload. The dependencies of the XSLT, XQuery and JCA entries are not, so the packed ones
+ * with references are reported, and their references may have to be checked after the import.
+ * <p>
+ * The files are read and wrapped on a pool of threads, and the entries are deflated concurrently and streamed
+ * into the jar by the zip writer of {@link ArchiveWriter}. If the export directory has a manifest, e.g. of an
+ * '--incremental' export, only the resources changed since the export are packed, unless '--all' is given.
+ * Files and folders whose names start with '.', e.g. the manifest and the indexes, are not packed.
+ */
+public class ResourcePacker {
+
+    private static final String CONFIG_NAMESPACE = "http://www.bea.com/wli/sb/resources/config";
+    private static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
+    private static final String WSDL_NAMESPACE = "http://schemas.xmlsoap.org/wsdl/";
+
+    /**
+     * The types whose entries have dependencies which are not rebuilt
+     */
+    private static final Set<String> UNRESOLVED_TYPES = new HashSet<>(Arrays.asList("XSLT", "Xquery", "JCA"));
+
+    /**
+     * The root and the payload element of the entry of the types whose payload is unwrapped by the export
+     */
+    private static final Map<String, String[]> ENTRIES = new HashMap<>();
+
+    static {
+        ENTRIES.put("XMLSchema", new String[]{"schemaEntry", "schema"});
+        ENTRIES.put("WSDL", new String[]{"wsdlEntry", "wsdl"});
+        ENTRIES.put("XSLT", new String[]{"xsltEntry", "xslt"});
+        ENTRIES.put("Xquery", new String[]{"xqueryEntry", "xquery"});
+        ENTRIES.put("MFL", new String[]{"mflEntry", "mfl"});
+        ENTRIES.put("XML", new String[]{"xmlEntry", "xml-content"});
+        ENTRIES.put("WADL", new String[]{"wadlEntry", "wadl"});
+        ENTRIES.put("JCA", new String[]{"jcaEntry", "jca-file"});
+        ENTRIES.put("JavaScript", new String[]{"javaScriptEntry", "javaScript-content"});
+    }
+
+    private final File exportDir;
+    private final int threads;
+    private final boolean all;
+    private final Map<String, String> types = new HashMap<>();
+    private int unchanged;
+    private final Set<String> unresolved = Collections.synchronizedSet(new TreeSet<>());
+
+
+    /**
+     * @param exportDir File The export directory to pack
+     * @param threads   int The number of threads to wrap and compress the resources with
+     * @param all       boolean True to pack all the resources, also the ones unchanged since the export
+     */
+    public ResourcePacker(File exportDir, int threads, boolean all) {
+        this.exportDir = exportDir;
+        this.threads = threads;
+        this.all = all;
+        for (Map.Entry<String, String> entry : FileUtil.validExtensions.entrySet()) {
+            types.put(entry.getValue(), entry.getKey());
+        }
+    }
+
+
+    /**
+     * Pack the export directory: 'pack exportDir jarFile [--parallel[=threads]] [--all]'
+     *
+     * @param args String[] The arguments of the command
+     * @return boolean True if the jar was packed
+     */
+    static boolean run(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        args = OsbProjectExporter.parseOptions(args, options);
+        if (args.length != 3) {
+            System.out.println("[ERROR] Incorrect arguments of the pack command.\n" +
+                    OsbProjectExporter.USAGE);
+            return false;
+        }
+
+        try {
+            OsbProjectExporter.checkOptions(options);
+            int threads = Integer.parseInt(options.getOrDefault("parallel",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            long start = System.currentTimeMillis();
+            ResourcePacker packer = new ResourcePacker(new File(args[1]), threads, options.containsKey("all"));
+            int packed = packer.pack(new File(args[2]));
+            System.out.println(packed == 0
+                    ? "No resources changed since the export of " + args[1] + ". No jar is written."
+                    : "Packed " + packed + " resources of " + args[1] + " to " + args[2] + " in " +
+                    (System.currentTimeMillis() - start) + " ms" +
+                    (packer.getUnchangedCount() > 0 ? ", " + packer.getUnchangedCount() + " unchanged resources skipped" : ""));
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[ERROR] Interrupted while packing " + args[1]);
+            return false;
+        }
+    }
+
+
+    /**
+     * Pack the resources of the export directory into the given jar
+     *
+     * @param jarFile File The jar to write
+     * @return int The number of packed resources, 0 if no resource changed and no jar is written
+     */
+    public int pack(File jarFile) throws IOException, InterruptedException {
+        if (!exportDir.isDirectory()) {
+            throw new IOException("[ERROR] The export directory " + exportDir + " does not exist");
+        }
+        ExportManifest manifest = all ? new ExportManifest() : ExportManifest.load(exportDir);
+        List<String> paths = new ArrayList<>();
+        listResources(exportDir, "", paths);
+        Collections.sort(paths);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        ArchiveWriter.ZipWriter writer = null;
+        try {
+            // Read and wrap the resources concurrently, skipping the ones unchanged since the export.
+            // At most four resources per thread are read ahead of the writer, so memory use stays bounded.
+            Deque<Future<byte[]>> futures = new ArrayDeque<>();
+            int submitted = 0;
+            Map<String, String> packed = new TreeMap<>();
+            for (int i = 0; i < paths.size(); i++) {
+                while (submitted < paths.size() && submitted < i + threads * 4) {
+                    String path = paths.get(submitted++);
+                    futures.add(executor.submit(() -> {
+                        byte[] content = Files.readAllBytes(new File(exportDir, path).toPath());
+                        String hash = manifest.getHash(path);
+                        return hash != null && hash.equals(ExportManifest.hash(content)) ? null : wrap(path, content);
+                    }));
+                }
+                byte[] entry = get(futures.poll(), paths.get(i));
+                if (entry == null) {
+                    unchanged++;
+                    continue;
+                }
+                if (writer == null) {
+                    writer = new ArchiveWriter.ZipWriter(jarFile, threads);
+                }
+                String entryName = getEntryName(paths.get(i));
+                packed.put(entryName.substring(0, entryName.lastIndexOf('.')), getType(paths.get(i)));
+                writer.accept(entryName, entry);
+            }
+            if (writer == null) {
+                return 0;
+            }
+
+            for (String folder : getFolders(packed.keySet())) {
+                writer.accept(folder + "/_folderdata.LocationData", locationData().getBytes(StandardCharsets.UTF_8));
+            }
+            writer.accept("ExportInfo", exportInfo(packed).getBytes(StandardCharsets.UTF_8));
+            writer.finish();
+
+            if (!unresolved.isEmpty()) {
+                System.out.println("The dependencies of " + unresolved.size() + " XSLT, XQuery and JCA entries are " +
+                        "not rebuilt. Check their references after the import: " + unresolved);
+            }
+
+            int deleted = 0;
+            for (String path : manifest.getPaths()) {
+                if (!new File(exportDir, path).isFile()) {
+                    deleted++;
+                }
+            }
+            if (deleted > 0) {
+                System.out.println(deleted + " resources deleted since the export are not in the jar " +
+                        "and are not deleted by its import");
+            }
+            return packed.size();
+        } finally {
+            executor.shutdownNow();
+            if (writer != null) {
+                // A failed pack leaves no partial jar behind and keeps the previous jar
+                writer.abort();
+            }
+        }
+    }
+
+
+    /**
+     * @return Set<String> The packed XSLT, XQuery and JCA resources with references, whose dependencies
+     * are not rebuilt in their entries
+     */
+    public Set<String> getUnresolved() {
+        return unresolved;
+    }
+
+
+    /**
+     * @return int The number of resources skipped by the last pack because they are unchanged since the export
+     */
+    public int getUnchangedCount() {
+        return unchanged;
+    }
+
+
+    /**
+     * List the paths of the files in the given folder recursively, relative to the export directory,
+     * except the files and folders whose names start with '.'
+     */
+    private static void listResources(File folder, String prefix, List<String> paths) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(".") || (prefix.isEmpty() && file.getName().equals("ExportInfo"))) {
+                continue;
+            }
+            if (file.isDirectory()) {
+                listResources(file, prefix + file.getName() + "/", paths);
+            } else if (file.isFile()) {
+                paths.add(prefix + file.getName());
+            }
+        }
+    }
+
+
+    private static byte[] get(Future<byte[]> future, String path) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IOException("[ERROR] Failed packing " + path + ". " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+
+    /**
+     * Get the OSB type of the given exported file: the type its extension was renamed to or, for a type which is
+     * not renamed, the extension itself
+     *
+     * @param path String The path of the file relative to the export directory
+     * @return String The OSB type, e.g. 'XMLSchema'
+     */
+    String getType(String path) {
+        String extension = getExtension(path);
+        return types.getOrDefault(extension, extension);
+    }
+
+
+    /**
+     * @param path String The path of the file relative to the export directory
+     * @return String The name of the jar entry of the file, e.g. 'Project/XSD/Order.XMLSchema'
+     */
+    String getEntryName(String path) {
+        String extension = getExtension(path);
+        if (extension.isEmpty()) {
+            throw new IllegalArgumentException("[ERROR] The file " + path + " has no extension of a resource type");
+        }
+        return path.substring(0, path.length() - extension.length()) + getType(path);
+    }
+
+
+    private static String getExtension(String path) {
+        int i = path.lastIndexOf('.');
+        return i > path.lastIndexOf('/') ? path.substring(i + 1) : "";
+    }
+
+
+    /**
+     * Wrap the payload of the given file into the entry of its type. The file is passed as it is if its type has
+     * no payload unwrapped by the export, or if it is an entry already, e.g. a resource which was not unwrapped.
+     *
+     * @param path    String The path of the file relative to the export directory
+     * @param content byte[] The content of the file
+     * @return byte[] The content of the jar entry
+     */
+    byte[] wrap(String path, byte[] content) {
+        String type = getType(path);
+        String[] entry = ENTRIES.get(type);
+        if (entry == null) {
+            return content;
+        }
+        String root = getRootElement(content);
+        if (root != null && root.equals("{" + CONFIG_NAMESPACE + "}" + entry[0])) {
+            return content;
+        }
+        if (UNRESOLVED_TYPES.contains(type) && !ReferenceExtractor.extract(path, content).isEmpty()) {
+            unresolved.add(path);
+        }
+
+        String payload = new String(content, StandardCharsets.UTF_8);
+        StringBuilder sb = new StringBuilder(payload.length() + 256)
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<con:").append(entry[0]).append(" xmlns:con=\"").append(CONFIG_NAMESPACE).append("\">\n")
+                .append("    <con:").append(entry[1]).append(">");
+        if (type.equals("JavaScript")) {
+            appendEscaped(sb, payload);
+        } else {
+            // A CDATA section cannot contain ']]>', so it is split between two sections
+            sb.append("<![CDATA[").append(payload.replace("]]>", "]]]]><![CDATA[>")).append("]]>");
+        }
+        sb.append("</con:").append(entry[1]).append(">\n");
+        if (type.equals("XMLSchema") || type.equals("WSDL")) {
+            appendDependencies(sb, path, content, type.equals("WSDL"));
+        }
+        String targetNamespace = type.equals("XMLSchema") || type.equals("WSDL") ? getTargetNamespace(content) : null;
+        if (targetNamespace != null) {
+            sb.append("    <con:targetNamespace>");
+            appendEscaped(sb, targetNamespace);
+            sb.append("</con:targetNamespace>\n");
+        }
+        return sb.append("</con:").append(entry[0]).append(">").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Append the dependencies of an XSD or WSDL entry: an element per import or include of a resource
+     * in the export directory, with the ref of the resource
+     *
+     * @param sb      StringBuilder The entry
+     * @param path    String The path of the XSD or WSDL relative to the export directory
+     * @param content byte[] The payload
+     * @param wsdl    boolean True for a WSDL, whose schema imports are schemaRefs
+     */
+    private void appendDependencies(StringBuilder sb, String path, byte[] content, boolean wsdl) {
+        StringBuilder dependencies = new StringBuilder();
+        XMLStreamReader reader = nextRootElement(content);
+        try {
+            while (reader != null) {
+                String namespace = reader.getNamespaceURI();
+                String element = reader.getLocalName();
+                String locationAttribute = XSD_NAMESPACE.equals(namespace)
+                        && (element.equals("import") || element.equals("include") || element.equals("redefine"))
+                        ? "schemaLocation"
+                        : WSDL_NAMESPACE.equals(namespace) && element.equals("import") ? "location" : null;
+                String location = locationAttribute == null ? null : reader.getAttributeValue(null, locationAttribute);
+                String resolved = location == null ? null : ReferenceExtractor.resolve(path, location.trim());
+                if (resolved != null && new File(exportDir, resolved).isFile()) {
+                    String name = !wsdl ? element : locationAttribute.equals("location") ? "import" : "schemaRef";
+                    dependencies.append("        <con:").append(name);
+                    if (name.equals("schemaRef")) {
+                        dependencies.append(" isInline=\"false\"");
+                    }
+                    String importedNamespace = reader.getAttributeValue(null, "namespace");
+                    if (importedNamespace != null) {
+                        dependencies.append(" namespace=\"");
+                        appendEscaped(dependencies, importedNamespace);
+                        dependencies.append('"');
+                    }
+                    dependencies.append(' ').append(locationAttribute).append("=\"");
+                    appendEscaped(dependencies, location.trim());
+                    dependencies.append("\" ref=\"");
+                    appendEscaped(dependencies, resolved.substring(0, resolved.length() - getExtension(resolved).length() - 1));
+                    dependencies.append("\"/>\n");
+                }
+
+                // The next element
+                int event = reader.next();
+                while (event != START_ELEMENT && reader.hasNext()) {
+                    event = reader.next();
+                }
+                if (event != START_ELEMENT) {
+                    break;
+                }
+            }
+        } catch (XMLStreamException e) {
+            // The dependencies up to the error are kept
+        } finally {
+            close(reader);
+        }
+        if (dependencies.length() > 0) {
+            sb.append("    <con:dependencies>\n").append(dependencies).append("    </con:dependencies>\n");
+        }
+    }
+
+
+    /**
+     * @return String The qualified name of the root element of the given XML as '{namespace}localName',
+     * or null if the content is not an XML
+     */
+    private static String getRootElement(byte[] content) {
+        XMLStreamReader reader = nextRootElement(content);
+        if (reader == null) {
+            return null;
+        }
+        try {
+            return "{" + (reader.getNamespaceURI() == null ? "" : reader.getNamespaceURI()) + "}" + reader.getLocalName();
+        } finally {
+            close(reader);
+        }
+    }
+
+
+    /**
+     * @return String The targetNamespace of the root element of the given schema or WSDL or null if it has none
+     */
+    private static String getTargetNamespace(byte[] content) {
+        XMLStreamReader reader = nextRootElement(content);
+        if (reader == null) {
+            return null;
+        }
+        try {
+            return reader.getAttributeValue(null, "targetNamespace");
+        } finally {
+            close(reader);
+        }
+    }
+
+
+    private static XMLStreamReader nextRootElement(byte[] content) {
+        XMLStreamReader reader = null;
+        try {
+            reader = ReferenceExtractor.XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+            while (reader.hasNext()) {
+                if (reader.next() == START_ELEMENT) {
+                    return reader;
+                }
+            }
+        } catch (XMLStreamException e) {
+            // Not an XML, e.g. an XQuery
+        }
+        close(reader);
+        return null;
+    }
+
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ignored) {
+            }
+        }
+    }
+
+
+    private static void appendEscaped(StringBuilder sb, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '"':
+                    sb.append("&quot;");
+                    break;
+                case '\r':
+                    sb.append("&#13;");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+
+    /**
+     * The folders of the given resources, except the project folders, which get a LocationData each
+     */
+    private static Set<String> getFolders(Set<String> resources) {
+        Set<String> folders = new TreeSet<>();
+        for (String resource : resources) {
+            String folder = resource.substring(0, Math.max(resource.lastIndexOf('/'), 0));
+            while (folder.indexOf('/') > 0 && folders.add(folder)) {
+                folder = folder.substring(0, folder.lastIndexOf('/'));
+            }
+        }
+        return folders;
+    }
+
+
+    private static String locationData() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xml-fragment xmlns:proj=\"http://www.bea.com/wli/config/project\">\n" +
+                "    <proj:description/>\n" +
+                "    <proj:isImmutable>false</proj:isImmutable>\n" +
+                "</xml-fragment>";
+    }
+
+
+    /**
+     * Generate the ExportInfo of the given resources and the LocationData of their folders
+     *
+     * @param resources Map<String, String> The OSB type of the packed resources by their full name
+     * @return String The ExportInfo
+     */
+    String exportInfo(Map<String, String> resources) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xml-fragment name=\"\" version=\"v2\" xmlns:imp=\"http://www.bea.com/wli/config/importexport\">\n" +
+                "    <imp:properties>\n" +
+                "        <imp:property name=\"username\" value=\"\"/>\n" +
+                "        <imp:property name=\"description\" value=\"Packed from ");
+        appendEscaped(sb, exportDir.getName());
+        sb.append("\"/>\n" +
+                "        <imp:property name=\"exporttime\" value=\"")
+                .append(new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.ENGLISH).format(new Date()))
+                .append("\"/>\n" +
+                        "        <imp:property name=\"productname\" value=\"Oracle Service Bus\"/>\n" +
+                        "        <imp:property name=\"projectLevelExport\" value=\"false\"/>\n" +
+                        "    </imp:properties>\n");
+        for (String folder : getFolders(resources.keySet())) {
+            appendItem(sb, folder + "/_folderdata", "LocationData");
+        }
+        for (Map.Entry<String, String> resource : resources.entrySet()) {
+            appendItem(sb, resource.getKey(), resource.getValue());
+        }
+        return sb.append("</xml-fragment>").toString();
+    }
+
+
+    private static void appendItem(StringBuilder sb, String name, String type) {
+        sb.append("    <imp:exportedItemInfo instanceId=\"");
+        appendEscaped(sb, name);
+        sb.append("\" typeId=\"");
+        appendEscaped(sb, type);
+        sb.append("\">\n" +
+                "        <imp:properties>\n" +
+                "            <imp:property name=\"representationversion\" value=\"0\"/>\n");
+        if (type.equals("LocationData")) {
+            sb.append("            <imp:property name=\"dataclass\" value=\"com.bea.wli.config.project.impl.LocationDataImpl\"/>\n");
+        }
+        sb.append("            <imp:property name=\"isencrypted\" value=\"false\"/>\n" +
+                "            <imp:property name=\"jarentryname\" value=\"");
+        appendEscaped(sb, name + "." + type);
+        sb.append("\"/>\n" +
+                "        </imp:properties>\n" +
+                "    </imp:exportedItemInfo>\n");
+    }
+}
@@ -0,0 +1,18 @@
+package osbProjectExporter;
+
+import java.io.IOException;
+
+
+/**
+ * Receives the processed resources of an exported jar, e.g. to write them to the export directory.
+ */
+public interface ResourceSink {
+
+    /**
+     * Accept a processed resource
+     *
+     * @param path    String The path of the resource relative to the export directory, with '/' as separator
+     * @param content byte[] The processed content of the resource
+     */
+    void accept(String path, byte[] content) throws IOException;
+}
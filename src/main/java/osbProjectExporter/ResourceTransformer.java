@@ -0,0 +1,56 @@
+package osbProjectExporter;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * A streaming transformation of the content of a resource, e.g. unwrapping the CDATA embedded into an XSD entry.
+ * The transformers of a resource type are chained by {@link ResourceType}.
+ */
+public interface ResourceTransformer {
+
+    /**
+     * Leaves the content as it is
+     */
+    ResourceTransformer PASS_THROUGH = (in, opener) -> false;
+
+    /**
+     * Unwraps the CDATA of the first child element of the root, e.g. of an XSD, WSDL or XSLT entry
+     */
+    ResourceTransformer CDATA_UNWRAP = (in, opener) -> extract(in, opener, true, false);
+
+    /**
+     * Unwraps the java-script-content of a javaScriptEntry
+     */
+    ResourceTransformer JAVASCRIPT_UNWRAP = (in, opener) -> extract(in, opener, false, true);
+
+    /**
+     * Formats an XML resource into the canonical form of {@link XmlCanonicalizer}
+     */
+    ResourceTransformer CANONICALIZE = XmlCanonicalizer::canonicalize;
+
+
+    /**
+     * Transform the given content. The opener is called only if the content is transformed, and the transformed
+     * content is written to the opened channel. A transformer which fails after opening the channel returns false,
+     * and the channel is opened again from scratch if the content of a previous transformer is to be written.
+     *
+     * @param in     InputStream The content of the resource
+     * @param opener EmbeddedContentExtractor.ChannelOpener Opens the channel to write the transformed content to
+     * @return boolean True if the content was transformed, false if it is passed on as it is
+     */
+    boolean transform(InputStream in, EmbeddedContentExtractor.ChannelOpener opener) throws IOException;
+
+
+    static boolean extract(InputStream in, EmbeddedContentExtractor.ChannelOpener opener, boolean cdata,
+                           boolean javaScript) throws IOException {
+        try {
+            return EmbeddedContentExtractor.extract(in, opener, cdata, javaScript);
+        } catch (XMLStreamException e) {
+            // Not an XML, pass the content as is
+            return false;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package osbProjectExporter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The processing of an OSB resource type, given by the extension of the exported resource, e.g. 'XMLSchema':
+ * the extension the resource is renamed to, and the chain of transformers applied to its content.
+ * A type can also be dropped, e.g. the LocationData of the folders, so that it is not exported at all.
+ * The types are registered in {@link ResourceTypes}.
+ */
+public final class ResourceType {
+
+    private final String name;
+    private final String extension;
+    private final boolean dropped;
+    private final List<ResourceTransformer> transformers;
+    private volatile ResourceType canonical;
+
+
+    private ResourceType(String name, String extension, boolean dropped, List<ResourceTransformer> transformers) {
+        this.name = name;
+        this.extension = extension;
+        this.dropped = dropped;
+        this.transformers = transformers;
+    }
+
+
+    /**
+     * Create a resource type renamed to the given extension and transformed by the given transformers in order
+     *
+     * @param name         String The OSB resource type, i.e. the extension of the exported resource, e.g. 'XMLSchema'
+     * @param extension    String The extension to rename the resource to, e.g. 'xsd', or null to keep the extension
+     * @param transformers ResourceTransformer... The transformers of the content
+     * @return ResourceType The resource type
+     */
+    public static ResourceType of(String name, String extension, ResourceTransformer... transformers) {
+        return new ResourceType(name, extension, false, Collections.unmodifiableList(Arrays.asList(transformers)));
+    }
+
+
+    /**
+     * Create a resource type which is not exported
+     *
+     * @param name String The OSB resource type or the name of the file without an extension, e.g. 'ExportInfo'
+     * @return ResourceType The resource type
+     */
+    public static ResourceType drop(String name) {
+        return new ResourceType(name, null, true, Collections.<ResourceTransformer>emptyList());
+    }
+
+
+    public String getName() {
+        return name;
+    }
+
+
+    public String getExtension() {
+        return extension;
+    }
+
+
+    public boolean isDropped() {
+        return dropped;
+    }
+
+
+    /**
+     * Get this type with the canonical formatting of XML added as the last transformer. A resource which is not
+     * an XML, e.g. an XQuery after its CDATA is unwrapped, is not changed by the formatting.
+     *
+     * @return ResourceType The type with canonical formatting
+     */
+    public ResourceType canonical() {
+        if (dropped) {
+            return this;
+        }
+        if (canonical == null) {
+            List<ResourceTransformer> chain = new ArrayList<>(transformers);
+            chain.add(ResourceTransformer.CANONICALIZE);
+            canonical = new ResourceType(name, extension, false, Collections.unmodifiableList(chain));
+        }
+        return canonical;
+    }
+
+
+    /**
+     * Rename the given path of a resource of this type to the extension of the type
+     *
+     * @param path String The path of the exported resource
+     * @return String The renamed path
+     */
+    public String rename(String path) {
+        if (extension == null) {
+            return path;
+        }
+        int i = path.lastIndexOf('.');
+        return (i > path.lastIndexOf('/') ? path.substring(0, i) : path) + "." + extension;
+    }
+
+
+    /**
+     * Transform the given content with the transformers of this type
+     *
+     * @param content byte[] The content of the resource
+     * @param opener  EmbeddedContentExtractor.ChannelOpener Opens the channel to write the transformed content to
+     * @return boolean True if the content was transformed, false if it is unchanged
+     */
+    public boolean transform(byte[] content, EmbeddedContentExtractor.ChannelOpener opener) throws IOException {
+        return transform(() -> new ByteArrayInputStream(content), opener);
+    }
+
+
+    /**
+     * Transform the content of the given file with the transformers of this type
+     *
+     * @param file   Path The file of the resource
+     * @param opener EmbeddedContentExtractor.ChannelOpener Opens the channel to write the transformed content to
+     * @return boolean True if the content was transformed, false if it is unchanged
+     */
+    public boolean transform(Path file, EmbeddedContentExtractor.ChannelOpener opener) throws IOException {
+        return transform(() -> new BufferedInputStream(Files.newInputStream(file)), opener);
+    }
+
+
+    /**
+     * Run the chain of transformers. The last transformer writes to the given channel directly, so that with
+     * a single transformer, the usual case, the resource is read and written once. The output of the other
+     * transformers is kept in memory for the next transformer.
+     */
+    private boolean transform(InputStreamOpener source, EmbeddedContentExtractor.ChannelOpener opener)
+            throws IOException {
+        byte[] transformed = null;
+        for (int i = 0; i < transformers.size(); i++) {
+            boolean last = i == transformers.size() - 1;
+            ByteArrayOutputStream bos = last ? null : new ByteArrayOutputStream();
+            byte[] input = transformed;
+            try (InputStream in = input != null ? new ByteArrayInputStream(input) : source.open()) {
+                if (transformers.get(i).transform(in, last ? opener : () -> Channels.newChannel(bos))) {
+                    if (last) {
+                        return true;
+                    }
+                    transformed = bos.toByteArray();
+                }
+            }
+        }
+
+        if (transformed == null) {
+            return false;
+        }
+        try (OutputStream out = Channels.newOutputStream(opener.open())) {
+            out.write(transformed);
+        }
+        return true;
+    }
+
+
+    @Override
+    public String toString() {
+        return name + (dropped ? " (dropped)" : " -> " + extension);
+    }
+
+
+    private interface InputStreamOpener {
+
+        InputStream open() throws IOException;
+    }
+}
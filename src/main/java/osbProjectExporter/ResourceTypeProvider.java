@@ -0,0 +1,17 @@
+package osbProjectExporter;
+
+import java.util.Collection;
+
+
+/**
+ * Provides custom resource types, e.g. in-house ones, or replaces the built-in ones.
+ * The providers are found with {@link java.util.ServiceLoader}: a jar on the class path lists its implementation
+ * in META-INF/services/osbProjectExporter.ResourceTypeProvider.
+ */
+public interface ResourceTypeProvider {
+
+    /**
+     * @return Collection<ResourceType> The resource types to register
+     */
+    Collection<ResourceType> getResourceTypes();
+}
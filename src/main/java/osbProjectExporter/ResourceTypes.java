@@ -0,0 +1,77 @@
+package osbProjectExporter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The registry of the resource types by the extension of the exported resource. The built-in types are registered
+ * first, then the types of the {@link ResourceTypeProvider}s on the class path, which may replace the built-in ones.
+ */
+public class ResourceTypes {
+
+    private static final Map<String, ResourceType> types = new ConcurrentHashMap<>();
+    private static final Map<String, String> extensions = new ConcurrentHashMap<>();
+
+    static {
+        register(ResourceType.of("BusinessService", "bix", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("ProxyService", "proxy", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("Pipeline", "pipeline", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("XML", "xml", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("XMLSchema", "xsd", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("Xquery", "xqy", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("XSLT", "xsl", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("MFL", "mfl", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("WADL", "wadl", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("WSDL", "wsdl", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("ServiceAccount", "sa", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("Archive", "jar", ResourceTransformer.PASS_THROUGH));
+        register(ResourceType.of("JCA", "jca", ResourceTransformer.CDATA_UNWRAP));
+        register(ResourceType.of("JavaScript", "js", ResourceTransformer.JAVASCRIPT_UNWRAP));
+        register(ResourceType.drop("ExportInfo"));
+        register(ResourceType.drop("LocationData"));
+
+        for (ResourceTypeProvider provider : ServiceLoader.load(ResourceTypeProvider.class)) {
+            for (ResourceType type : provider.getResourceTypes()) {
+                register(type);
+            }
+        }
+    }
+
+
+    /**
+     * Register the given resource type, replacing the type of the same name
+     *
+     * @param type ResourceType The resource type
+     */
+    public static void register(ResourceType type) {
+        types.put(type.getName(), type);
+        if (type.getExtension() != null) {
+            extensions.put(type.getName(), type.getExtension());
+        } else {
+            extensions.remove(type.getName());
+        }
+    }
+
+
+    /**
+     * Get the resource type of the given exported file: by its extension or, if it has none, by its name
+     *
+     * @param fileName  String The name of the file
+     * @param extension String The extension of the file or an empty string
+     * @return ResourceType The resource type or null if the type is not registered
+     */
+    public static ResourceType get(String fileName, String extension) {
+        return types.get(extension.isEmpty() ? fileName : extension);
+    }
+
+
+    /**
+     * @return Map<String, String> The extensions the resource types are renamed to, by the resource type
+     */
+    public static Map<String, String> getExtensions() {
+        return Collections.unmodifiableMap(extensions);
+    }
+}
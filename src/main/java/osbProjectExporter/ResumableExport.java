@@ -0,0 +1,356 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * An export that survives a broken connection or a failed resource: the resources are exported in batches
+ * of '--shard-size' resources without dependencies, and the progress is recorded in a work directory
+ * in exportDir/{@value #DIR_NAME}:
+ * <pre>
+ * plan          the arguments of the export and the resources of every batch, written once, so that a resumed
+ *               export exports the same batches
+ * checkpoint    'fetched n' and 'processed n' lines, appended as the batches are fetched and processed
+ * batch-n.jar   the jar of a fetched batch, kept until the batch is processed
+ * batch-n/      the processed resources of a batch, renamed from batch-n.tmp when the batch is complete
+ * </pre>
+ * A failed batch is retried with an exponential backoff over a new connection. An export that still fails keeps
+ * the work directory and is resumed by running it again: the fetched batches are not exported again and
+ * the processed batches are not processed again. A plan of an export with other arguments, e.g. another project,
+ * filter or shard size, is discarded and the export starts over. The export directory is written only when all the batches
+ * are processed, so a failed export never leaves some of the batches in it.
+ */
+public class ResumableExport {
+
+    public static final String DIR_NAME = ".osbexport-resume";
+    public static final int MAX_ATTEMPTS = 5;
+
+    static final String PLAN_FILE = "plan";
+    static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * The arguments that select the resources of the batches or how they are processed
+     */
+    static final List<String> PLAN_ARGUMENTS = Arrays.asList("url", "domain", "projects", "shard-size",
+            "include-types", "exclude-types", "include-paths", "exclude-paths", "closure", "canonicalize");
+
+    private final Map<String, String> args;
+    private final File exportDir;
+    private final File workDir;
+    private final long backoffMillis;
+    private OsbConnection connection;
+
+
+    ResumableExport(Map<String, String> args, long backoffMillis) {
+        this.args = args;
+        this.exportDir = new File(args.get("exportDir"));
+        this.workDir = new File(exportDir, DIR_NAME);
+        this.backoffMillis = backoffMillis;
+    }
+
+
+    /**
+     * Export the project, or the domain if the option '--domain' is given, resuming a previous failed export
+     * to the same export directory
+     *
+     * @param args Map<String, String> The arguments
+     * @return boolean True if the export is complete
+     */
+    public static boolean export(Map<String, String> args) {
+        ExportMetrics.reset();
+        try {
+            return new ResumableExport(args, 1000).run();
+        } finally {
+            OsbProjectExporter.writeReport(args);
+        }
+    }
+
+
+    boolean run() {
+        String name = args.containsKey("domain") ? "the domain" : "project " + args.get("projects");
+        try {
+            List<List<Ref>> batches = loadPlan();
+            if (batches == null) {
+                batches = withRetry("listing the resources", this::listResources);
+                savePlan(batches);
+            } else {
+                System.out.println("Resuming the export of " + name + " from " + workDir);
+            }
+
+            Set<String> checkpoint = loadCheckpoint();
+            for (int i = 0; i < batches.size(); i++) {
+                File batchDir = new File(workDir, "batch-" + i);
+                if (checkpoint.contains("processed " + i) && batchDir.isDirectory()) {
+                    continue;
+                }
+                File batchJar = new File(workDir, "batch-" + i + ".jar");
+                if (!checkpoint.contains("fetched " + i) || !batchJar.isFile()) {
+                    List<Ref> batch = batches.get(i);
+                    byte[] jarBinary = withRetry("exporting the batch " + (i + 1) + " of " + batches.size(),
+                            () -> getConnection().export(batch, false));
+                    writeAtomically(batchJar.toPath(), jarBinary);
+                    appendCheckpoint("fetched " + i);
+                }
+                processBatch(batchJar, batchDir);
+                appendCheckpoint("processed " + i);
+                Files.delete(batchJar.toPath());
+                System.out.println("Exported the batch " + (i + 1) + " of " + batches.size() + " (" +
+                        batches.get(i).size() + " resources)");
+            }
+
+            commit(batches.size());
+            System.out.println("Exported " + name + " to " + args.getOrDefault("archive", exportDir.getPath()));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("[ERROR] Interrupted while exporting " + name + ". Run the export again to resume it");
+            return false;
+        } catch (Exception e) {
+            System.out.println("[ERROR] Failed to export " + name + ". " + e.getMessage() +
+                    ". Run the export again to resume it from " + workDir);
+            return false;
+        } finally {
+            closeConnection();
+        }
+    }
+
+
+    /**
+     * List the resources to export, with their dependencies unless the filters exclude them, in batches
+     */
+    private List<List<Ref>> listResources() throws Exception {
+        OsbConnection current = getConnection();
+        List<String> projects = new ArrayList<>();
+        if (args.containsKey("domain")) {
+            for (Ref project : current.getProjects()) {
+                projects.add(project.getProjectName());
+            }
+        } else {
+            projects.add(args.get("projects"));
+        }
+
+        RefFilter filter = RefFilter.fromArgs(args);
+        Set<Ref> refs = new HashSet<>();
+        for (String project : projects) {
+            refs.addAll(filter.select(current.getResourceRefs(project)));
+        }
+        if (refs.isEmpty()) {
+            throw new Exception("No resources to export");
+        }
+        if (filter.includeDependencies() && !args.containsKey("domain") || filter.isClosure()) {
+            BlockingQueue<OsbConnection> pool = new LinkedBlockingQueue<>(Collections.singleton(current));
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                refs = DomainExporter.resolveClosure(pool, executor, refs);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        SortedSet<Ref> sorted = new TreeSet<>(Comparator.comparing(Ref::getFullName).thenComparing(Ref::getTypeId));
+        sorted.addAll(refs);
+        return DomainExporter.shard(sorted,
+                Integer.parseInt(args.getOrDefault("shard-size", String.valueOf(DomainExporter.DEFAULT_SHARD_SIZE))));
+    }
+
+
+    /**
+     * Process the jar of a batch to a temporary directory, which is renamed to the directory of the batch
+     * when all the resources are processed
+     */
+    private void processBatch(File batchJar, File batchDir) throws IOException {
+        File tmpDir = new File(workDir, batchDir.getName() + ".tmp");
+        deleteFolder(tmpDir);
+        FileUtil.unpackAndProcessJar(batchJar, (path, content) -> FileUtil.writeFile(new File(tmpDir, path), content),
+                Boolean.parseBoolean(args.get("canonicalize")));
+        if (!tmpDir.isDirectory()) {
+            Files.createDirectories(tmpDir.toPath());
+        }
+        deleteFolder(batchDir);
+        Files.move(tmpDir.toPath(), batchDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Write the processed batches to the export directory or to the writer given by the options,
+     * then delete the work directory
+     */
+    private void commit(int batchCount) throws IOException {
+        ExportWriter writer = OsbProjectExporter.createWriter(args,
+                args.containsKey("domain") ? "domain" : args.get("projects"));
+        DependencyIndex.Builder index = Boolean.parseBoolean(args.get("index")) ? new DependencyIndex.Builder() : null;
+        SearchIndex.Builder search = OsbProjectExporter.createSearchIndex(args);
+        ResourceSink sink = writer != null
+                ? writer
+                : (path, content) -> FileUtil.writeFile(new File(exportDir, path), content);
+        sink = OsbProjectExporter.wrapIndexes(sink, index, search);
+
+        try {
+            for (int i = 0; i < batchCount; i++) {
+                Path batchPath = new File(workDir, "batch-" + i).getAbsoluteFile().toPath();
+                for (File file : FileUtil.listFilesRecursively(batchPath.toString())) {
+                    String path = batchPath.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/');
+                    sink.accept(path, Files.readAllBytes(file.toPath()));
+                }
+            }
+            if (writer != null) {
+                writer.finish();
+            }
+        } finally {
+            if (writer != null) {
+                writer.abort();
+            }
+        }
+        OsbProjectExporter.saveIndex(index, exportDir.getPath());
+        OsbProjectExporter.saveSearchIndex(search, exportDir.getPath());
+        FileUtil.deleteFolder(workDir.getPath());
+    }
+
+
+    /**
+     * Call the given function, retrying it with an exponential backoff over a new connection if it fails
+     */
+    private <T> T withRetry(String action, Callable<T> function) throws Exception {
+        long backoff = backoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return function.call();
+            } catch (Exception e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw new Exception("Failed " + action + " after " + attempt + " attempts. " + e.getMessage(), e);
+                }
+                System.out.println("Failed " + action + ". Retrying in " + backoff + " ms. " + e.getMessage());
+                closeConnection();
+                Thread.sleep(backoff);
+                backoff *= 2;
+            }
+        }
+    }
+
+
+    private OsbConnection getConnection() throws Exception {
+        if (connection == null) {
+            connection = OsbConnection.open(args.get("url"), args.get("userName"), args.get("password"),
+                    OsbConnection.DOMAIN_RUNTIME);
+        }
+        return connection;
+    }
+
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close the connection. " + e);
+            }
+            connection = null;
+        }
+    }
+
+
+    /**
+     * @return List<List<Ref>> The batches of the plan in the work directory or null if there is no plan
+     * or the plan is of an export with other arguments
+     */
+    private List<List<Ref>> loadPlan() throws IOException {
+        File planFile = new File(workDir, PLAN_FILE);
+        if (!planFile.isFile()) {
+            return null;
+        }
+        List<List<Ref>> batches = new ArrayList<>();
+        Map<String, String> planArgs = new HashMap<>();
+        for (String line : Files.readAllLines(planFile.toPath(), StandardCharsets.UTF_8)) {
+            // batch, type and full name separated by tabs, or '#', the name and the value of an argument
+            String[] fields = line.split("\t", 3);
+            if (fields.length != 3) {
+                continue;
+            }
+            if (fields[0].equals("#")) {
+                planArgs.put(fields[1], fields[2]);
+                continue;
+            }
+            int batch = Integer.parseInt(fields[0]);
+            while (batches.size() <= batch) {
+                batches.add(new ArrayList<>());
+            }
+            batches.get(batch).add(new Ref(fields[1], fields[2].split("/")));
+        }
+        if (!planArgs.equals(getPlanArgs())) {
+            System.out.println("The export in " + workDir + " was started with other arguments " + planArgs +
+                    ". Starting over");
+            return null;
+        }
+        return batches;
+    }
+
+
+    /**
+     * @return Map<String, String> The arguments given of {@link #PLAN_ARGUMENTS}
+     */
+    private Map<String, String> getPlanArgs() {
+        Map<String, String> planArgs = new HashMap<>();
+        for (String name : PLAN_ARGUMENTS) {
+            if (args.containsKey(name)) {
+                planArgs.put(name, args.get(name));
+            }
+        }
+        return planArgs;
+    }
+
+
+    private void savePlan(List<List<Ref>> batches) throws IOException {
+        // A plan without a checkpoint is a new export, so the batches of an older export are discarded
+        deleteFolder(workDir);
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> planArg : new TreeMap<>(getPlanArgs()).entrySet()) {
+            lines.add("#\t" + planArg.getKey() + "\t" + planArg.getValue());
+        }
+        for (int i = 0; i < batches.size(); i++) {
+            for (Ref ref : batches.get(i)) {
+                lines.add(i + "\t" + ref.getTypeId() + "\t" + ref.getFullName());
+            }
+        }
+        Files.createDirectories(workDir.toPath());
+        writeAtomically(new File(workDir, PLAN_FILE).toPath(),
+                String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    private Set<String> loadCheckpoint() throws IOException {
+        File checkpointFile = new File(workDir, CHECKPOINT_FILE);
+        return checkpointFile.isFile()
+                ? new HashSet<>(Files.readAllLines(checkpointFile.toPath(), StandardCharsets.UTF_8))
+                : new HashSet<>();
+    }
+
+
+    private void appendCheckpoint(String line) throws IOException {
+        Files.write(new File(workDir, CHECKPOINT_FILE).toPath(), (line + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+    }
+
+
+    private static void deleteFolder(File folder) throws IOException {
+        if (folder.exists()) {
+            FileUtil.deleteFolder(folder.getPath());
+        }
+    }
+
+
+    private static void writeAtomically(Path path, byte[] content) throws IOException {
+        Path tmpPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmpPath, content);
+        Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,681 @@
+package osbProjectExporter;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+
+/**
+ * The inverted index of the exported resources, kept next to the export in the file {@value #FILE_NAME}, to find
+ * resources by their content without scanning the export. Every resource is indexed by the terms:
+ * <pre>
+ * word            the words of the element names, attribute values and text in lower case, e.g. 'customer'
+ * ns:uri          the namespaces declared, used or imported, e.g. 'ns:http://example.com/customer'
+ * uri:uri         the endpoint URIs of the business and proxy services, e.g. 'uri:http://host:8011/customer'
+ * ref:path        the resources referred to, without the file extension, e.g. 'ref:Project/XQuery/Transform'
+ * ext:extension   the file extension, e.g. 'ext:bix'
+ * </pre>
+ * The terms are sorted by their UTF-8 bytes, so a search binary searches the memory mapped file and reads
+ * the postings of its terms only. The hash of every resource is kept, so that a re-export extracts the terms
+ * of the changed resources only.
+ */
+public class SearchIndex {
+
+    public static final String FILE_NAME = ".osbexport-search";
+
+    static final int MAX_WORD_LENGTH = 64;
+
+    private static final int MAGIC = 0x4F534253; // OSBS
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 64;
+    private static final int HEADER_LENGTH = 16;
+
+    private static final List<String> PREFIXES = Arrays.asList("ns:", "uri:", "ref:", "ext:");
+
+    private static final Pattern XQUERY_NAMESPACE = Pattern.compile("namespace\\s+(?:[\\w.-]+\\s*=\\s*)?\"([^\"]+)\"");
+
+    private final ByteBuffer buffer;
+    private final int resourceCount;
+    private final int termCount;
+    private final int pathOffsetsPosition;
+    private final int pathsPosition;
+    private final int hashesPosition;
+    private final int termOffsetsPosition;
+    private final int termsPosition;
+    private final int postingOffsetsPosition;
+    private final int postingsPosition;
+
+
+    private SearchIndex(ByteBuffer buffer, String source) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_LENGTH || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("[ERROR] " + source + " is not a search index");
+        }
+        resourceCount = buffer.getInt(8);
+        termCount = buffer.getInt(12);
+        pathOffsetsPosition = HEADER_LENGTH;
+        pathsPosition = pathOffsetsPosition + 4 * (resourceCount + 1);
+        hashesPosition = pathsPosition + buffer.getInt(pathOffsetsPosition + 4 * resourceCount);
+        termOffsetsPosition = hashesPosition + HASH_LENGTH * resourceCount;
+        termsPosition = termOffsetsPosition + 4 * (termCount + 1);
+        postingOffsetsPosition = termsPosition + buffer.getInt(termOffsetsPosition + 4 * termCount);
+        postingsPosition = postingOffsetsPosition + 4 * (termCount + 1);
+    }
+
+
+    /**
+     * Open the index in the given export directory. The file is memory mapped, so only the parts of the index
+     * a search needs are read.
+     *
+     * @param dir File The export directory
+     * @return SearchIndex The index
+     */
+    public static SearchIndex open(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        if (!file.isFile()) {
+            throw new FileNotFoundException("[ERROR] No search index found in " + dir +
+                    ". Export with the option '--search-index' first.");
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new SearchIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.getPath());
+        }
+    }
+
+
+    /**
+     * Save the index to the given export directory
+     *
+     * @param dir File The export directory
+     */
+    public void save(File dir) throws IOException {
+        File file = new File(dir, FILE_NAME);
+        File tmpFile = new File(dir, FILE_NAME + ".tmp");
+        // An export to an archive does not create the export directory
+        Files.createDirectories(dir.toPath());
+        try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer content = buffer.duplicate();
+            content.clear();
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * @return int The number of resources in the index
+     */
+    public int size() {
+        return resourceCount;
+    }
+
+
+    /**
+     * @return int The number of distinct terms in the index
+     */
+    public int getTermCount() {
+        return termCount;
+    }
+
+
+    /**
+     * Find the resources matching all the terms of the given query, e.g. 'uri:http://host:8011/* ext:bix'.
+     * A term ending with '*' matches all the terms starting with it. A word is matched in lower case, and a word
+     * with other characters than letters, digits and '_' matches the resources with all of its words.
+     *
+     * @param query String The terms separated by white space
+     * @return List<String> The paths of the matching resources, sorted
+     */
+    public List<String> search(String query) {
+        List<String> terms = parseQuery(query);
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("[ERROR] The search query is empty");
+        }
+
+        int[] ids = null;
+        for (String term : terms) {
+            int[] matches = term.endsWith("*")
+                    ? find(term.substring(0, term.length() - 1).getBytes(StandardCharsets.UTF_8), true)
+                    : find(term.getBytes(StandardCharsets.UTF_8), false);
+            ids = ids == null ? matches : intersect(ids, matches);
+            if (ids.length == 0) {
+                break;
+            }
+        }
+
+        List<String> paths = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            paths.add(getPath(id));
+        }
+        return paths;
+    }
+
+
+    /**
+     * Split the query into index terms
+     *
+     * @param query String The query
+     * @return List<String> The terms, a prefix ending with '*'
+     */
+    static List<String> parseQuery(String query) {
+        List<String> terms = new ArrayList<>();
+        for (String term : query.trim().split("\\s+")) {
+            if (term.isEmpty()) {
+                continue;
+            }
+            boolean prefix = term.endsWith("*");
+            String value = prefix ? term.substring(0, term.length() - 1) : term;
+            String field = null;
+            for (String candidate : PREFIXES) {
+                if (value.startsWith(candidate)) {
+                    field = candidate;
+                }
+            }
+            if (field == null) {
+                List<String> words = new ArrayList<>();
+                addWords(value, words);
+                for (int i = 0; i < words.size(); i++) {
+                    terms.add(words.get(i) + (prefix && i == words.size() - 1 ? "*" : ""));
+                }
+                continue;
+            }
+
+            value = value.substring(field.length());
+            if (field.equals("ref:")) {
+                value = prefix ? value.replace('\\', '/') : withoutExtension(value.replace('\\', '/'));
+            } else if (field.equals("ext:")) {
+                value = value.toLowerCase(Locale.ROOT);
+            }
+            terms.add(field + value + (prefix ? "*" : ""));
+        }
+        return terms;
+    }
+
+
+    /**
+     * Find the resources of the given term or of all the terms starting with the given prefix
+     *
+     * @param key    byte[] The term or the prefix in UTF-8
+     * @param prefix boolean True if the key is a prefix
+     * @return int[] The sorted ids of the resources
+     */
+    private int[] find(byte[] key, boolean prefix) {
+        // The first term not less than the key
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareTerm(middle, key, false) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        if (!prefix) {
+            return low < termCount && compareTerm(low, key, false) == 0 ? getPostings(low) : new int[0];
+        }
+        int[] ids = new int[0];
+        for (int term = low; term < termCount && compareTerm(term, key, true) == 0; term++) {
+            ids = union(ids, getPostings(term));
+        }
+        return ids;
+    }
+
+
+    /**
+     * Compare the given term with the given key by their unsigned bytes
+     *
+     * @param term   int The term
+     * @param key    byte[] The key in UTF-8
+     * @param prefix boolean True to compare only the first bytes of the term, as many as the key has
+     * @return int Less than, equal to or greater than 0 if the term is less than, equal to or greater than the key
+     */
+    private int compareTerm(int term, byte[] key, boolean prefix) {
+        int start = termsPosition + buffer.getInt(termOffsetsPosition + 4 * term);
+        int length = buffer.getInt(termOffsetsPosition + 4 * (term + 1)) - buffer.getInt(termOffsetsPosition + 4 * term);
+        if (prefix && length > key.length) {
+            length = key.length;
+        }
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int difference = (buffer.get(start + i) & 0xFF) - (key[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return length - key.length;
+    }
+
+
+    private int[] getPostings(int term) {
+        int start = buffer.getInt(postingOffsetsPosition + 4 * term);
+        int[] ids = new int[buffer.getInt(postingOffsetsPosition + 4 * (term + 1)) - start];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.getInt(postingsPosition + 4 * (start + i));
+        }
+        return ids;
+    }
+
+
+    private String getPath(int id) {
+        int start = buffer.getInt(pathOffsetsPosition + 4 * id);
+        return getString(pathsPosition + start, buffer.getInt(pathOffsetsPosition + 4 * (id + 1)) - start);
+    }
+
+
+    private String getString(int position, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+
+    private static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length || j < b.length) {
+            if (j == b.length || i < a.length && a[i] < b[j]) {
+                result[k++] = a[i++];
+            } else if (i == a.length || b[j] < a[i]) {
+                result[k++] = b[j++];
+            } else {
+                result[k++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+
+    /**
+     * Extract the index terms of the given resource
+     *
+     * @param path    String The path of the resource relative to the export directory, with '/' as separator
+     * @param content byte[] The processed content of the resource
+     * @return Set<String> The terms
+     */
+    static Set<String> extractTerms(String path, byte[] content) {
+        Set<String> terms = new HashSet<>();
+        String extension = getExtension(path);
+        if (extension != null) {
+            terms.add("ext:" + extension);
+        }
+        Set<String> references = new TreeSet<>();
+        try {
+            XMLStreamReader reader = ReferenceExtractor.XML_INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+            try {
+                addXmlTerms(reader, path, "bix".equals(extension) || "proxy".equals(extension), terms, references);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            // Not an XML, e.g. an XQuery
+            String text = new String(content, StandardCharsets.UTF_8);
+            addWords(text, terms);
+            Matcher matcher = XQUERY_NAMESPACE.matcher(text);
+            while (matcher.find()) {
+                terms.add("ns:" + matcher.group(1));
+            }
+            references.addAll(ReferenceExtractor.extract(path, content));
+        }
+        for (String reference : references) {
+            terms.add("ref:" + withoutExtension(reference));
+        }
+        return terms;
+    }
+
+
+    /**
+     * Add the terms of an XML resource: the words, the namespaces, the references and the endpoint URIs,
+     * i.e. the text in the 'URI' elements of a service
+     */
+    private static void addXmlTerms(XMLStreamReader reader, String path, boolean service, Set<String> terms,
+                                    Set<String> references) throws XMLStreamException {
+        int uriDepth = 0;
+        StringBuilder uri = new StringBuilder();
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case START_ELEMENT:
+                    addWords(reader.getLocalName(), terms);
+                    addNamespace(reader.getNamespaceURI(), terms);
+                    for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                        addNamespace(reader.getNamespaceURI(i), terms);
+                    }
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        String name = reader.getAttributeLocalName(i);
+                        String value = reader.getAttributeValue(i);
+                        addWords(value, terms);
+                        if (name.equals("targetNamespace") || name.equals("namespace")) {
+                            addNamespace(value.trim(), terms);
+                        }
+                    }
+                    ReferenceExtractor.addReferences(reader, path, references);
+                    if (uriDepth > 0 || service && reader.getLocalName().equals("URI")) {
+                        uriDepth++;
+                    }
+                    break;
+                case CHARACTERS:
+                case CDATA:
+                    addWords(reader.getText(), terms);
+                    if (uriDepth > 0) {
+                        uri.append(reader.getText());
+                    }
+                    break;
+                case END_ELEMENT:
+                    if (uriDepth > 0) {
+                        uriDepth--;
+                        // One URI per element, e.g. every 'value' of the URIs of a load balanced business service
+                        String value = uri.toString().trim();
+                        if (!value.isEmpty()) {
+                            terms.add("uri:" + value);
+                        }
+                        uri.setLength(0);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+
+    private static void addNamespace(String namespace, Collection<String> terms) {
+        if (namespace != null && !namespace.isEmpty()) {
+            terms.add("ns:" + namespace);
+        }
+    }
+
+
+    /**
+     * Add the words of the given text in lower case: the runs of letters, digits and '_' of 2 to
+     * {@value #MAX_WORD_LENGTH} characters
+     */
+    private static void addWords(String text, Collection<String> terms) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_');
+            if (wordChar && start == -1) {
+                start = i;
+            } else if (!wordChar && start != -1) {
+                if (i - start >= 2 && i - start <= MAX_WORD_LENGTH) {
+                    terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                }
+                start = -1;
+            }
+        }
+    }
+
+
+    private static String getExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(dot + 1).toLowerCase(Locale.ROOT) : null;
+    }
+
+
+    private static String withoutExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(0, dot) : path;
+    }
+
+
+    /**
+     * Collects the terms of the resources while they are processed. The resources may be added concurrently.
+     * A builder created with {@link #update(File)} takes over the terms of the resources that did not change
+     * since the previous index was built.
+     */
+    public static class Builder {
+
+        private final Map<String, Entry> previous;
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicInteger unchanged = new AtomicInteger();
+
+
+        public Builder() {
+            this(Collections.emptyMap());
+        }
+
+
+        private Builder(Map<String, Entry> previous) {
+            this.previous = previous;
+        }
+
+
+        /**
+         * Create a builder that updates the index in the given export directory, if there is one. The resources
+         * that are not added again are dropped from the index when it is built.
+         *
+         * @param dir File The export directory
+         * @return Builder The builder
+         */
+        public static Builder update(File dir) throws IOException {
+            File file = new File(dir, FILE_NAME);
+            if (!file.isFile()) {
+                return new Builder();
+            }
+            SearchIndex index;
+            try {
+                index = new SearchIndex(ByteBuffer.wrap(Files.readAllBytes(file.toPath())), file.getPath());
+            } catch (IOException e) {
+                System.out.println(e.getMessage() + ". The index is built again");
+                return new Builder();
+            }
+
+            List<List<String>> terms = new ArrayList<>(index.resourceCount);
+            for (int id = 0; id < index.resourceCount; id++) {
+                terms.add(new ArrayList<>());
+            }
+            for (int term = 0; term < index.termCount; term++) {
+                int start = index.buffer.getInt(index.termOffsetsPosition + 4 * term);
+                String value = index.getString(index.termsPosition + start,
+                        index.buffer.getInt(index.termOffsetsPosition + 4 * (term + 1)) - start);
+                for (int id : index.getPostings(term)) {
+                    terms.get(id).add(value);
+                }
+            }
+            Map<String, Entry> previous = new HashMap<>();
+            for (int id = 0; id < index.resourceCount; id++) {
+                previous.put(index.getPath(id), new Entry(index.getString(index.hashesPosition + HASH_LENGTH * id,
+                        HASH_LENGTH), terms.get(id).toArray(new String[0])));
+            }
+            return new Builder(previous);
+        }
+
+
+        /**
+         * Add the terms of the given resource, extracting them only if the resource changed
+         *
+         * @param path    String The path of the resource relative to the export directory, with '/' as separator
+         * @param content byte[] The processed content of the resource
+         */
+        public void add(String path, byte[] content) {
+            String hash = ExportManifest.hash(content);
+            Entry entry = previous.get(path);
+            if (entry != null && entry.hash.equals(hash)) {
+                unchanged.incrementAndGet();
+            } else {
+                entry = new Entry(hash, extractTerms(path, content).toArray(new String[0]));
+            }
+            entries.put(path, entry);
+        }
+
+
+        /**
+         * Wrap the given sink, so that the terms of every resource are added before it is passed on
+         *
+         * @param sink ResourceSink The sink to wrap
+         * @return ResourceSink The wrapping sink
+         */
+        public ResourceSink wrap(ResourceSink sink) {
+            return (path, content) -> {
+                add(path, content);
+                sink.accept(path, content);
+            };
+        }
+
+
+        /**
+         * @return int The number of added resources whose terms are taken over from the previous index
+         */
+        public int getUnchangedCount() {
+            return unchanged.get();
+        }
+
+
+        /**
+         * Build the index
+         *
+         * @return SearchIndex The index
+         */
+        public SearchIndex build() {
+            List<String> paths = new ArrayList<>(entries.keySet());
+            Collections.sort(paths);
+            Map<String, Postings> postings = new HashMap<>();
+            for (int id = 0; id < paths.size(); id++) {
+                for (String term : entries.get(paths.get(id)).terms) {
+                    postings.computeIfAbsent(term, key -> new Postings()).add(id);
+                }
+            }
+            List<byte[]> terms = new ArrayList<>(postings.size());
+            Map<byte[], Postings> postingsByTerm = new IdentityHashMap<>();
+            for (Map.Entry<String, Postings> entry : postings.entrySet()) {
+                byte[] term = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                terms.add(term);
+                postingsByTerm.put(term, entry.getValue());
+            }
+            terms.sort(Builder::compareBytes);
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bos)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(paths.size());
+                out.writeInt(terms.size());
+                List<byte[]> pathBytes = new ArrayList<>(paths.size());
+                for (String path : paths) {
+                    pathBytes.add(path.getBytes(StandardCharsets.UTF_8));
+                }
+                writeOffsets(out, pathBytes);
+                for (byte[] path : pathBytes) {
+                    out.write(path);
+                }
+                for (String path : paths) {
+                    out.write(entries.get(path).hash.getBytes(StandardCharsets.US_ASCII), 0, HASH_LENGTH);
+                }
+                writeOffsets(out, terms);
+                for (byte[] term : terms) {
+                    out.write(term);
+                }
+                int offset = 0;
+                for (byte[] term : terms) {
+                    out.writeInt(offset);
+                    offset += postingsByTerm.get(term).size;
+                }
+                out.writeInt(offset);
+                for (byte[] term : terms) {
+                    Postings termPostings = postingsByTerm.get(term);
+                    for (int i = 0; i < termPostings.size; i++) {
+                        out.writeInt(termPostings.ids[i]);
+                    }
+                }
+                return new SearchIndex(ByteBuffer.wrap(bos.toByteArray()), "The built index");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+
+        private static void writeOffsets(DataOutputStream out, List<byte[]> values) throws IOException {
+            int offset = 0;
+            for (byte[] value : values) {
+                out.writeInt(offset);
+                offset += value.length;
+            }
+            out.writeInt(offset);
+        }
+
+
+        private static int compareBytes(byte[] a, byte[] b) {
+            for (int i = 0; i < Math.min(a.length, b.length); i++) {
+                int difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (difference != 0) {
+                    return difference;
+                }
+            }
+            return a.length - b.length;
+        }
+    }
+
+
+    /**
+     * The hash and the terms of an indexed resource
+     */
+    private static class Entry {
+
+        private final String hash;
+        private final String[] terms;
+
+
+        private Entry(String hash, String[] terms) {
+            this.hash = hash;
+            this.terms = terms;
+        }
+    }
+
+
+    /**
+     * The ids of the resources of a term, added in ascending order
+     */
+    private static class Postings {
+
+        private int[] ids = new int[4];
+        private int size;
+
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package osbProjectExporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+
+/**
+ * A content-addressed store of exports. Every processed resource is stored once under its SHA-256 hash, however
+ * many exports and environments contain it, and every export is kept as a snapshot: a manifest of the paths
+ * and hashes of its resources, in the format of {@link ExportManifest}.
+ * <pre>
+ * storeDir/objects/ab/ab12...      the resources by hash, read-only
+ * storeDir/snapshots/name/yyyyMMddHHmmssSSS.manifest
+ * </pre>
+ * A snapshot is materialized to a directory with hard links to the objects, so a repeated export of a mostly
+ * unchanged project costs a manifest and the changed resources only. The snapshots are pruned and the objects
+ * that are no longer referenced are deleted by {@link #gc(int)}.
+ */
+public class SnapshotStore {
+
+    public static final String OBJECTS_DIR = "objects";
+    public static final String SNAPSHOTS_DIR = "snapshots";
+    public static final String MANIFEST_EXTENSION = ".manifest";
+    public static final int DEFAULT_KEEP = 5;
+
+    /**
+     * The objects written less than an hour ago are kept by the garbage collection, as they may belong
+     * to an export which is not finished yet
+     */
+    static final long GC_GRACE_MILLIS = 60 * 60 * 1000;
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+
+    private final File storeDir;
+    private final File objectsDir;
+    private final File snapshotsDir;
+
+
+    public SnapshotStore(String storeDir) {
+        this.storeDir = new File(storeDir).getAbsoluteFile();
+        this.objectsDir = new File(this.storeDir, OBJECTS_DIR);
+        this.snapshotsDir = new File(this.storeDir, SNAPSHOTS_DIR);
+    }
+
+
+    /**
+     * Store the given content under its hash, unless it is already stored. An object already stored is touched,
+     * so that a concurrent garbage collection keeps it, within its grace period, until the snapshot
+     * of the export is saved.
+     *
+     * @param hash    String The SHA-256 hash of the content
+     * @param content byte[] The content
+     * @return boolean True if the content was not stored yet
+     */
+    public boolean putObject(String hash, byte[] content) throws IOException {
+        File object = getObject(hash);
+        // The object is written again if it was deleted by the garbage collection before it was touched
+        if (object.isFile() && object.setLastModified(System.currentTimeMillis())) {
+            return false;
+        }
+
+        // Written to a temporary file and moved, so that a concurrent writer of the same content
+        // or a reader never sees a partial object
+        Path dir = Files.createDirectories(object.getParentFile().toPath());
+        Path tmpPath = FileUtil.writeTempFile(dir, hash, content);
+        try {
+            tmpPath.toFile().setReadOnly();
+            Files.move(tmpPath, object.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        } finally {
+            Files.deleteIfExists(tmpPath);
+        }
+        return true;
+    }
+
+
+    /**
+     * @param hash String The SHA-256 hash of the content
+     * @return File The file of the object with the given hash
+     */
+    public File getObject(String hash) {
+        return new File(new File(objectsDir, hash.substring(0, 2)), hash);
+    }
+
+
+    /**
+     * Save the given manifest as a new snapshot of the given export
+     *
+     * @param exportName String The name of the export, e.g. the project name
+     * @param manifest   ExportManifest The manifest of the export
+     * @return String The id of the snapshot: 'exportName/timestamp'
+     */
+    public synchronized String saveSnapshot(String exportName, ExportManifest manifest) throws IOException {
+        File dir = new File(snapshotsDir, exportName);
+        String timestamp = LocalDateTime.now().format(TIMESTAMP);
+        File file = new File(dir, timestamp + MANIFEST_EXTENSION);
+        for (int i = 1; file.exists(); i++) {
+            file = new File(dir, timestamp + "-" + i + MANIFEST_EXTENSION);
+        }
+        manifest.write(file);
+        return exportName + "/" + file.getName().substring(0, file.getName().length() - MANIFEST_EXTENSION.length());
+    }
+
+
+    /**
+     * @return List<String> The ids of all the snapshots: 'exportName/timestamp', sorted by the export name
+     * and the oldest first
+     */
+    public List<String> listSnapshots() {
+        List<String> ids = new ArrayList<>();
+        for (String exportName : list(snapshotsDir)) {
+            for (String timestamp : listTimestamps(exportName)) {
+                ids.add(exportName + "/" + timestamp);
+            }
+        }
+        return ids;
+    }
+
+
+    /**
+     * Load the manifest of the given snapshot
+     *
+     * @param id String The id of the snapshot: 'exportName/timestamp', or 'exportName' for the latest snapshot
+     * @return ExportManifest The manifest of the snapshot
+     */
+    public ExportManifest loadSnapshot(String id) throws IOException {
+        return ExportManifest.read(getSnapshotFile(id));
+    }
+
+
+    private File getSnapshotFile(String id) throws IOException {
+        int i = id.lastIndexOf('/');
+        String exportName = i == -1 ? id : id.substring(0, i);
+        String timestamp = i == -1 ? null : id.substring(i + 1);
+        if (timestamp == null) {
+            List<String> timestamps = listTimestamps(exportName);
+            if (!timestamps.isEmpty()) {
+                timestamp = timestamps.get(timestamps.size() - 1);
+            }
+        }
+
+        File file = new File(new File(snapshotsDir, exportName), timestamp + MANIFEST_EXTENSION);
+        if (timestamp == null || !file.isFile()) {
+            throw new IOException("[ERROR] The snapshot " + id + " is not found in " + storeDir);
+        }
+        return file;
+    }
+
+
+    /**
+     * Materialize the given snapshot to the given directory. Only the resources that differ from the manifest
+     * of the directory are replaced, the resources that are not in the snapshot are deleted, and the manifest
+     * of the snapshot is saved to the directory, so that a directory is updated in place from one snapshot
+     * to the next.
+     *
+     * @param manifest  ExportManifest The manifest of the snapshot
+     * @param targetDir File The directory to materialize to
+     * @param copy      boolean True to copy the objects, false to link them and copy only if links
+     *                  are not supported, e.g. across file systems
+     * @return int The number of resources replaced
+     */
+    public int materialize(ExportManifest manifest, File targetDir, boolean copy) throws IOException {
+        ExportManifest previousManifest = ExportManifest.load(targetDir);
+        int replaced = 0;
+        for (String path : manifest.getPaths()) {
+            String hash = manifest.getHash(path);
+            Path target = new File(targetDir, path).toPath();
+            if (hash.equals(previousManifest.getHash(path)) && Files.isRegularFile(target)) {
+                continue;
+            }
+
+            Path object = getObject(hash).toPath();
+            if (!Files.isRegularFile(object)) {
+                throw new IOException("[ERROR] The object " + hash + " of " + path + " is missing in " + storeDir);
+            }
+            Files.createDirectories(target.getParent());
+            // A linked target is replaced rather than written to, so the object is never changed
+            Files.deleteIfExists(target);
+            if (copy || !link(target, object)) {
+                Files.copy(object, target);
+                target.toFile().setWritable(true);
+            }
+            replaced++;
+        }
+
+        for (String path : previousManifest.getPaths()) {
+            if (manifest.getHash(path) == null) {
+                File file = new File(targetDir, path);
+                Files.deleteIfExists(file.toPath());
+                deleteEmptyParents(file, targetDir);
+            }
+        }
+        manifest.save(targetDir);
+        return replaced;
+    }
+
+
+    private static void deleteEmptyParents(File file, File targetDir) {
+        File parent = file.getParentFile();
+        while (parent != null && !parent.equals(targetDir)) {
+            String[] children = parent.list();
+            if (children == null || children.length > 0 || !parent.delete()) {
+                return;
+            }
+            parent = parent.getParentFile();
+        }
+    }
+
+
+    private static boolean link(Path target, Path object) throws IOException {
+        try {
+            Files.createLink(target, object);
+            return true;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * Delete all but the given number of the latest snapshots of every export and the objects
+     * that are not referenced by the remaining snapshots
+     *
+     * @param keep int The number of snapshots to keep per export
+     * @return String The summary of the garbage collection
+     */
+    public String gc(int keep) throws IOException {
+        return gc(keep, GC_GRACE_MILLIS);
+    }
+
+
+    synchronized String gc(int keep, long graceMillis) throws IOException {
+        int deletedSnapshots = 0;
+        Set<String> referenced = new HashSet<>();
+        for (String exportName : list(snapshotsDir)) {
+            List<String> timestamps = listTimestamps(exportName);
+            File dir = new File(snapshotsDir, exportName);
+            for (int i = 0; i < timestamps.size(); i++) {
+                File file = new File(dir, timestamps.get(i) + MANIFEST_EXTENSION);
+                if (i < timestamps.size() - keep) {
+                    Files.delete(file.toPath());
+                    deletedSnapshots++;
+                } else {
+                    referenced.addAll(ExportManifest.read(file).getHashes());
+                }
+            }
+        }
+
+        int deletedObjects = 0;
+        long freedBytes = 0;
+        long graceTime = System.currentTimeMillis() - graceMillis;
+        for (String prefix : list(objectsDir)) {
+            for (File object : listFiles(new File(objectsDir, prefix))) {
+                String name = object.getName();
+                String hash = name.endsWith(".tmp") ? null : name;
+                if ((hash != null && referenced.contains(hash)) || object.lastModified() > graceTime) {
+                    continue;
+                }
+                long length = object.length();
+                Files.delete(object.toPath());
+                deletedObjects++;
+                freedBytes += length;
+            }
+        }
+
+        String summary = "Deleted " + deletedSnapshots + " snapshots and " + deletedObjects + " objects (" +
+                freedBytes + " bytes) from " + storeDir + ", " + referenced.size() + " objects are referenced";
+        System.out.println(summary);
+        return summary;
+    }
+
+
+    private List<String> listTimestamps(String exportName) {
+        List<String> timestamps = new ArrayList<>();
+        for (String name : list(new File(snapshotsDir, exportName))) {
+            if (name.endsWith(MANIFEST_EXTENSION)) {
+                timestamps.add(name.substring(0, name.length() - MANIFEST_EXTENSION.length()));
+            }
+        }
+        return timestamps;
+    }
+
+
+    private static List<String> list(File dir) {
+        String[] names = dir.list();
+        if (names == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+
+    private static List<File> listFiles(File dir) {
+        File[] files = dir.listFiles(File::isFile);
+        return files == null ? Collections.<File>emptyList() : Arrays.asList(files);
+    }
+
+
+    /**
+     * Create a writer that stores the resources of an export in this store
+     *
+     * @param exportName  String The name of the export, e.g. the project name
+     * @param exportDir   String The directory to materialize the snapshot to or null not to materialize it
+     * @param copy        boolean True to materialize the snapshot with copies instead of links
+     * @return Writer The writer
+     */
+    public Writer newWriter(String exportName, String exportDir, boolean copy) {
+        return new Writer(exportName, exportDir, copy);
+    }
+
+
+    /**
+     * Stores the processed resources as objects and saves the snapshot of the export when it is finished
+     */
+    public class Writer implements ExportWriter {
+
+        private final String exportName;
+        private final String exportDir;
+        private final boolean copy;
+        private final ExportManifest manifest = new ExportManifest();
+
+        private int stored;
+        private long storedBytes;
+        private int existing;
+
+
+        private Writer(String exportName, String exportDir, boolean copy) {
+            this.exportName = exportName;
+            this.exportDir = exportDir;
+            this.copy = copy;
+        }
+
+
+        @Override
+        public void accept(String path, byte[] content) throws IOException {
+            String hash = ExportManifest.hash(content);
+            boolean added = putObject(hash, content);
+            synchronized (this) {
+                manifest.put(path, hash);
+                if (added) {
+                    stored++;
+                    storedBytes += content.length;
+                } else {
+                    existing++;
+                }
+            }
+        }
+
+
+        /**
+         * Save the snapshot, materialize it to the export directory and report the stored objects
+         *
+         * @return String The summary of the export
+         */
+        @Override
+        public synchronized String finish() throws IOException {
+            String id = saveSnapshot(exportName, manifest);
+            String summary = "Snapshot " + id + " in " + storeDir + ": " + manifest.getPaths().size() +
+                    " resources, " + stored + " new objects (" + storedBytes + " bytes), " + existing +
+                    " already stored";
+            if (exportDir != null) {
+                int replaced = materialize(manifest, new File(exportDir), copy);
+                summary += ", " + replaced + " files materialized to " + exportDir;
+            }
+            System.out.println(summary);
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package osbProjectExporter;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+
+/**
+ * Streaming formatter of XML resources into a canonical form, so that exports of the same resources
+ * are identical whatever whitespace and attribute order the server produced:
+ * <ul>
+ * <li>UTF-8 with an XML declaration and '\n' line ends</li>
+ * <li>elements indented by two spaces, whitespace between elements dropped, the text of an element kept as is</li>
+ * <li>whitespace kept where it is content: the whitespace-only text of an element without child elements,
+ * the text of xsl:text and all the whitespace under xml:space="preserve", which is written without indentation</li>
+ * <li>namespace declarations first, sorted by prefix, and declarations already in scope dropped</li>
+ * <li>attributes sorted by namespace and local name, CDATA sections written as text</li>
+ * </ul>
+ * The resource is read with StAX and written as it is read, so memory use depends on the depth of the document
+ * and not on its size. The namespace declarations that are not used by an element name are kept, as prefixes
+ * are also used in attribute values, e.g. in the type of an XSD element.
+ */
+public class XmlCanonicalizer {
+
+    private static final String INDENT = "  ";
+
+    private static final String XSL_NAMESPACE = "http://www.w3.org/1999/XSL/Transform";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY;
+
+    static {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY = factory;
+    }
+
+
+    /**
+     * Write the given XML resource in the canonical form. The channel is opened only when the root element
+     * is read, so a resource which is not an XML is passed on as it is.
+     *
+     * @param in     InputStream The resource
+     * @param opener EmbeddedContentExtractor.ChannelOpener Opens the channel to write the canonical form to
+     * @return boolean True if the resource was written, false if it is not a well-formed XML
+     */
+    public static boolean canonicalize(InputStream in, EmbeddedContentExtractor.ChannelOpener opener)
+            throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+
+            // The nodes before the root element
+            List<String> prolog = new ArrayList<>();
+            int event = reader.next();
+            while (event != START_ELEMENT) {
+                if (event == COMMENT) {
+                    prolog.add("<!--" + reader.getText() + "-->");
+                } else if (event == PROCESSING_INSTRUCTION) {
+                    prolog.add(processingInstruction(reader));
+                } else if (event == CHARACTERS && !reader.isWhiteSpace() || event == END_DOCUMENT) {
+                    return false;
+                }
+                event = reader.next();
+            }
+
+            try (Writer writer = Channels.newWriter(opener.open(), StandardCharsets.UTF_8.newEncoder(), 8192)) {
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                for (String node : prolog) {
+                    writer.write(node);
+                    writer.write('\n');
+                }
+                new Formatter(reader, writer).write();
+                writer.write('\n');
+            }
+            return true;
+        } catch (XMLStreamException e) {
+            // Not a well-formed XML, pass the content as is
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+    }
+
+
+    private static String processingInstruction(XMLStreamReader reader) {
+        String data = reader.getPIData();
+        return "<?" + reader.getPITarget() + (data == null || data.isEmpty() ? "" : " " + data.trim()) + "?>";
+    }
+
+
+    /**
+     * Writes the elements from the root element on. The start tag of an element is left open until the next node
+     * is read, so that an empty element is written as '&lt;a/&gt;' and a text-only element on one line.
+     */
+    private static class Formatter {
+
+        private final XMLStreamReader reader;
+        private final Writer writer;
+
+        // The namespaces declared in the output by the open elements
+        private final Deque<Map<String, String>> scopes = new ArrayDeque<>();
+        // Whether the open elements contain text, in which case their children are not indented
+        private final Deque<Boolean> mixed = new ArrayDeque<>();
+        // Whether the whitespace of the open elements is preserved, by xml:space or xsl:text
+        private final Deque<Boolean> preserve = new ArrayDeque<>();
+        // The whitespace read since the last node, written only if it turns out to be content
+        private final StringBuilder whitespace = new StringBuilder();
+        private boolean startTagOpen;
+        private boolean lastWasText;
+
+
+        private Formatter(XMLStreamReader reader, Writer writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+
+        private void write() throws XMLStreamException, IOException {
+            int event = START_ELEMENT;
+            while (true) {
+                switch (event) {
+                    case START_ELEMENT:
+                        startElement();
+                        break;
+                    case END_ELEMENT:
+                        endElement();
+                        if (mixed.isEmpty()) {
+                            return;
+                        }
+                        break;
+                    case CHARACTERS:
+                    case CDATA:
+                    case SPACE:
+                    case ENTITY_REFERENCE:
+                        text();
+                        break;
+                    case COMMENT:
+                        node("<!--" + reader.getText() + "-->");
+                        break;
+                    case PROCESSING_INSTRUCTION:
+                        node(processingInstruction(reader));
+                        break;
+                    default:
+                        break;
+                }
+                event = reader.next();
+            }
+        }
+
+
+        private void startElement() throws IOException {
+            // Whitespace between elements
+            whitespace.setLength(0);
+            closeStartTag();
+            if (!mixed.isEmpty()) {
+                indent();
+            }
+
+            writer.write('<');
+            writer.write(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+
+            // Namespace declarations which are not in scope yet, by prefix
+            Map<String, String> scope = new TreeMap<>();
+            for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                String prefix = reader.getNamespacePrefix(i) == null ? "" : reader.getNamespacePrefix(i);
+                String uri = reader.getNamespaceURI(i) == null ? "" : reader.getNamespaceURI(i);
+                if (!uri.equals(lookup(prefix))) {
+                    scope.put(prefix, uri);
+                }
+            }
+            for (Map.Entry<String, String> namespace : scope.entrySet()) {
+                writer.write(namespace.getKey().isEmpty() ? " xmlns" : " xmlns:" + namespace.getKey());
+                writer.write("=\"");
+                escape(namespace.getValue(), true);
+                writer.write('"');
+            }
+
+            // Attributes by namespace and local name
+            Integer[] attributes = new Integer[reader.getAttributeCount()];
+            for (int i = 0; i < attributes.length; i++) {
+                attributes[i] = i;
+            }
+            Arrays.sort(attributes, Comparator
+                    .comparing((Integer i) -> nullToEmpty(reader.getAttributeNamespace(i)))
+                    .thenComparing(i -> reader.getAttributeLocalName(i)));
+            for (int i : attributes) {
+                writer.write(' ');
+                writer.write(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)));
+                writer.write("=\"");
+                escape(reader.getAttributeValue(i), true);
+                writer.write('"');
+            }
+
+            boolean preserved = preserve.isEmpty() ? false : preserve.peek();
+            String space = reader.getAttributeValue(XMLConstants.XML_NS_URI, "space");
+            if (space != null) {
+                preserved = space.equals("preserve");
+            }
+            if (XSL_NAMESPACE.equals(reader.getNamespaceURI()) && reader.getLocalName().equals("text")) {
+                preserved = true;
+            }
+
+            scopes.push(scope);
+            // The whitespace of a preserved element is content, so it is treated as having text
+            mixed.push(preserved);
+            preserve.push(preserved);
+            startTagOpen = true;
+            lastWasText = false;
+        }
+
+
+        private void endElement() throws IOException {
+            scopes.pop();
+            preserve.pop();
+            boolean text = mixed.pop();
+            if (startTagOpen && whitespace.length() > 0) {
+                // The whitespace-only text of an element without child elements
+                closeStartTag();
+                escape(whitespace.toString(), false);
+                lastWasText = true;
+            }
+            whitespace.setLength(0);
+            if (startTagOpen) {
+                writer.write("/>");
+                startTagOpen = false;
+            } else {
+                if (!text && !lastWasText) {
+                    indent();
+                }
+                writer.write("</");
+                writer.write(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                writer.write('>');
+            }
+            lastWasText = false;
+        }
+
+
+        private void text() throws IOException {
+            String text = reader.getText();
+            if (text.trim().isEmpty() && !mixed.peek()) {
+                // Whitespace between elements or the whole text of the element, known at the next node
+                whitespace.append(text);
+                return;
+            }
+            closeStartTag();
+            if (!mixed.peek()) {
+                mixed.pop();
+                mixed.push(true);
+            }
+            escape(whitespace.toString(), false);
+            whitespace.setLength(0);
+            escape(text, false);
+            lastWasText = true;
+        }
+
+
+        private void node(String node) throws IOException {
+            whitespace.setLength(0);
+            closeStartTag();
+            if (!mixed.peek()) {
+                indent();
+            }
+            writer.write(node);
+            lastWasText = false;
+        }
+
+
+        private void closeStartTag() throws IOException {
+            if (startTagOpen) {
+                writer.write('>');
+                startTagOpen = false;
+            }
+        }
+
+
+        private void indent() throws IOException {
+            if (mixed.contains(true)) {
+                return;
+            }
+            writer.write('\n');
+            for (int i = 0; i < mixed.size(); i++) {
+                writer.write(INDENT);
+            }
+        }
+
+
+        private String lookup(String prefix) {
+            for (Map<String, String> scope : scopes) {
+                String uri = scope.get(prefix);
+                if (uri != null) {
+                    return uri;
+                }
+            }
+            if (prefix.equals(XMLConstants.XML_NS_PREFIX)) {
+                return XMLConstants.XML_NS_URI;
+            }
+            return prefix.isEmpty() ? "" : null;
+        }
+
+
+        private void escape(String text, boolean attribute) throws IOException {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '&':
+                        writer.write("&amp;");
+                        break;
+                    case '<':
+                        writer.write("&lt;");
+                        break;
+                    case '>':
+                        writer.write(attribute ? ">" : "&gt;");
+                        break;
+                    case '"':
+                        writer.write(attribute ? "&quot;" : "\"");
+                        break;
+                    case '\t':
+                        writer.write(attribute ? "&#x9;" : "\t");
+                        break;
+                    case '\n':
+                        writer.write(attribute ? "&#xA;" : "\n");
+                        break;
+                    case '\r':
+                        writer.write("&#xD;");
+                        break;
+                    default:
+                        writer.write(c);
+                }
+            }
+        }
+
+
+        private static String qualifiedName(String prefix, String localName) {
+            return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+        }
+
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class ArchiveWriterTest {
+
+    private static final String LONG_PATH = "Project/" + String.join("/", java.util.Collections.nCopies(12, "Folder")) +
+            "/XMLSchema.xsd";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testZip() throws IOException {
+        File file = new File(tmp.getRoot(), "export.zip");
+        Map<String, byte[]> resources = resources();
+        ArchiveWriter writer = ArchiveWriter.create(file, 4);
+        for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            writer.accept(resource.getKey(), resource.getValue());
+        }
+        writer.finish();
+
+        Map<String, byte[]> archived = new HashMap<>();
+        try (ZipFile zipFile = new ZipFile(file)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    archived.put(entry.getName(), readAll(in));
+                }
+            }
+        }
+        assertArchived(resources, archived);
+    }
+
+    @Test
+    public void testTarGz() throws IOException {
+        File file = new File(tmp.getRoot(), "export.tar.gz");
+        Map<String, byte[]> resources = resources();
+        ArchiveWriter writer = ArchiveWriter.create(file, 4);
+        for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            writer.accept(resource.getKey(), resource.getValue());
+        }
+        writer.finish();
+
+        Map<String, byte[]> archived = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(file)))) {
+            byte[] header = new byte[512];
+            String paxPath = null;
+            while (true) {
+                in.readFully(header);
+                if (header[0] == 0) {
+                    break;
+                }
+                int size = Integer.parseInt(new String(header, 124, 11, StandardCharsets.US_ASCII), 8);
+                byte[] content = new byte[size];
+                in.readFully(content);
+                in.readFully(new byte[(512 - size % 512) % 512]);
+                if (header[156] == 'x') {
+                    String record = new String(content, StandardCharsets.UTF_8);
+                    paxPath = record.substring(record.indexOf("path=") + 5, record.length() - 1);
+                    continue;
+                }
+                String name = new String(header, 0, 100, StandardCharsets.UTF_8).trim();
+                archived.put(paxPath != null ? paxPath : name, content);
+                paxPath = null;
+            }
+        }
+        assertArchived(resources, archived);
+    }
+
+    @Test
+    public void testAbortKeepsPreviousArchive() throws IOException {
+        File file = new File(tmp.getRoot(), "export.zip");
+        ArchiveWriter writer = ArchiveWriter.create(file, 2);
+        writer.accept("Project/A.xsd", new byte[]{'a'});
+        writer.finish();
+        writer.abort();
+        long length = file.length();
+        assertFalse(new File(tmp.getRoot(), "export.zip.tmp").exists());
+
+        // A failed export leaves neither a truncated archive nor a temporary file
+        writer = ArchiveWriter.create(file, 2);
+        writer.accept("Project/B.xsd", new byte[]{'b'});
+        writer.abort();
+        assertEquals(length, file.length());
+        assertFalse(new File(tmp.getRoot(), "export.zip.tmp").exists());
+        try (ZipFile zipFile = new ZipFile(file)) {
+            assertNotNull(zipFile.getEntry("Project/A.xsd"));
+        }
+    }
+
+    @Test
+    public void testIndexesNextToArchive() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 8, 0);
+        File exportDir = new File(tmp.getRoot(), "out");
+        File archive = new File(tmp.getRoot(), "out.zip");
+        Map<String, String> args = new HashMap<>();
+        args.put("exportDir", exportDir.getPath());
+        args.put("archive", archive.getPath());
+        args.put("index", "true");
+        args.put("search-index", "true");
+
+        // The export directory is created for the indexes only
+        OsbProjectExporter.processJar(domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true), null, args);
+        assertTrue(archive.isFile());
+        assertEquals(8, DependencyIndex.load(exportDir).size());
+        assertTrue(new File(exportDir, SearchIndex.FILE_NAME).isFile());
+        assertFalse(new File(exportDir, "Project_0").exists());
+    }
+
+    @Test
+    public void testProjectArchive() {
+        assertEquals("out/export_Project_1.tar.gz", OsbProjectExporter.getProjectArchive("out/export.tar.gz", "Project_1"));
+        assertEquals("export_Project_1.zip", OsbProjectExporter.getProjectArchive("export.zip", "Project_1"));
+    }
+
+    private static Map<String, byte[]> resources() {
+        Map<String, byte[]> resources = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            byte[] content = new byte[random.nextInt(20000)];
+            for (int j = 0; j < content.length; j++) {
+                content[j] = (byte) ('a' + random.nextInt(4));
+            }
+            resources.put("Project/XSD/Schema_" + i + ".xsd", content);
+        }
+        resources.put(LONG_PATH, "<schema/>".getBytes(StandardCharsets.UTF_8));
+        resources.put("Project/XSD/Schéma.xsd", new byte[0]);
+        return resources;
+    }
+
+    private static void assertArchived(Map<String, byte[]> resources, Map<String, byte[]> archived) {
+        assertEquals(resources.keySet(), archived.keySet());
+        for (Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            assertArrayEquals(resource.getKey(), resource.getValue(), archived.get(resource.getKey()));
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
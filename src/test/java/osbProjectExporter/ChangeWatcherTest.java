@@ -0,0 +1,73 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+
+public class ChangeWatcherTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testGetPath() {
+        Ref ref = new Ref("XMLSchema", new String[]{"Project", "XSD", "Schema"});
+        assertEquals("Project/XSD/Schema.XMLSchema", ChangeWatcher.getEntryName(ref));
+        assertEquals("Project/XSD/Schema.xsd", ChangeWatcher.getPath(ChangeWatcher.getEntryName(ref)));
+    }
+
+    @Test
+    public void testPoll() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(2, 8, 1);
+        File exportDir = tmp.getRoot();
+        try (StandInOsbServer server = StandInOsbServer.start(domain, 0);
+             OsbConnection connection = OsbConnection.open(server.getUrl(), "weblogic", "welcome1",
+                     OsbConnection.DOMAIN_RUNTIME)) {
+            ChangeWatcher watcher = new ChangeWatcher(connection, Collections.singletonList("Project_0"), exportDir,
+                    RefFilter.ALL, 5, false);
+            Ref changed = new Ref("XMLSchema", new String[]{"Project_0", "XSD", "XMLSchema_4"});
+            Ref removed = new Ref("WSDL", new String[]{"Project_0", "WSDL", "WSDL_5"});
+            File changedFile = new File(exportDir, ChangeWatcher.getPath(ChangeWatcher.getEntryName(changed)));
+            File removedFile = new File(exportDir, ChangeWatcher.getPath(ChangeWatcher.getEntryName(removed)));
+
+            // The first poll exports all the resources of the project, without dependencies, in shards
+            assertTrue(watcher.poll().startsWith("Exported 8 changed and deleted 0 removed of 8 resources"));
+            assertEquals(2, server.getExportCalls());
+            assertTrue(changedFile.isFile());
+            assertTrue(removedFile.isFile());
+            assertFalse(new File(exportDir, "Project_1").exists());
+            assertEquals(8, ExportManifest.load(exportDir).getPaths().size());
+
+            // Nothing is exported while nothing changes
+            assertEquals("No changes in 8 resources", watcher.poll());
+            assertEquals(2, server.getExportCalls());
+
+            ExportManifest manifest = ExportManifest.load(exportDir);
+            String changedPath = ChangeWatcher.getPath(ChangeWatcher.getEntryName(changed));
+            manifest.put(changedPath, "0");
+            manifest.save(exportDir);
+            domain.touch(changed);
+            domain.remove(removed);
+            assertTrue(watcher.poll().startsWith("Exported 1 changed and deleted 1 removed of 7 resources"));
+            assertEquals(3, server.getExportCalls());
+            assertFalse(removedFile.exists());
+            manifest = ExportManifest.load(exportDir);
+            assertEquals(7, manifest.getPaths().size());
+            assertEquals(ExportManifest.hash(Files.readAllBytes(changedFile.toPath())), manifest.getHash(changedPath));
+
+            // The fingerprints are kept in the export directory, so a new watcher continues from the last poll
+            ChangeWatcher restarted = new ChangeWatcher(connection, Collections.singletonList("Project_0"), exportDir,
+                    RefFilter.ALL, 5, false);
+            assertEquals("No changes in 7 resources", restarted.poll());
+            assertEquals(3, server.getExportCalls());
+        }
+    }
+}
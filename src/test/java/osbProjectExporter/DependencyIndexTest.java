@@ -0,0 +1,101 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class DependencyIndexTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testExtractReferences() {
+        String wsdl = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<wsdl:definitions xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\" xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">\n" +
+                "  <wsdl:import namespace=\"urn:a\" location=\"Common.wsdl\"/>\n" +
+                "  <wsdl:types><xsd:schema>\n" +
+                "    <xsd:import namespace=\"urn:b\" schemaLocation=\"../../Project_2/XSD/Types.xsd?x=1\"/>\n" +
+                "    <xsd:include schemaLocation=\"http://example.com/External.xsd\"/>\n" +
+                "    <xsd:element ref=\"tns:Request\"/>\n" +
+                "  </xsd:schema></wsdl:types>\n" +
+                "</wsdl:definitions>";
+        assertEquals(Arrays.asList("Project_1/WSDL/Common.wsdl", "Project_2/XSD/Types.xsd"),
+                Arrays.asList(ReferenceExtractor.extract("Project_1/WSDL/Service.wsdl", bytes(wsdl)).toArray()));
+
+        String xquery = "xquery version \"1.0\" encoding \"utf-8\";\n" +
+                "(:: pragma bea:global-element-return element=\"ns0:Response\" location=\"../XSD/Types.xsd\" ::)\n" +
+                "import module namespace lib = \"urn:lib\" at \"Lib.xqy\";";
+        assertEquals(Arrays.asList("Project_1/XSD/Types.xsd", "Project_1/Xquery/Lib.xqy"),
+                Arrays.asList(ReferenceExtractor.extract("Project_1/Xquery/Transform.xqy", bytes(xquery)).toArray()));
+
+        assertNull(ReferenceExtractor.resolve("Project_1/Service.wsdl", "../../Outside.xsd"));
+    }
+
+    @Test
+    public void testIndexExport() throws Exception {
+        // Project_0 -> Project_1 -> Project_2, resources: XMLSchema_0, WSDL_1, BusinessService_2, Pipeline_3, ...
+        SyntheticDomain domain = SyntheticDomain.generate(3, 8, 2);
+        Set<Ref> refs = domain.getRefs(Ref.makeProjectRef("Project_0"));
+        byte[] jar = domain.exportJar(refs, true);
+
+        DependencyIndex.Builder builder = new DependencyIndex.Builder();
+        FileUtil.unpackAndProcessJar(jar, builder.wrap((path, content) -> {
+        }));
+        builder.build().save(tmp.getRoot());
+        DependencyIndex index = DependencyIndex.load(tmp.getRoot());
+
+        assertEquals(24, index.size());
+        assertEquals(Arrays.asList("Project_1/Business/BusinessService_2.bix", "Project_2/Pipeline/Pipeline_3.pipeline"),
+                index.getDependencies("Project_1/Pipeline/Pipeline_3.pipeline", false));
+        assertEquals(Arrays.asList("Project_1/XSD/XMLSchema_0.xsd", "Project_2/WSDL/WSDL_1.wsdl"),
+                index.getDependents("Project_2/XSD/XMLSchema_0", false));
+
+        // Everything built on the schema in the last project of the chain
+        List<String> dependents = index.getDependents("Project_2/XSD/XMLSchema_0.xsd", true);
+        assertEquals(11, dependents.size());
+        assertTrue(dependents.contains("Project_0/Pipeline/Pipeline_3.pipeline"));
+        assertFalse(dependents.contains("Project_0/XSD/XMLSchema_4.xsd"));
+        assertEquals(Collections.emptyList(), index.getDependencies("Project_2/XSD/XMLSchema_4.xsd", true));
+
+        assertTrue(OsbProjectExporter.query(new String[]{"query", tmp.getRoot().getPath(), "dependents",
+                "Project_2/XSD/XMLSchema_0.xsd", "--transitive"}));
+        assertFalse(OsbProjectExporter.query(new String[]{"query", tmp.getRoot().getPath(), "dependents",
+                "Project_9/XSD/Missing.xsd"}));
+    }
+
+    @Test
+    public void testAmbiguousName() {
+        DependencyIndex.Builder builder = new DependencyIndex.Builder();
+        builder.add("Project/Order/Order.xsd", Collections.emptySet());
+        builder.add("Project/Order/Order.wsdl", Collections.singleton("Project/Order/Order.xsd"));
+        builder.add("Project/Order/Order.pipeline", Collections.singleton("Project/Order/Order"));
+        builder.add("Project/Order/Service.proxy", Collections.singleton("Project/Order/Service"));
+        DependencyIndex index = builder.build();
+
+        assertEquals(Collections.singleton("Project/Order/Order"), index.getAmbiguous());
+        // The reference without the extension is kept as it is instead of resolved to either resource
+        assertEquals(Collections.singletonList("Project/Order/Order"),
+                index.getDependencies("Project/Order/Order.pipeline", false));
+        assertEquals(Collections.singletonList("Project/Order/Order.wsdl"),
+                index.getDependents("Project/Order/Order.xsd", false));
+        assertEquals(Collections.emptyList(), index.getDependencies("Project/Order/Service", false));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
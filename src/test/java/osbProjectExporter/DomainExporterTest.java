@@ -0,0 +1,82 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class DomainExporterTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testShard() {
+        List<Ref> refs = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            refs.add(new Ref("XMLSchema", new String[]{"Project", "XSD", "Schema_" + i}));
+        }
+        List<List<Ref>> shards = DomainExporter.shard(refs, 3);
+        assertEquals(3, shards.size());
+        assertEquals(refs.subList(6, 7), shards.get(2));
+    }
+
+    @Test
+    public void testExportDomain() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(5, 40, 2);
+        try (StandInOsbServer server = StandInOsbServer.start(domain, 20)) {
+            Map<String, String> args = new HashMap<>();
+            args.put("url", server.getUrl());
+            args.put("userName", "weblogic");
+            args.put("password", "welcome1");
+            args.put("exportDir", tmp.getRoot().getAbsolutePath());
+            args.put("connections", "3");
+            args.put("shard-size", "25");
+
+            assertTrue(DomainExporter.exportDomain(args));
+            assertEquals(8, server.getExportCalls());
+            assertTrue(server.getMaxConcurrentExports() > 1);
+            assertTrue(server.getMaxConcurrentExports() <= 3);
+        }
+
+        List<File> files = FileUtil.listFilesRecursively(tmp.getRoot().getAbsolutePath());
+        assertEquals(domain.getResourceCount(), files.size());
+        assertTrue(new File(tmp.getRoot(), "Project_4/Pipeline/Pipeline_39.pipeline").exists());
+    }
+
+    @Test
+    public void testFailedShardKeepsArchive() throws Exception {
+        File archive = new File(tmp.getRoot(), "domain.zip");
+        Files.write(archive.toPath(), "previous".getBytes(StandardCharsets.UTF_8));
+        SyntheticDomain domain = SyntheticDomain.generate(2, 10, 0);
+        try (StandInOsbServer server = StandInOsbServer.start(domain, 0)) {
+            server.failExports(1, 2);
+            Map<String, String> args = new HashMap<>();
+            args.put("url", server.getUrl());
+            args.put("userName", "weblogic");
+            args.put("password", "welcome1");
+            args.put("exportDir", tmp.getRoot().getAbsolutePath());
+            args.put("archive", archive.getPath());
+            args.put("connections", "1");
+            args.put("shard-size", "5");
+
+            assertFalse(DomainExporter.exportDomain(args));
+        }
+
+        assertEquals("previous", new String(Files.readAllBytes(archive.toPath()), StandardCharsets.UTF_8));
+        assertFalse(new File(archive.getPath() + ".tmp").exists());
+    }
+}
@@ -0,0 +1,78 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+
+public class DriftReportTest {
+
+    @Test
+    public void testCompare() {
+        ExportManifest dev = new ExportManifest();
+        dev.put("Project/XSD/A.xsd", "aaaaaaaa11");
+        dev.put("Project/XSD/B.xsd", "bbbbbbbb11");
+        dev.put("Project/XSD/C.xsd", "cccccccc11");
+        ExportManifest prod = new ExportManifest();
+        prod.put("Project/XSD/A.xsd", "aaaaaaaa11");
+        prod.put("Project/XSD/B.xsd", "bbbbbbbb22");
+        prod.put("Project/XSD/D.xsd", "dddddddd11");
+        Map<String, ExportManifest> manifests = new LinkedHashMap<>();
+        manifests.put("dev", dev);
+        manifests.put("prod", prod);
+
+        DriftReport report = DriftReport.compare(manifests);
+        assertTrue(report.hasDrift());
+        assertEquals(Arrays.asList("Project/XSD/B.xsd", "Project/XSD/C.xsd", "Project/XSD/D.xsd"),
+                Arrays.asList(report.getDrifts().keySet().toArray()));
+        String formatted = report.format();
+        assertTrue(formatted, formatted.startsWith(
+                "Drift between dev, prod: 4 resources compared, 2 missing in some environments, 1 differing"));
+        assertTrue(formatted, formatted.contains("Project/XSD/B.xsd: differing (dev=bbbbbbbb, prod=bbbbbbbb)"));
+        assertTrue(formatted, formatted.contains("Project/XSD/C.xsd: only in dev"));
+        assertTrue(formatted, formatted.contains("Project/XSD/D.xsd: only in prod"));
+
+        manifests.put("prod", dev);
+        assertFalse(DriftReport.compare(manifests).hasDrift());
+    }
+
+    @Test
+    public void testExportConcurrently() throws Exception {
+        SyntheticDomain devDomain = SyntheticDomain.generate(2, 8, 1);
+        SyntheticDomain prodDomain = SyntheticDomain.generate(2, 8, 1);
+        Ref changed = new Ref("Pipeline", new String[]{"Project_0", "Pipeline", "Pipeline_3"});
+        Ref removed = new Ref("WSDL", new String[]{"Project_0", "WSDL", "WSDL_5"});
+        prodDomain.touch(changed);
+        prodDomain.remove(removed);
+
+        long latency = 300;
+        try (StandInOsbServer dev = StandInOsbServer.start(devDomain, latency);
+             StandInOsbServer prod = StandInOsbServer.start(prodDomain, latency)) {
+            Properties config = new Properties();
+            for (StandInOsbServer server : new StandInOsbServer[]{dev, prod}) {
+                String name = server == dev ? "dev" : "prod";
+                config.setProperty("environment." + name + ".url", server.getUrl());
+                config.setProperty("environment." + name + ".userName", "weblogic");
+                config.setProperty("environment." + name + ".password", "welcome1");
+            }
+
+            long start = System.currentTimeMillis();
+            DriftReport report = DriftReport.export(config, Arrays.asList("Project_0"), RefFilter.ALL, false);
+            long millis = System.currentTimeMillis() - start;
+
+            assertEquals(Arrays.asList("Project_0/Pipeline/Pipeline_3.pipeline", "Project_0/WSDL/WSDL_5.wsdl"),
+                    Arrays.asList(report.getDrifts().keySet().toArray()));
+            assertNull(report.getDrifts().get("Project_0/WSDL/WSDL_5.wsdl").get("prod"));
+            assertEquals(1, dev.getExportCalls());
+            assertEquals(1, prod.getExportCalls());
+            // getRefs and export on both servers at the same time, not one after the other
+            assertTrue("The environments were exported sequentially in " + millis + " ms", millis < 4 * latency);
+        }
+    }
+}
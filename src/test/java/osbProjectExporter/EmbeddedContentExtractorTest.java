@@ -0,0 +1,53 @@
+package osbProjectExporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class EmbeddedContentExtractorTest {
+
+    @Test
+    public void testExtractCdata() throws Exception {
+        String path = "src/test/resources/OSBExport_F000T00_Felles_20241023094828014/F000T00_Felles/scm-information.XML";
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (InputStream in = new FileInputStream(path)) {
+            assertTrue(EmbeddedContentExtractor.extract(in, () -> Channels.newChannel(bos)));
+        }
+        String expected = FileUtil.getXmlDocFromFile(new File(path))
+                .getDocumentElement().getFirstChild().getNextSibling().getFirstChild().getNodeValue();
+        assertEquals(expected, new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExtractJavaScript() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<con:javaScriptEntry xmlns:con=\"http://www.bea.com/wli/sb/resources/config\">\n" +
+                "    <con:javaScript-content>var a = 1 &lt; 2; // æøå</con:javaScript-content>\n" +
+                "</con:javaScriptEntry>";
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertTrue(EmbeddedContentExtractor.extract(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), () -> Channels.newChannel(bos)));
+        assertEquals("var a = 1 < 2; // æøå", new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExtractNoEmbeddedContent() throws Exception {
+        String path = "src/test/resources/OSBExport_F000T00_Felles_20241023094828014/F000T00_Felles/TestServiceAccount.ServiceAccount";
+        try (InputStream in = new FileInputStream(path)) {
+            assertFalse(EmbeddedContentExtractor.extract(in, () -> {
+                throw new AssertionError("The channel must not be opened");
+            }));
+        }
+    }
+}
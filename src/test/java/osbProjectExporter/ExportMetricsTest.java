@@ -0,0 +1,80 @@
+package osbProjectExporter;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class ExportMetricsTest {
+
+    @Test
+    public void testMetrics() {
+        ExportMetrics metrics = ExportMetrics.reset();
+        try (ExportMetrics.Phase phase = metrics.startPhase("export")) {
+            phase.addBytes(1000);
+        }
+        try (ExportMetrics.Phase ignored = metrics.startPhase("parse")) {
+            for (int i = 0; i < 20; i++) {
+                metrics.recordResource("Project/XSD/Schema_" + i + ".xsd", "xsd", 100, i * 1000L);
+            }
+            metrics.recordResource("Project/Proxy \"1\".proxy", "proxy", 50, 1_000_000L);
+        }
+        metrics.addBytesTransferred(1000);
+
+        assertEquals(ExportMetrics.SLOWEST_RESOURCES, metrics.getSlowestPaths().size());
+        assertEquals(Arrays.asList("Project/Proxy \"1\".proxy", "Project/XSD/Schema_19.xsd"),
+                metrics.getSlowestPaths().subList(0, 2));
+
+        String json = metrics.toJson();
+        assertTrue(json.contains("\"bytesTransferred\": 1000,"));
+        assertTrue(json.contains("\"files\": 21,"));
+        assertTrue(json.contains("\"bytesWritten\": 2050,"));
+        assertTrue(json.contains("{\"name\": \"export\", \"count\": 1, \"millis\": "));
+        assertTrue(json.contains("\"bytes\": 1000}"));
+        assertTrue(json.contains("{\"extension\": \"proxy\", \"files\": 1, \"bytes\": 50, \"parseMillis\": 1.000}"));
+        assertTrue(json.contains("{\"extension\": \"xsd\", \"files\": 20, \"bytes\": 2000, \"parseMillis\": 0.190}"));
+        assertTrue(json.contains("{\"path\": \"Project/Proxy \\\"1\\\".proxy\", \"bytes\": 50, \"millis\": 1.000}"));
+        assertEquals(ExportMetrics.get(), metrics);
+    }
+
+    @Test
+    public void testConcurrentPhase() throws Exception {
+        ExportMetrics metrics = new ExportMetrics();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> shards = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                shards.add(executor.submit(() -> {
+                    try (ExportMetrics.Phase ignored = metrics.startPhase("export")) {
+                        Thread.sleep(200);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> shard : shards) {
+                shard.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        double elapsedMillis = (System.nanoTime() - start) / 1e6;
+
+        // The wall time of the phase is not longer than the export, the thread time is the sum of the shards
+        Matcher matcher = Pattern.compile("\"count\": 4, \"millis\": ([0-9.]+), \"threadMillis\": ([0-9.]+)")
+                .matcher(metrics.toJson());
+        assertTrue(metrics.toJson(), matcher.find());
+        assertTrue(Double.parseDouble(matcher.group(1)) <= elapsedMillis);
+        assertTrue(Double.parseDouble(matcher.group(2)) >= 800);
+    }
+}
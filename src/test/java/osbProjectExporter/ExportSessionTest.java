@@ -0,0 +1,95 @@
+package osbProjectExporter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+
+public class ExportSessionTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (StandInOsbServer dev = StandInOsbServer.start(SyntheticDomain.generate(3, 8, 0), 5);
+             StandInOsbServer prod = StandInOsbServer.start(SyntheticDomain.generate(3, 16, 0), 5);
+             ExportSession devSession = ExportSession.open(dev.getUrl(), "weblogic", "welcome1");
+             ExportSession prodSession = ExportSession.open(prod.getUrl(), "weblogic", "welcome1")) {
+            Map<String, String> options = Collections.singletonMap("streaming", "true");
+            List<Future<ExportResult>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                String project = "Project_" + i;
+                results.add(executor.submit(() -> devSession.export(project, tmp.getRoot() + "/dev/" + project, options)));
+                results.add(executor.submit(() -> prodSession.export(project, tmp.getRoot() + "/prod/" + project, options)));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                ExportResult result = results.get(i).get();
+                assertTrue(result.toString(), result.isSuccess());
+                // Every export counts only its own resources
+                assertEquals(i % 2 == 0 ? 8 : 16, result.getResourceCount());
+                assertEquals(result.getResourceCount(), FileUtil.listFilesRecursively(result.getTarget()).size());
+            }
+            assertTrue(new File(tmp.getRoot(), "prod/Project_1/Project_1/XSD/XMLSchema_12.xsd").isFile());
+            assertFalse(new File(tmp.getRoot(), "dev/Project_1/Project_1/XSD/XMLSchema_12.xsd").exists());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExportProjects() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(3, 8, 0), 0);
+             ExportSession session = ExportSession.open(server.getUrl(), "weblogic", "welcome1")) {
+            Map<String, String> options = new HashMap<>();
+            options.put("concurrency", "2");
+            options.put("include-types", "WSDL");
+            List<ExportResult> results = session.export(Arrays.asList("Project_2", "Missing", "Project_0"),
+                    tmp.getRoot().getPath(), options);
+
+            assertEquals(3, results.size());
+            assertEquals("Project_2", results.get(0).getProjectName());
+            assertEquals(2, results.get(0).getResourceCount());
+            assertFalse(results.get(1).isSuccess());
+            assertNotNull(results.get(1).getError());
+            assertTrue(results.get(2).isSuccess());
+            assertTrue(new File(tmp.getRoot(), "Project_0/Project_0/WSDL/WSDL_1.wsdl").isFile());
+            assertFalse(new File(tmp.getRoot(), "Project_0/Project_0/XSD").exists());
+        }
+    }
+
+    @Test
+    public void testInvalidOptionsAndClosedSession() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(1, 4, 0), 0)) {
+            ExportSession session = ExportSession.open(server.getUrl(), "weblogic", "welcome1");
+            String exportDir = tmp.getRoot().getPath();
+            for (String option : Arrays.asList("unknown=1", "parallel=0", "domain=true", "include-types=Unknown")) {
+                String[] nameAndValue = option.split("=");
+                try {
+                    session.export("Project_0", exportDir, Collections.singletonMap(nameAndValue[0], nameAndValue[1]));
+                    fail("The option " + option + " is not valid");
+                } catch (IllegalArgumentException e) {
+                    assertTrue(e.getMessage(), e.getMessage().startsWith("[ERROR]"));
+                }
+            }
+
+            session.close();
+            assertFalse(session.isOpen());
+            try {
+                session.export("Project_0", exportDir, Collections.emptyMap());
+                fail("The session is closed");
+            } catch (IllegalStateException expected) {
+            }
+        }
+    }
+}
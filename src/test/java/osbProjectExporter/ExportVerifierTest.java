@@ -0,0 +1,99 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class ExportVerifierTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testScanCachedBySizeAndTime() throws Exception {
+        File dir = tmp.newFolder("export");
+        File cacheFile = new File(tmp.getRoot(), "scan.cache");
+        File schema = new File(dir, "Project/XSD/A.xsd");
+        FileUtil.writeFile(schema, "<a/>".getBytes(StandardCharsets.UTF_8));
+        FileUtil.writeFile(new File(dir, "Project/WSDL/B.wsdl"), "<b/>".getBytes(StandardCharsets.UTF_8));
+        FileUtil.writeFile(new File(dir, ".git/HEAD"), "ref".getBytes(StandardCharsets.UTF_8));
+        FileUtil.writeFile(new File(dir, ExportManifest.FILE_NAME), "".getBytes(StandardCharsets.UTF_8));
+        long modified = System.currentTimeMillis() - 60000;
+        assertTrue(schema.setLastModified(modified));
+        assertTrue(new File(dir, "Project/WSDL/B.wsdl").setLastModified(modified));
+
+        Map<String, String> hashes = ExportVerifier.scan(dir, 2, cacheFile);
+        assertEquals(Arrays.asList("Project/WSDL/B.wsdl", "Project/XSD/A.xsd"), Arrays.asList(hashes.keySet().toArray()));
+        assertEquals(ExportManifest.hash("<a/>".getBytes(StandardCharsets.UTF_8)), hashes.get("Project/XSD/A.xsd"));
+        assertTrue(cacheFile.isFile());
+
+        // A file of the same size and modification time is not read again
+        Files.write(schema.toPath(), "<c/>".getBytes(StandardCharsets.UTF_8));
+        assertTrue(schema.setLastModified(modified));
+        assertEquals(hashes, ExportVerifier.scan(dir, 2, cacheFile));
+
+        assertTrue(schema.setLastModified(modified - 10000));
+        assertEquals(ExportManifest.hash("<c/>".getBytes(StandardCharsets.UTF_8)),
+                ExportVerifier.scan(dir, 2, cacheFile).get("Project/XSD/A.xsd"));
+    }
+
+    @Test
+    public void testScanRehashesRacyFiles() throws Exception {
+        File dir = tmp.newFolder("export");
+        File cacheFile = new File(tmp.getRoot(), "scan.cache");
+        File schema = new File(dir, "Project/XSD/A.xsd");
+        FileUtil.writeFile(schema, "<a/>".getBytes(StandardCharsets.UTF_8));
+        long modified = (System.currentTimeMillis() - 60000) / 1000 * 1000;
+        assertTrue(schema.setLastModified(modified));
+        ExportVerifier.scan(dir, 1, cacheFile);
+
+        // A change within the resolution of the modification time, right after the file was hashed
+        Files.write(schema.toPath(), "<c/>".getBytes(StandardCharsets.UTF_8));
+        assertTrue(schema.setLastModified(modified));
+        assertTrue(cacheFile.setLastModified(modified));
+        assertEquals(ExportManifest.hash("<c/>".getBytes(StandardCharsets.UTF_8)),
+                ExportVerifier.scan(dir, 1, cacheFile).get("Project/XSD/A.xsd"));
+    }
+
+    @Test
+    public void testCacheFileIsPrivate() {
+        File cacheFile = ExportVerifier.getCacheFile(tmp.getRoot());
+        assertFalse(cacheFile.toPath().startsWith(new File(System.getProperty("java.io.tmpdir")).toPath()));
+        assertEquals(ExportVerifier.CACHE_DIR, cacheFile.getParentFile().getName());
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 8, 0);
+        byte[] jarBinary = domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true);
+        File exportDir = tmp.newFolder("export");
+        FileUtil.unpackAndProcessJar(jarBinary, exportDir.getPath());
+        try {
+            assertEquals(0, ExportVerifier.verify(jarBinary, exportDir, 2, false).size());
+
+            File changed = new File(exportDir, "Project_0/XSD/XMLSchema_0.xsd");
+            Files.write(changed.toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+            Files.delete(new File(exportDir, "Project_0/WSDL/WSDL_1.wsdl").toPath());
+            FileUtil.writeFile(new File(exportDir, "Project_0/XSD/Extra.xsd"), "<extra/>".getBytes(StandardCharsets.UTF_8));
+
+            List<String> mismatches = ExportVerifier.verify(jarBinary, exportDir, 2, false);
+            assertEquals(Arrays.asList(
+                    "missing:   Project_0/WSDL/WSDL_1.wsdl",
+                    "differing: Project_0/XSD/XMLSchema_0.xsd",
+                    "extra:     Project_0/XSD/Extra.xsd"), mismatches);
+        } finally {
+            Files.deleteIfExists(ExportVerifier.getCacheFile(exportDir).toPath());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package osbProjectExporter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class ExporterDaemonTest {
+
+    private static final String TOKEN = "secret";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testParseQuery() throws Exception {
+        Map<String, String> parameters = ExporterDaemon.parseQuery("project=A%20B&streaming&exportDir=%2Ftmp%2Fx");
+        assertEquals("A B", parameters.get("project"));
+        assertEquals("true", parameters.get("streaming"));
+        assertEquals("/tmp/x", parameters.get("exportDir"));
+    }
+
+    @Test
+    public void testExportOverWarmConnection() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(3, 12, 1), 5)) {
+            try (ExporterDaemon daemon = ExporterDaemon.start(config(server))) {
+                String baseUrl = "http://localhost:" + daemon.getPort();
+                assertEquals(200, request("GET", baseUrl + "/health").code);
+
+                for (String project : new String[]{"Project_0", "Project_2"}) {
+                    File exportDir = new File(tmp.getRoot(), project);
+                    Response response = request("POST", baseUrl + "/export?environment=dev&project=" + project +
+                            "&streaming&exportDir=" + URLEncoder.encode(exportDir.getPath(), "UTF-8"));
+                    assertEquals(response.body, 200, response.code);
+                    assertTrue(response.body.contains("\"status\": \"OK\""));
+                    assertTrue(new File(exportDir, project + "/XSD/XMLSchema_8.xsd").exists());
+                }
+                assertTrue(new File(tmp.getRoot(), "Project_0/Project_1/WSDL/WSDL_5.wsdl").exists());
+
+                // Both exports went over the connection opened at start
+                assertEquals(1, server.getConnectionCount());
+
+                assertEquals(400, request("POST", baseUrl + "/export?environment=test&project=Project_0&exportDir=x").code);
+                assertEquals(400, request("POST", baseUrl + "/export?environment=dev&project=Project_0&exportDir=x&unknown").code);
+            }
+        }
+    }
+
+    @Test
+    public void testRejectedRequests() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(1, 4, 0), 0)) {
+            try (ExporterDaemon daemon = ExporterDaemon.start(config(server))) {
+                String exportUrl = "http://localhost:" + daemon.getPort() + "/export?environment=dev&project=Project_0";
+                assertEquals(401, request("GET", "http://localhost:" + daemon.getPort() + "/health", null).code);
+                assertEquals(401, request("POST", exportUrl + "&exportDir=x", "wrong").code);
+
+                // HttpURLConnection does not send an Origin header, as a browser does
+                try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+                    socket.getOutputStream().write(("POST /export?environment=dev&project=Project_0&exportDir=x HTTP/1.1\r\n" +
+                            "Host: localhost\r\nAuthorization: Bearer " + TOKEN + "\r\nOrigin: http://example.com\r\n" +
+                            "Content-Length: 0\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                    String statusLine = new Scanner(socket.getInputStream(), StandardCharsets.UTF_8.name()).nextLine();
+                    assertTrue(statusLine, statusLine.contains(" 403 "));
+                }
+
+                // The export directory and the files of the options must be in the export root
+                assertEquals(403, request("POST", exportUrl + "&exportDir=../x").code);
+                assertEquals(403, request("POST", exportUrl + "&exportDir=/etc").code);
+                assertEquals(403, request("POST", exportUrl + "&exportDir=x&archive=/tmp/x.zip").code);
+                for (String option : new String[]{"domain", "watch", "resume", "from-jar=x.jar", "all"}) {
+                    Response response = request("POST", exportUrl + "&exportDir=x&" + option);
+                    assertEquals(option, 400, response.code);
+                    assertTrue(response.body, response.body.contains("is not supported by the daemon"));
+                }
+                assertEquals(0, server.getExportCalls());
+
+                Response response = request("POST", exportUrl + "&exportDir=x&archive=x.zip&report=report.json");
+                assertEquals(response.body, 200, response.code);
+                assertTrue(new File(tmp.getRoot(), "x.zip").isFile());
+                // The report has the metrics of this export only
+                String report = new String(Files.readAllBytes(new File(tmp.getRoot(), "report.json").toPath()),
+                        StandardCharsets.UTF_8);
+                assertTrue(report, report.contains("\"files\": 4,"));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTokenRequired() throws Exception {
+        Properties config = new Properties();
+        config.setProperty("export-root", tmp.getRoot().getPath());
+        config.setProperty("environment.dev.url", "t3://localhost:7001");
+        ExporterDaemon.start(config).close();
+    }
+
+    private Properties config(StandInOsbServer server) {
+        Properties config = new Properties();
+        config.setProperty("port", "0");
+        config.setProperty("token", TOKEN);
+        config.setProperty("export-root", tmp.getRoot().getPath());
+        config.setProperty("environment.dev.url", server.getUrl());
+        config.setProperty("environment.dev.userName", "weblogic");
+        config.setProperty("environment.dev.password", "welcome1");
+        return config;
+    }
+
+    private static Response request(String method, String url) throws IOException {
+        return request(method, url, TOKEN);
+    }
+
+    private static Response request(String method, String url, String token) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        Response response = new Response();
+        response.code = connection.getResponseCode();
+        try (InputStream in = response.code < 400 ? connection.getInputStream() : connection.getErrorStream();
+             Scanner scanner = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A")) {
+            response.body = scanner.hasNext() ? scanner.next() : "";
+        }
+        return response;
+    }
+
+    private static class Response {
+
+        private int code;
+        private String body;
+    }
+}
@@ -1,15 +1,32 @@
 package osbProjectExporter;
 
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 
 public class FileUtilTest {
 
+    private static final String EXPORT_FOLDER = "src/test/resources/OSBExport_F000T00_Felles_20241023094828014";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void testGetFileExtension() {
         String path = "src/test/resources/OSBExport_F000T00_Felles_20241023094828014/F000T00_Felles/Business/F000T00_Skriv_tRampe.BusinessService";
@@ -47,4 +64,95 @@ public class FileUtilTest {
         File file = new File("src/test/resources/OSBExport_F000T00_Felles_20241023094828014/F000T00_Felles/Mapping/common.XSLT");
         FileUtil.parseFile(file);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUnpackAndProcessJar() throws IOException {
+        String destDir = tmp.getRoot().getAbsolutePath();
+        FileUtil.unpackAndProcessJar(createJar(EXPORT_FOLDER), destDir);
+
+        assertEquals(6, FileUtil.listFilesRecursively(destDir).size());
+        assertFalse(new File(destDir, "ExportInfo").exists());
+        assertFalse(new File(destDir, "F000T00_Felles/Business/_folderdata.LocationData").exists());
+        assertTrue(new File(destDir, "F000T00_Felles/Business/F000T00_Skriv_tRampe.bix").exists());
+        assertTrue(new File(destDir, "F000T00_Felles/Java/SOA_NG_Utils.jar").exists());
+
+        String xslt = new String(Files.readAllBytes(new File(destDir, "F000T00_Felles/Mapping/common.xsl").toPath()));
+        assertTrue(xslt.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<xsl:stylesheet"));
+    }
+
+
+    @Test
+    public void testProcessFilesInFolderParallel() throws IOException {
+        String destDir = tmp.getRoot().getAbsolutePath();
+        FileUtil.unpackJar(createJar(EXPORT_FOLDER), destDir);
+        FileUtil.processFilesInFolder(destDir, 4);
+
+        assertEquals(6, FileUtil.listFilesRecursively(destDir).size());
+        assertTrue(new File(destDir, "F000T00_Felles/TestServiceAccount.sa").exists());
+        String xslt = new String(Files.readAllBytes(new File(destDir, "F000T00_Felles/Mapping/common.xsl").toPath()));
+        assertTrue(xslt.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n<xsl:stylesheet"));
+    }
+
+
+    @Test
+    public void testWriteFileReplacesLinks() throws IOException {
+        File object = tmp.newFile("object");
+        Files.write(object.toPath(), "stored".getBytes());
+        assertTrue(object.setReadOnly());
+        File file = new File(tmp.getRoot(), "export/Project/A.xsd");
+        assertTrue(file.getParentFile().mkdirs());
+        Files.createLink(file.toPath(), object.toPath());
+
+        FileUtil.writeFile(file, "changed".getBytes());
+        assertEquals("changed", new String(Files.readAllBytes(file.toPath())));
+        assertEquals("stored", new String(Files.readAllBytes(object.toPath())));
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void testWriteFileKeepsDefaultPermissions() throws IOException {
+        File reference = tmp.newFile("reference");
+        Assume.assumeTrue(Files.getFileAttributeView(reference.toPath(), PosixFileAttributeView.class) != null);
+        File file = new File(tmp.getRoot(), "export/Project/A.xsd");
+
+        // As readable as a file written directly, e.g. rw-r--r-- with the umask 022
+        FileUtil.writeFile(file, "a".getBytes());
+        assertEquals(Files.getPosixFilePermissions(reference.toPath()), Files.getPosixFilePermissions(file.toPath()));
+        FileUtil.writeFile(file, "b".getBytes());
+        assertEquals(Files.getPosixFilePermissions(reference.toPath()), Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    @Test
+    public void testUnpackJarFile() throws IOException {
+        File jarFile = FileUtil.writeTempJar(createJar(EXPORT_FOLDER));
+        try {
+            String unpackedDir = tmp.newFolder("unpacked").getAbsolutePath();
+            FileUtil.unpackJar(jarFile, unpackedDir);
+            assertEquals(11, FileUtil.listFilesRecursively(unpackedDir).size());
+
+            String processedDir = tmp.newFolder("processed").getAbsolutePath();
+            FileUtil.unpackAndProcessJar(jarFile, (path, content) -> FileUtil.writeFile(new File(processedDir, path), content));
+            assertEquals(6, FileUtil.listFilesRecursively(processedDir).size());
+            assertTrue(new File(processedDir, "F000T00_Felles/Mapping/MFLToVismaB.mfl").exists());
+        } finally {
+            Files.delete(jarFile.toPath());
+        }
+    }
+
+
+    /**
+     * Pack the given folder into a jar the way the server exports it
+     */
+    static byte[] createJar(String folder) throws IOException {
+        Path root = new File(folder).getAbsoluteFile().toPath();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JarOutputStream jos = new JarOutputStream(bos)) {
+            for (File file : FileUtil.listFilesRecursively(folder)) {
+                jos.putNextEntry(new JarEntry(root.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/')));
+                jos.write(Files.readAllBytes(file.toPath()));
+                jos.closeEntry();
+            }
+        }
+        return bos.toByteArray();
+    }
+}
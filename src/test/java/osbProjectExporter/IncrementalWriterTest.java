@@ -0,0 +1,54 @@
+package osbProjectExporter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class IncrementalWriterTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testIncrementalExport() throws IOException {
+        String exportDir = tmp.getRoot().getAbsolutePath();
+
+        IncrementalWriter writer = new IncrementalWriter(exportDir);
+        writer.accept("Project/XSD/A.xsd", bytes("a"));
+        writer.accept("Project/XSD/B.xsd", bytes("b"));
+        writer.accept("Project/Old/C.xsd", bytes("c"));
+        assertEquals("Incremental export to " + exportDir + ": 3 added, 0 changed, 0 removed, 0 unchanged",
+                writer.finish());
+
+        File unchangedFile = new File(exportDir, "Project/XSD/A.xsd");
+        assertTrue(unchangedFile.setLastModified(1000L));
+
+        writer = new IncrementalWriter(exportDir);
+        writer.accept("Project/XSD/A.xsd", bytes("a"));
+        writer.accept("Project/XSD/B.xsd", bytes("b2"));
+        writer.accept("Project/XSD/D.xsd", bytes("d"));
+        assertEquals("Incremental export to " + exportDir + ": 1 added, 1 changed, 1 removed, 1 unchanged",
+                writer.finish());
+
+        assertEquals(1000L, unchangedFile.lastModified());
+        assertEquals("b2", new String(Files.readAllBytes(new File(exportDir, "Project/XSD/B.xsd").toPath()),
+                StandardCharsets.UTF_8));
+        assertFalse(new File(exportDir, "Project/Old").exists());
+        assertEquals(ExportManifest.hash(bytes("d")),
+                ExportManifest.load(new File(exportDir)).getHash("Project/XSD/D.xsd"));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,84 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.contrib.java.lang.system.SystemOutRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class OfflineExporterTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Rule
+    public final SystemOutRule systemOut = new SystemOutRule().enableLog();
+
+    @Test
+    public void testExportDirectoryOfJars() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(2, 8, 0);
+        File jarDir = tmp.newFolder("jars");
+        for (Ref project : domain.getProjects()) {
+            Files.write(new File(jarDir, project.getProjectName() + ".jar").toPath(),
+                    domain.exportJar(domain.getRefs(project), true));
+        }
+        Files.write(new File(jarDir, "notes.txt").toPath(), new byte[0]);
+
+        File exportDir = new File(tmp.getRoot(), "export");
+        Map<String, String> args = new HashMap<>();
+        args.put("exportDir", exportDir.getPath());
+        args.put("streaming", "true");
+        assertTrue(OfflineExporter.export(OfflineExporter.listJars(jarDir), args));
+        assertTrue(new File(exportDir, "Project_0/Project_0/XSD/XMLSchema_0.xsd").isFile());
+        assertTrue(new File(exportDir, "Project_1/Project_1/WSDL/WSDL_1.wsdl").isFile());
+        assertFalse(new File(exportDir, "notes").exists());
+    }
+
+    @Test
+    public void testSummaryOfFailedJar() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 8, 0);
+        File jarDir = tmp.newFolder("jars");
+        Files.write(new File(jarDir, "good.jar").toPath(),
+                domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true));
+        Files.write(new File(jarDir, "bad.jar").toPath(), "not a jar".getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> args = new HashMap<>();
+        args.put("exportDir", new File(tmp.getRoot(), "export").getPath());
+        assertFalse(OfflineExporter.export(OfflineExporter.listJars(jarDir), args));
+        String log = systemOut.getLog();
+        assertTrue(log, log.contains("\n   bad.jar: FAILED. "));
+        assertFalse(log, log.contains("OK (FAILED"));
+        assertTrue(log, log.matches("(?s).*\n   good\\.jar: OK \\(\\d+ ms\\)\n.*"));
+        assertTrue(log, log.contains("Processed 1 of 2 jars"));
+    }
+
+    @Test
+    public void testWithoutWebLogicClasses() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 8, 0);
+        File jar = new File(tmp.getRoot(), "sbconfig.jar");
+        Files.write(jar.toPath(), domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true));
+        File exportDir = new File(tmp.getRoot(), "export");
+
+        // Only the classes of the exporter, without the WebLogic and OSB libraries
+        URL classes = OfflineExporter.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes}, ClassLoader.getSystemClassLoader().getParent())) {
+            Class<?> exporter = loader.loadClass(OfflineExporter.class.getName());
+            Method run = exporter.getDeclaredMethod("run", String[].class);
+            run.setAccessible(true);
+            assertEquals(true, run.invoke(null, (Object) new String[]{"--from-jar=" + jar, exportDir.getPath()}));
+        }
+        assertTrue(new File(exportDir, "Project_0/XSD/XMLSchema_0.xsd").isFile());
+    }
+}
@@ -3,10 +3,17 @@ package osbProjectExporter;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.contrib.java.lang.system.ExpectedSystemExit;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static osbProjectExporter.OsbProjectExporter.exportProjectJarFromServer;
 
 
@@ -15,6 +22,9 @@ public class OsbProjectExporterTest {
     @Rule
     public final ExpectedSystemExit exit = ExpectedSystemExit.none();
 
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
     @Test
     public void testParseArgsOK() {
         String[] args = new String[]{"localhost:7001",
@@ -30,6 +40,65 @@ public class OsbProjectExporterTest {
         assertEquals("C:\\Users", parsedArgs.get("path"));
     }
 
+    @Test
+    public void testParseArgsOptions() {
+        String[] args = new String[]{"t3://localhost:7001",
+                "weblogic",
+                "password",
+                "project",
+                "--streaming",
+                "--parallel=4"};
+        Map<String, String> parsedArgs = OsbProjectExporter.parseArgs(args);
+        assertEquals("project", parsedArgs.get("projectName"));
+        assertEquals("true", parsedArgs.get("streaming"));
+        assertEquals("4", parsedArgs.get("parallel"));
+    }
+
+    @Test
+    public void testParseArgsProjectList() {
+        String[] args = new String[]{"t3://localhost:7001",
+                "weblogic",
+                "password",
+                "Project_1, Project_2,,Project_1",
+                "--concurrency=2"};
+        Map<String, String> parsedArgs = OsbProjectExporter.parseArgs(args);
+        assertEquals("Project_1,Project_2", parsedArgs.get("projects"));
+        assertEquals("2", parsedArgs.get("concurrency"));
+    }
+
+    @Test
+    public void testParseArgsDomain() {
+        String[] args = new String[]{"t3://localhost:7001",
+                "weblogic",
+                "password",
+                "/tmp/export",
+                "--domain",
+                "--connections=8"};
+        Map<String, String> parsedArgs = OsbProjectExporter.parseArgs(args);
+        assertEquals("/tmp/export", parsedArgs.get("exportDir"));
+        assertEquals("8", parsedArgs.get("connections"));
+        assertFalse(parsedArgs.containsKey("projectName"));
+    }
+
+    @Test
+    public void testParseProjectNamesFromFile() throws IOException {
+        File file = tmp.newFile("projects.txt");
+        Files.write(file.toPath(), Arrays.asList("# Nightly export", "Project_1", "", "  Project_2  "));
+        List<String> projects = OsbProjectExporter.parseProjectNames("@" + file.getPath());
+        assertEquals(Arrays.asList("Project_1", "Project_2"), projects);
+    }
+
+    @Test
+    public void testParseArgsUnknownOption() {
+        exit.expectSystemExitWithStatus(1);
+        String[] args = new String[]{"t3://localhost:7001",
+                "weblogic",
+                "password",
+                "project",
+                "--unknown"};
+        OsbProjectExporter.parseArgs(args);
+    }
+
     @Test
     public void testParseArgsWrongNumberOfParameters() {
         exit.expectSystemExitWithStatus(1);
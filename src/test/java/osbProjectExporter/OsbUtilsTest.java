@@ -0,0 +1,128 @@
+package osbProjectExporter;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class OsbUtilsTest {
+
+    private static final int PROJECTS = 6;
+    private static final int RESOURCES_PER_PROJECT = 40;
+
+    private static StandInOsbServer server;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        // Project_0 -> Project_1 -> Project_2, Project_3 -> Project_4 -> Project_5
+        server = StandInOsbServer.start(SyntheticDomain.generate(PROJECTS, RESOURCES_PER_PROJECT, 2), 5);
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testGetJarBinary() throws Exception {
+        Map<String, String> args = args("Project_1", tmp.getRoot().getAbsolutePath());
+        byte[] jarBinary = OsbUtils.getJarBinary(args);
+
+        File exportDir = tmp.newFolder("export");
+        FileUtil.unpackJar(jarBinary, exportDir.getAbsolutePath());
+        assertFalse(new File(exportDir, "Project_0").exists());
+        assertEquals(RESOURCES_PER_PROJECT, FileUtil.listFilesRecursively(exportDir + "/Project_1").stream()
+                .filter(file -> !file.getName().endsWith(".LocationData")).count());
+        // Schema k of Project_2 is a dependency of schema k of Project_1
+        assertTrue(new File(exportDir, "Project_2/XSD/XMLSchema_0.XMLSchema").exists());
+    }
+
+    @Test
+    public void testGetJarBinaryFiltered() throws Exception {
+        Map<String, String> args = args("Project_4", tmp.getRoot().getAbsolutePath());
+        args.put("include-types", "WSDL");
+        args.put("exclude-paths", "**/WSDL_1");
+        File exportDir = tmp.newFolder("filtered");
+        FileUtil.unpackJar(OsbUtils.getJarBinary(args), exportDir.getAbsolutePath());
+        List<File> files = FileUtil.listFilesRecursively(exportDir.getAbsolutePath());
+        files.removeIf(file -> file.getName().endsWith(".LocationData") || file.getName().equals("ExportInfo"));
+        assertEquals(RESOURCES_PER_PROJECT / 4 - 1, files.size());
+        assertFalse(new File(exportDir, "Project_5").exists());
+
+        // WSDL k imports schema k - 1 and depends on WSDL k of Project_5, which imports its schema k - 1
+        args.put("closure", "true");
+        exportDir = tmp.newFolder("closure");
+        FileUtil.unpackJar(OsbUtils.getJarBinary(args), exportDir.getAbsolutePath());
+        assertTrue(new File(exportDir, "Project_4/XSD/XMLSchema_4.XMLSchema").exists());
+        assertTrue(new File(exportDir, "Project_5/XSD/XMLSchema_4.XMLSchema").exists());
+        assertFalse(new File(exportDir, "Project_4/XSD/XMLSchema_0.XMLSchema").exists());
+        assertFalse(new File(exportDir, "Project_4/Business").exists());
+    }
+
+    @Test
+    public void testExportProjectJarFromServer() throws Exception {
+        File exportDir = new File(tmp.getRoot(), "Project_3");
+        File reportFile = new File(tmp.getRoot(), "report.json");
+        Map<String, String> args = args("Project_3", exportDir.getAbsolutePath());
+        args.put("report", reportFile.getAbsolutePath());
+        args.put("index", "true");
+        OsbProjectExporter.exportProjectJarFromServer(args);
+
+        assertTrue(new File(exportDir, "Project_3/XSD/XMLSchema_4.xsd").exists());
+        assertTrue(new File(exportDir, "Project_5/Pipeline/Pipeline_3.pipeline").exists());
+        assertFalse(new File(exportDir, "ExportInfo").exists());
+        assertEquals(Collections.singletonList("Project_3/Pipeline/Pipeline_3.pipeline"),
+                DependencyIndex.load(exportDir).getDependents("Project_3/Business/BusinessService_2.bix", false));
+
+        String report = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+        for (String phase : Arrays.asList("connect", "getResourceRefs", "export", "unpack", "parse", "move")) {
+            assertTrue(phase, report.contains("{\"name\": \"" + phase + "\", \"count\": 1,"));
+        }
+        assertTrue(report.contains("\"files\": " + 3 * RESOURCES_PER_PROJECT + ","));
+        assertTrue(report.contains("{\"extension\": \"pipeline\", \"files\": " + 3 * RESOURCES_PER_PROJECT / 4 + ","));
+    }
+
+    @Test
+    public void testExportProjectsFromServer() {
+        List<String> projects = Arrays.asList("Project_0", "Project_2", "Project_3", "Project_5");
+        Map<String, String> args = args(String.join(",", projects), tmp.getRoot().getAbsolutePath());
+        args.put("concurrency", "4");
+        int exportCalls = server.getExportCalls();
+
+        assertTrue(OsbProjectExporter.exportProjectsFromServer(args, projects));
+        assertEquals(exportCalls + projects.size(), server.getExportCalls());
+        for (String project : projects) {
+            assertTrue(new File(tmp.getRoot(), project + "/" + project + "/WSDL/WSDL_1.wsdl").exists());
+        }
+        assertTrue(new File(tmp.getRoot(), "Project_0/Project_2/XSD/XMLSchema_0.xsd").exists());
+    }
+
+    private static Map<String, String> args(String projectName, String exportDir) {
+        Map<String, String> args = new HashMap<>();
+        args.put("url", server.getUrl());
+        args.put("userName", "weblogic");
+        args.put("password", "welcome1");
+        args.put("projectName", projectName);
+        args.put("exportDir", exportDir);
+        return args;
+    }
+}
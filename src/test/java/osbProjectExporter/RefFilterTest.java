@@ -0,0 +1,38 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class RefFilterTest {
+
+    @Test
+    public void testGlob() {
+        assertTrue(RefFilter.glob("Project/Contracts/**").matcher("Project/Contracts/V1/Order").matches());
+        assertTrue(RefFilter.glob("**/XSD/*").matcher("Project/XSD/Order").matches());
+        assertTrue(RefFilter.glob("**/Order?").matcher("Order1").matches());
+        assertFalse(RefFilter.glob("*/XSD/*").matcher("Project/Sub/XSD/Order").matches());
+        assertFalse(RefFilter.glob("Project/Contracts/*").matcher("Project/Contracts.V1/Order").matches());
+    }
+
+    @Test
+    public void testMatches() {
+        Map<String, String> args = new HashMap<>();
+        assertTrue(RefFilter.fromArgs(args).includeDependencies());
+
+        args.put("include-types", "XMLSchema, WSDL");
+        args.put("exclude-paths", "*/Legacy/**");
+        RefFilter filter = RefFilter.fromArgs(args);
+        assertFalse(filter.includeDependencies());
+        assertTrue(filter.matches(new Ref("XMLSchema", new String[]{"Project", "XSD", "Order"})));
+        assertFalse(filter.matches(new Ref("Pipeline", new String[]{"Project", "Pipeline", "Order"})));
+        assertFalse(filter.matches(new Ref("WSDL", new String[]{"Project", "Legacy", "WSDL", "Order"})));
+        assertFalse(filter.matches(Ref.makeFolderRef(Ref.makeProjectRef("Project"), "XSD")));
+    }
+}
@@ -0,0 +1,199 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import static org.junit.Assert.*;
+
+
+public class ResourcePackerTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 16, 0);
+        File exportDir = export(domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true), "export", false);
+        File jar = new File(tmp.getRoot(), "packed.jar");
+        assertEquals(16, new ResourcePacker(exportDir, 4, false).pack(jar));
+
+        try (JarFile jarFile = new JarFile(jar)) {
+            String schema = read(jarFile, "Project_0/XSD/XMLSchema_0.XMLSchema");
+            assertTrue(schema, schema.contains("<con:schemaEntry xmlns:con=\"http://www.bea.com/wli/sb/resources/config\">"));
+            assertTrue(schema, schema.contains("<con:targetNamespace>http://example.com/Project_0/XSD/XMLSchema_0</con:targetNamespace>"));
+            assertNotNull(jarFile.getEntry("Project_0/XSD/_folderdata.LocationData"));
+            String exportInfo = read(jarFile, "ExportInfo");
+            assertTrue(exportInfo, exportInfo.contains("instanceId=\"Project_0/Pipeline/Pipeline_3\" typeId=\"Pipeline\""));
+            assertTrue(exportInfo, exportInfo.contains("value=\"Project_0/WSDL/WSDL_1.WSDL\""));
+        }
+
+        // The packed jar is exported to the same files
+        File reexportDir = export(Files.readAllBytes(jar.toPath()), "reexport", false);
+        List<String> files = relativePaths(exportDir);
+        assertEquals(16, files.size());
+        assertEquals(files, relativePaths(reexportDir));
+        for (String file : files) {
+            assertArrayEquals(file, Files.readAllBytes(new File(exportDir, file).toPath()),
+                    Files.readAllBytes(new File(reexportDir, file).toPath()));
+        }
+    }
+
+    @Test
+    public void testDependencies() throws Exception {
+        File exportDir = tmp.newFolder("export");
+        write(exportDir, "Project/XSD/Common.xsd", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:common\"/>");
+        write(exportDir, "Project/XSD/Order.xsd", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:order\">\n" +
+                "  <xsd:import namespace=\"urn:common\" schemaLocation=\"Common.xsd\"/>\n" +
+                "  <xsd:import namespace=\"urn:external\" schemaLocation=\"http://example.com/external.xsd\"/>\n" +
+                "</xsd:schema>");
+        write(exportDir, "Project/WSDL/OrderService.wsdl", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<wsdl:definitions xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\" targetNamespace=\"urn:service\">\n" +
+                "  <wsdl:types><xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\">\n" +
+                "    <xsd:import namespace=\"urn:order\" schemaLocation=\"../XSD/Order.xsd\"/>\n" +
+                "  </xsd:schema></wsdl:types>\n" +
+                "</wsdl:definitions>");
+        write(exportDir, "Project/XQuery/ToOrder.xqy", "xquery version \"1.0\";\n" +
+                "import schema namespace ord = \"urn:order\" at \"../XSD/Order.xsd\";\n<a/>");
+        File jar = new File(tmp.getRoot(), "packed.jar");
+        ResourcePacker packer = new ResourcePacker(exportDir, 2, false);
+        assertEquals(4, packer.pack(jar));
+        assertEquals(Collections.singleton("Project/XQuery/ToOrder.xqy"), packer.getUnresolved());
+
+        try (JarFile jarFile = new JarFile(jar)) {
+            assertTrue(read(jarFile, "Project/XSD/Order.XMLSchema").contains("</con:schema>\n" +
+                    "    <con:dependencies>\n" +
+                    "        <con:import namespace=\"urn:common\" schemaLocation=\"Common.xsd\" ref=\"Project/XSD/Common\"/>\n" +
+                    "    </con:dependencies>\n" +
+                    "    <con:targetNamespace>urn:order</con:targetNamespace>\n"));
+            assertFalse(read(jarFile, "Project/XSD/Common.XMLSchema").contains("<con:dependencies>"));
+            assertTrue(read(jarFile, "Project/WSDL/OrderService.WSDL").contains("<con:schemaRef isInline=\"false\" " +
+                    "namespace=\"urn:order\" schemaLocation=\"../XSD/Order.xsd\" ref=\"Project/XSD/Order\"/>"));
+        }
+
+        // The packed jar is exported to the same files
+        File reexportDir = export(Files.readAllBytes(jar.toPath()), "reexport", false);
+        for (String file : relativePaths(exportDir)) {
+            assertArrayEquals(file, Files.readAllBytes(new File(exportDir, file).toPath()),
+                    Files.readAllBytes(new File(reexportDir, file).toPath()));
+        }
+        assertEquals(relativePaths(exportDir), relativePaths(reexportDir));
+    }
+
+    @Test
+    public void testWrap() throws Exception {
+        ResourcePacker packer = new ResourcePacker(tmp.getRoot(), 1, false);
+        assertEquals("Project/XQuery/Lib.Xquery", packer.getEntryName("Project/XQuery/Lib.xqy"));
+        assertEquals("Project/Alerts/Alert.AlertDestination", packer.getEntryName("Project/Alerts/Alert.AlertDestination"));
+
+        String xquery = "xquery version \"1.0\";\n(: The end of a CDATA is ]]> :)\n<a>{ 1 }</a>";
+        assertEquals(xquery, unwrap(packer.wrap("Project/XQuery/Lib.xqy", bytes(xquery))));
+        String javaScript = "var a = 1 < 2 && \"b\"; // æøå";
+        assertEquals(javaScript, unwrap(packer.wrap("Project/JS/Script.js", bytes(javaScript))));
+
+        // An entry and a business service are packed as they are
+        String entry = "<con:xqueryEntry xmlns:con=\"http://www.bea.com/wli/sb/resources/config\">" +
+                "<con:xquery><![CDATA[1]]></con:xquery></con:xqueryEntry>";
+        assertEquals(entry, new String(packer.wrap("Project/XQuery/Entry.xqy", bytes(entry)), StandardCharsets.UTF_8));
+        String service = "<con:businessServiceEntry xmlns:con=\"http://xmlns.oracle.com/servicebus/business/config\"/>";
+        assertEquals(service, new String(packer.wrap("Project/Business/Service.bix", bytes(service)), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPackChangedResources() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 8, 0);
+        File exportDir = export(domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true), "export", true);
+        assertTrue(new File(exportDir, ExportManifest.FILE_NAME).isFile());
+        File jar = new File(tmp.getRoot(), "packed.jar");
+
+        ResourcePacker packer = new ResourcePacker(exportDir, 2, false);
+        assertEquals(0, packer.pack(jar));
+        assertEquals(8, packer.getUnchangedCount());
+        assertFalse(jar.exists());
+
+        File schema = new File(exportDir, "Project_0/XSD/XMLSchema_4.xsd");
+        String changed = new String(Files.readAllBytes(schema.toPath()), StandardCharsets.UTF_8)
+                .replace("</xsd:schema>", "  <xsd:element name=\"Added\" type=\"xsd:string\"/>\n</xsd:schema>");
+        Files.write(schema.toPath(), bytes(changed));
+        assertEquals(1, new ResourcePacker(exportDir, 2, false).pack(jar));
+        try (JarFile jarFile = new JarFile(jar)) {
+            Set<String> entries = new TreeSet<>();
+            for (ZipEntry entry : Collections.list(jarFile.entries())) {
+                entries.add(entry.getName());
+            }
+            assertEquals(new TreeSet<>(Arrays.asList("ExportInfo", "Project_0/XSD/XMLSchema_4.XMLSchema",
+                    "Project_0/XSD/_folderdata.LocationData")), entries);
+            assertTrue(read(jarFile, "Project_0/XSD/XMLSchema_4.XMLSchema").contains("name=\"Added\""));
+        }
+
+        assertEquals(8, new ResourcePacker(exportDir, 2, true).pack(jar));
+    }
+
+    private File export(byte[] jarBinary, String folder, boolean incremental) throws Exception {
+        File exportDir = new File(tmp.getRoot(), folder);
+        Map<String, String> args = new HashMap<>();
+        args.put("exportDir", exportDir.getPath());
+        args.put("parallel", "2");
+        if (incremental) {
+            args.put("incremental", "true");
+        }
+        OsbProjectExporter.processJar(jarBinary, null, args);
+        return exportDir;
+    }
+
+    private static List<String> relativePaths(File exportDir) {
+        List<String> paths = new ArrayList<>();
+        for (File file : FileUtil.listFilesRecursively(exportDir.getPath())) {
+            if (file.isFile() && !file.getName().startsWith(".")) {
+                paths.add(exportDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+            }
+        }
+        Collections.sort(paths);
+        return paths;
+    }
+
+    private static String unwrap(byte[] entry) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertTrue(EmbeddedContentExtractor.extract(new ByteArrayInputStream(entry), () -> Channels.newChannel(bos)));
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String read(JarFile jarFile, String name) throws Exception {
+        ZipEntry entry = jarFile.getEntry(name);
+        assertNotNull(name, entry);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        try (InputStream in = jarFile.getInputStream(entry)) {
+            while ((n = in.read(buffer)) != -1) {
+                bos.write(buffer, 0, n);
+            }
+        }
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void write(File exportDir, String path, String content) throws Exception {
+        File file = new File(exportDir, path);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        Files.write(file.toPath(), bytes(content));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
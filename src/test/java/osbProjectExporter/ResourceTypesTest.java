@@ -0,0 +1,78 @@
+package osbProjectExporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class ResourceTypesTest {
+
+    private static final ResourceTransformer UPPER_CASE = (in, opener) -> {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            bos.write(Character.toUpperCase((char) b));
+        }
+        try (OutputStream out = Channels.newOutputStream(opener.open())) {
+            bos.writeTo(out);
+        }
+        return true;
+    };
+
+    @Test
+    public void testBuiltInTypes() {
+        assertEquals("xsd", ResourceTypes.get("A.XMLSchema", "XMLSchema").getExtension());
+        assertEquals("xsd", FileUtil.validExtensions.get("XMLSchema"));
+        assertTrue(ResourceTypes.get("ExportInfo", "").isDropped());
+        assertTrue(ResourceTypes.get("_folderdata.LocationData", "LocationData").isDropped());
+        assertEquals("Project/Folder.1/A.xqy", ResourceTypes.get("A.Xquery", "Xquery").rename("Project/Folder.1/A.Xquery"));
+    }
+
+    @Test
+    public void testChain() throws IOException {
+        ResourceType type = ResourceType.of("Chained", "txt", ResourceTransformer.CDATA_UNWRAP,
+                ResourceTransformer.PASS_THROUGH, UPPER_CASE);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertTrue(type.transform(bytes("<a><b><![CDATA[text]]></b></a>"), () -> Channels.newChannel(bos)));
+        assertEquals("TEXT", new String(bos.toByteArray(), StandardCharsets.UTF_8));
+
+        assertFalse(ResourceType.of("Passed", null, ResourceTransformer.CDATA_UNWRAP)
+                .transform(bytes("<a><b>text</b></a>"), () -> Channels.newChannel(bos)));
+    }
+
+    @Test
+    public void testCustomType() throws IOException {
+        ResourceTypes.register(ResourceType.of("InHouse", "ih", UPPER_CASE));
+        ResourceTypes.register(ResourceType.drop("Obsolete"));
+
+        ByteArrayOutputStream jar = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(jar)) {
+            out.putNextEntry(new JarEntry("Project/A.InHouse"));
+            out.write(bytes("custom"));
+            out.putNextEntry(new JarEntry("Project/B.Obsolete"));
+            out.write(bytes("obsolete"));
+        }
+
+        Map<String, String> resources = new HashMap<>();
+        FileUtil.unpackAndProcessJar(jar.toByteArray(),
+                (path, content) -> resources.put(path, new String(content, StandardCharsets.UTF_8)));
+        assertEquals(1, resources.size());
+        assertEquals("CUSTOM", resources.get("Project/A.ih"));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
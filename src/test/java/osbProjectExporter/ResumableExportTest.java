@@ -0,0 +1,92 @@
+package osbProjectExporter;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+
+public class ResumableExportTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testRetryFailedBatch() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(3, 20, 1), 0)) {
+            server.failExports(1, 2);
+            Map<String, String> args = args(server);
+
+            assertTrue(new ResumableExport(args, 1).run());
+            // 4 batches of Project_0 and its dependencies in Project_1, the second one retried twice
+            assertEquals(6, server.getExportCalls());
+            assertTrue(new File(tmp.getRoot(), "Project_0/XSD/XMLSchema_0.xsd").isFile());
+            assertTrue(new File(tmp.getRoot(), "Project_1/Pipeline/Pipeline_19.pipeline").isFile());
+            assertFalse(new File(tmp.getRoot(), "Project_2").exists());
+            assertFalse(new File(tmp.getRoot(), ResumableExport.DIR_NAME).exists());
+        }
+    }
+
+    @Test
+    public void testResume() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(3, 20, 1), 0)) {
+            server.failExports(2, ResumableExport.MAX_ATTEMPTS);
+            Map<String, String> args = args(server);
+            File workDir = new File(tmp.getRoot(), ResumableExport.DIR_NAME);
+
+            assertFalse(new ResumableExport(args, 1).run());
+            List<String> checkpoint = Files.readAllLines(new File(workDir, ResumableExport.CHECKPOINT_FILE).toPath(),
+                    StandardCharsets.UTF_8);
+            assertTrue(checkpoint.contains("processed 1"));
+            assertFalse(checkpoint.contains("fetched 2"));
+            // Nothing is written to the export directory before all the batches are done
+            String[] files = tmp.getRoot().list();
+            assertArrayEquals(new String[]{ResumableExport.DIR_NAME}, files);
+
+            assertTrue(new ResumableExport(args, 1).run());
+            // Only the 2 remaining batches are exported again
+            assertEquals(2 + ResumableExport.MAX_ATTEMPTS + 2, server.getExportCalls());
+            assertTrue(new File(tmp.getRoot(), "Project_0/XSD/XMLSchema_0.xsd").isFile());
+            assertTrue(new File(tmp.getRoot(), "Project_1/Pipeline/Pipeline_19.pipeline").isFile());
+            assertFalse(workDir.exists());
+        }
+    }
+
+    @Test
+    public void testPlanOfOtherArgumentsDiscarded() throws Exception {
+        try (StandInOsbServer server = StandInOsbServer.start(SyntheticDomain.generate(3, 20, 1), 0)) {
+            server.failExports(2, ResumableExport.MAX_ATTEMPTS);
+            Map<String, String> args = args(server);
+            assertFalse(new ResumableExport(args, 1).run());
+            List<String> plan = Files.readAllLines(new File(tmp.getRoot(),
+                    ResumableExport.DIR_NAME + "/" + ResumableExport.PLAN_FILE).toPath(), StandardCharsets.UTF_8);
+            assertTrue(plan.contains("#\tshard-size\t10"));
+
+            // The 40 resources are exported again in 1 batch instead of resuming the 2 remaining batches of 10
+            args.put("shard-size", "40");
+            assertTrue(new ResumableExport(args, 1).run());
+            assertEquals(2 + ResumableExport.MAX_ATTEMPTS + 1, server.getExportCalls());
+            assertTrue(new File(tmp.getRoot(), "Project_1/Pipeline/Pipeline_19.pipeline").isFile());
+        }
+    }
+
+    private Map<String, String> args(StandInOsbServer server) {
+        Map<String, String> args = new HashMap<>();
+        args.put("url", server.getUrl());
+        args.put("userName", "weblogic");
+        args.put("password", "welcome1");
+        args.put("projectName", "Project_0");
+        args.put("projects", "Project_0");
+        args.put("exportDir", tmp.getRoot().getAbsolutePath());
+        args.put("shard-size", "10");
+        return args;
+    }
+}
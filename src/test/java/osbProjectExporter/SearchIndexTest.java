@@ -0,0 +1,135 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+
+public class SearchIndexTest {
+
+    private static final String BUSINESS_SERVICE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<con:businessServiceEntry xmlns:con=\"http://www.bea.com/wli/sb/services\"" +
+            " xmlns:tran=\"http://www.bea.com/wli/sb/transports\" xmlns:env=\"http://www.bea.com/wli/config/env\">\n" +
+            "  <con:coreEntry><con:binding type=\"SOAP\"><con:wsdl ref=\"Orders/WSDL/OrderService\"/></con:binding></con:coreEntry>\n" +
+            "  <con:endpointConfig>\n" +
+            "    <tran:provider-id>http</tran:provider-id>\n" +
+            "    <tran:URI><env:value>http://orders-1:8011/orders/v1</env:value></tran:URI>\n" +
+            "    <tran:URI><env:value>http://orders-2:8011/orders/v1</env:value></tran:URI>\n" +
+            "  </con:endpointConfig>\n" +
+            "</con:businessServiceEntry>";
+
+    private static final String PIPELINE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+            "<con:pipelineEntry xmlns:con=\"http://www.bea.com/wli/sb/pipeline/config\">\n" +
+            "  <con:router><con:xqueryTransform><con:resource ref=\"Orders/XQuery/ToCanonical\"/></con:xqueryTransform>\n" +
+            "  <con:route><con:service ref=\"Orders/Business/OrderService\"/></con:route></con:router>\n" +
+            "</con:pipelineEntry>";
+
+    private static final String XQUERY = "xquery version \"1.0\" encoding \"utf-8\";\n" +
+            "declare namespace ns1 = \"http://example.com/canonical/order\";\n" +
+            "import module namespace lib = \"urn:lib\" at \"Lib.xqy\";\n" +
+            "declare function local:toCanonical($order as element()) as element(ns1:Order) { $order };";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testExtractTerms() {
+        Set<String> terms = SearchIndex.extractTerms("Orders/Business/OrderService.bix", bytes(BUSINESS_SERVICE));
+        assertTrue(terms.containsAll(Arrays.asList("ext:bix", "uri:http://orders-1:8011/orders/v1",
+                "uri:http://orders-2:8011/orders/v1", "ref:Orders/WSDL/OrderService", "ns:http://www.bea.com/wli/sb/services",
+                "soap", "orders", "endpointconfig")));
+        assertFalse(terms.contains("uri:http"));
+
+        terms = SearchIndex.extractTerms("Orders/XQuery/ToCanonical.xqy", bytes(XQUERY));
+        assertTrue(terms.containsAll(Arrays.asList("ext:xqy", "ns:http://example.com/canonical/order", "ns:urn:lib",
+                "ref:Orders/XQuery/Lib", "tocanonical")));
+    }
+
+    @Test
+    public void testSearch() throws Exception {
+        SearchIndex.Builder builder = new SearchIndex.Builder();
+        builder.add("Orders/Business/OrderService.bix", bytes(BUSINESS_SERVICE));
+        builder.add("Orders/Pipeline/OrderPipeline.pipeline", bytes(PIPELINE));
+        builder.add("Orders/XQuery/ToCanonical.xqy", bytes(XQUERY));
+        builder.build().save(tmp.getRoot());
+        SearchIndex index = SearchIndex.open(tmp.getRoot());
+
+        assertEquals(3, index.size());
+        assertEquals(Collections.singletonList("Orders/Business/OrderService.bix"),
+                index.search("uri:http://orders-2:8011/*"));
+        assertEquals(Collections.singletonList("Orders/Pipeline/OrderPipeline.pipeline"),
+                index.search("ref:Orders/XQuery/ToCanonical.xqy ext:pipeline"));
+        assertEquals(Collections.singletonList("Orders/XQuery/ToCanonical.xqy"),
+                index.search("ns:http://example.com/canonical/order"));
+        assertEquals(Arrays.asList("Orders/Business/OrderService.bix", "Orders/Pipeline/OrderPipeline.pipeline",
+                "Orders/XQuery/ToCanonical.xqy"), index.search("ref:Orders/*"));
+        assertEquals(Arrays.asList("Orders/Pipeline/OrderPipeline.pipeline", "Orders/XQuery/ToCanonical.xqy"),
+                index.search("ToCanon*"));
+        assertEquals(Collections.singletonList("Orders/Business/OrderService.bix"), index.search("Provider-ID"));
+        assertEquals(Collections.emptyList(), index.search("ext:bix ext:xqy"));
+        assertEquals(Collections.emptyList(), index.search("unknown"));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        SearchIndex.Builder builder = SearchIndex.Builder.update(tmp.getRoot());
+        builder.add("Orders/Business/OrderService.bix", bytes(BUSINESS_SERVICE));
+        builder.add("Orders/Pipeline/OrderPipeline.pipeline", bytes(PIPELINE));
+        builder.add("Orders/XQuery/ToCanonical.xqy", bytes(XQUERY));
+        builder.build().save(tmp.getRoot());
+
+        // The business service is moved to another host and the XQuery is removed
+        builder = SearchIndex.Builder.update(tmp.getRoot());
+        builder.add("Orders/Business/OrderService.bix", bytes(BUSINESS_SERVICE.replace("orders-2", "orders-3")));
+        builder.add("Orders/Pipeline/OrderPipeline.pipeline", bytes(PIPELINE));
+        builder.build().save(tmp.getRoot());
+        assertEquals(1, builder.getUnchangedCount());
+
+        SearchIndex index = SearchIndex.open(tmp.getRoot());
+        assertEquals(2, index.size());
+        assertEquals(Collections.emptyList(), index.search("uri:http://orders-2:8011/orders/v1"));
+        assertEquals(Collections.singletonList("Orders/Business/OrderService.bix"),
+                index.search("uri:http://orders-3:8011/orders/v1"));
+        assertEquals(Collections.singletonList("Orders/Pipeline/OrderPipeline.pipeline"),
+                index.search("ref:Orders/XQuery/ToCanonical"));
+        assertEquals(Collections.emptyList(), index.search("ext:xqy"));
+    }
+
+    @Test
+    public void testIndexExport() throws Exception {
+        SyntheticDomain domain = SyntheticDomain.generate(1, 8, 0);
+        File jar = tmp.newFile("sbconfig.jar");
+        Files.write(jar.toPath(), domain.exportJar(domain.getRefs(Ref.makeProjectRef("Project_0")), true));
+        Map<String, String> args = new HashMap<>();
+        args.put("exportDir", new File(tmp.getRoot(), "export").getPath());
+        args.put("search-index", "true");
+        args.put("parallel", "2");
+        OsbProjectExporter.processJar(null, jar, args);
+
+        SearchIndex index = SearchIndex.open(new File(tmp.getRoot(), "export"));
+        assertEquals(8, index.size());
+        assertEquals(Arrays.asList("Project_0/Pipeline/Pipeline_3.pipeline", "Project_0/Pipeline/Pipeline_7.pipeline"),
+                index.search("ext:pipeline"));
+        assertEquals(Collections.singletonList("Project_0/Pipeline/Pipeline_3.pipeline"),
+                index.search("ref:Project_0/Business/BusinessService_2.bix"));
+        // The schema declares the namespace and the WSDL imports it
+        assertEquals(Arrays.asList("Project_0/WSDL/WSDL_5.wsdl", "Project_0/XSD/XMLSchema_4.xsd"),
+                index.search("ns:http://example.com/Project_0/XSD/XMLSchema_4"));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,98 @@
+package osbProjectExporter;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class SnapshotStoreTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testSnapshots() throws IOException {
+        SnapshotStore store = new SnapshotStore(tmp.newFolder("store").getAbsolutePath());
+        File exportDir = new File(tmp.getRoot(), "export");
+
+        SnapshotStore.Writer writer = store.newWriter("Project", exportDir.getAbsolutePath(), false);
+        writer.accept("Project/XSD/A.xsd", bytes("a"));
+        writer.accept("Project/XSD/B.xsd", bytes("b"));
+        writer.accept("Project/Old/C.xsd", bytes("a"));
+        assertTrue(writer.finish().contains(": 3 resources, 2 new objects (2 bytes), 1 already stored, 3 files"));
+
+        writer = store.newWriter("Project", exportDir.getAbsolutePath(), false);
+        writer.accept("Project/XSD/A.xsd", bytes("a"));
+        writer.accept("Project/XSD/B.xsd", bytes("b2"));
+        assertTrue(writer.finish().contains(": 2 resources, 1 new objects (2 bytes), 1 already stored, 1 files"));
+
+        File b = new File(exportDir, "Project/XSD/B.xsd");
+        assertTrue(Files.isSameFile(b.toPath(), store.getObject(ExportManifest.hash(bytes("b2"))).toPath()));
+        assertFalse(new File(exportDir, "Project/Old").exists());
+
+        List<String> snapshots = store.listSnapshots();
+        assertEquals(2, snapshots.size());
+        File checkoutDir = new File(tmp.getRoot(), "checkout");
+        assertEquals(3, store.materialize(store.loadSnapshot(snapshots.get(0)), checkoutDir, true));
+        assertEquals("b", new String(Files.readAllBytes(new File(checkoutDir, "Project/XSD/B.xsd").toPath()),
+                StandardCharsets.UTF_8));
+        assertEquals(ExportManifest.hash(bytes("b2")), store.loadSnapshot("Project").getHash("Project/XSD/B.xsd"));
+
+        store.gc(1, 0);
+        assertEquals(snapshots.subList(1, 2), store.listSnapshots());
+        assertFalse(store.getObject(ExportManifest.hash(bytes("b"))).exists());
+        assertTrue(store.getObject(ExportManifest.hash(bytes("a"))).exists());
+    }
+
+    @Test
+    public void testGcKeepsReusedObjects() throws IOException {
+        SnapshotStore store = new SnapshotStore(tmp.newFolder("store").getAbsolutePath());
+        String hash = ExportManifest.hash(bytes("a"));
+        assertTrue(store.putObject(hash, bytes("a")));
+        File object = store.getObject(hash);
+        assertTrue(object.setLastModified(System.currentTimeMillis() - 2 * SnapshotStore.GC_GRACE_MILLIS));
+
+        // An export reuses the old object, and a garbage collection runs before its snapshot is saved
+        assertFalse(store.putObject(hash, bytes("a")));
+        store.gc(1);
+        assertTrue(object.isFile());
+
+        object.delete();
+        assertTrue(store.putObject(hash, bytes("a")));
+        assertTrue(object.isFile());
+    }
+
+    @Test
+    public void testObjectsKeepDefaultPermissions() throws IOException {
+        File reference = tmp.newFile("reference");
+        Assume.assumeTrue(Files.getFileAttributeView(reference.toPath(), PosixFileAttributeView.class) != null);
+        SnapshotStore store = new SnapshotStore(tmp.newFolder("store").getAbsolutePath());
+        String hash = ExportManifest.hash(bytes("a"));
+        assertTrue(store.putObject(hash, bytes("a")));
+
+        // Read-only, but as readable as a file written directly, e.g. r--r--r-- with the umask 022
+        Set<PosixFilePermission> expected = Files.getPosixFilePermissions(reference.toPath());
+        expected.removeAll(EnumSet.of(PosixFilePermission.OWNER_WRITE, PosixFilePermission.GROUP_WRITE,
+                PosixFilePermission.OTHERS_WRITE));
+        assertEquals(expected, Files.getPosixFilePermissions(store.getObject(hash).toPath()));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
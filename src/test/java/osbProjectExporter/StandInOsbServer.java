@@ -0,0 +1,322 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+import com.bea.wli.config.mbeans.ConfigMBean;
+import com.bea.wli.config.project.ResourceMetadata;
+import com.bea.wli.config.resource.Diagnostic;
+import com.bea.wli.config.resource.Digest;
+import com.bea.wli.sb.management.configuration.ALSBConfigurationMBean;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * An in-process stand-in of the OSB Admin server: fake ALSBConfigurationMBean and ConfigMBean backed by
+ * a SyntheticDomain, registered on a local MBean server and published over an RMI JMX connector.
+ * The URL of the stand-in can be given to ExportSession.open and to the command line instead of a t3 URL.
+ * Every call to the MBeans is delayed by the given latency to simulate a remote server.
+ */
+public class StandInOsbServer implements Closeable {
+
+    private final SyntheticDomain domain;
+    private final long latencyMillis;
+    private final AtomicInteger exportCalls = new AtomicInteger();
+    private final AtomicInteger concurrentExports = new AtomicInteger();
+    private final AtomicInteger maxConcurrentExports = new AtomicInteger();
+    private final AtomicInteger exportsBeforeFailing = new AtomicInteger();
+    private final AtomicInteger failingExports = new AtomicInteger();
+
+    private Registry registry;
+    private JMXConnectorServer connectorServer;
+    private String url;
+
+
+    private StandInOsbServer(SyntheticDomain domain, long latencyMillis) {
+        this.domain = domain;
+        this.latencyMillis = latencyMillis;
+    }
+
+
+    /**
+     * Start a stand-in server for the given domain
+     *
+     * @param domain        SyntheticDomain The domain to serve
+     * @param latencyMillis long The delay of every call in milliseconds
+     * @return StandInOsbServer The started server
+     */
+    public static StandInOsbServer start(SyntheticDomain domain, long latencyMillis) throws Exception {
+        StandInOsbServer server = new StandInOsbServer(domain, latencyMillis);
+        server.start();
+        return server;
+    }
+
+
+    private void start() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        mBeanServer.registerMBean(
+                new StandardMBean(proxy(ALSBConfigurationMBean.class, alsbConfigurationHandler()), ALSBConfigurationMBean.class),
+                ObjectName.getInstance("com.bea:Name=" + ALSBConfigurationMBean.NAME + ",Type=" + ALSBConfigurationMBean.TYPE));
+        mBeanServer.registerMBean(
+                new StandardMBean(proxy(ConfigMBean.class, configHandler()), ConfigMBean.class),
+                ObjectName.getInstance("com.bea.wli.config:Name=Config.ServiceBus,Type=com.bea.wli.config.mbeans.ConfigMBean"));
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        registry = LocateRegistry.createRegistry(port);
+        url = "service:jmx:rmi:///jndi/rmi://localhost:" + port + "/weblogic.management.mbeanservers.domainruntime";
+        connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(new JMXServiceURL(url), null, mBeanServer);
+        connectorServer.start();
+    }
+
+
+    /**
+     * @return String The JMX service URL to connect to
+     */
+    public String getUrl() {
+        return url;
+    }
+
+
+    public int getExportCalls() {
+        return exportCalls.get();
+    }
+
+
+    public int getMaxConcurrentExports() {
+        return maxConcurrentExports.get();
+    }
+
+
+    /**
+     * Fail the given number of export calls after the given number of successful ones, as a server
+     * or a connection would under load
+     *
+     * @param after int The number of export calls to succeed first
+     * @param count int The number of export calls to fail
+     */
+    public void failExports(int after, int count) {
+        exportsBeforeFailing.set(after);
+        failingExports.set(count);
+    }
+
+
+    /**
+     * @return int The number of open client connections
+     */
+    public int getConnectionCount() {
+        return connectorServer.getConnectionIds().length;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if (connectorServer != null) {
+            connectorServer.stop();
+        }
+        if (registry != null) {
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+
+
+    private InvocationHandler alsbConfigurationHandler() {
+        return (proxy, method, args) -> {
+            simulateLatency();
+            switch (method.getName()) {
+                case "getRefs":
+                    return domain.getRefs((Ref) args[0]);
+                case "getProjects":
+                    return domain.getProjects();
+                default:
+                    return unsupported(method.getName(), args);
+            }
+        };
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private InvocationHandler configHandler() {
+        return (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "export":
+                    exportCalls.incrementAndGet();
+                    // The latency is part of the export, so that overlapping exports are seen as concurrent
+                    maxConcurrentExports.accumulateAndGet(concurrentExports.incrementAndGet(), Math::max);
+                    try {
+                        simulateLatency();
+                        if (exportsBeforeFailing.getAndUpdate(n -> Math.max(0, n - 1)) == 0 &&
+                                failingExports.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                            throw new IllegalStateException("The export failed on the stand-in server");
+                        }
+                        return domain.exportJar((Collection<Ref>) args[0], (Boolean) args[1]);
+                    } finally {
+                        concurrentExports.decrementAndGet();
+                    }
+                case "getProjects":
+                    simulateLatency();
+                    return domain.getProjects();
+                case "getDependencies":
+                    simulateLatency();
+                    return domain.getDependencies((Ref) args[0]);
+                case "getResourceMetadata":
+                    simulateLatency();
+                    return getResourceMetadata((Set<Ref>) args[0]);
+                default:
+                    simulateLatency();
+                    return unsupported(method.getName(), args);
+            }
+        };
+    }
+
+
+    /**
+     * The metadata of the given resources with a digest whose version and fingerprint follow the changes
+     * of the resource in the domain
+     */
+    private Map<Ref, ResourceMetadata> getResourceMetadata(Set<Ref> refs) {
+        Map<Ref, ResourceMetadata> metadata = new HashMap<>();
+        for (Ref ref : refs) {
+            Long version = domain.getVersion(ref);
+            if (version != null) {
+                Digest digest = new Digest("standIn", ref.getFullName(), 1, version, version, 0, "weblogic",
+                        domain.getContent(ref).hashCode());
+                metadata.put(ref, new StandInResourceMetadata(ref, digest));
+            }
+        }
+        return metadata;
+    }
+
+
+    private static Object unsupported(String methodName, Object[] args) {
+        switch (methodName) {
+            case "toString":
+                return "StandInOsbServer";
+            case "hashCode":
+                return 0;
+            case "equals":
+                return args[0] == null;
+            default:
+                throw new UnsupportedOperationException(methodName + " is not supported by the stand-in server");
+        }
+    }
+
+
+    private void simulateLatency() throws InterruptedException {
+        if (latencyMillis > 0) {
+            Thread.sleep(latencyMillis);
+        }
+    }
+
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(StandInOsbServer.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+
+    /**
+     * Run the stand-in server until the process is stopped, e.g. to profile the exporter from the command line
+     * against a large domain.
+     * Arguments: [projects [resourcesPerProject [dependencyDepth [latencyMillis]]]]
+     */
+    public static void main(String[] args) throws Exception {
+        int projects = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int resources = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long latency = args.length > 3 ? Long.parseLong(args[3]) : 0;
+
+        SyntheticDomain domain = SyntheticDomain.generate(projects, resources, depth);
+        StandInOsbServer server = start(domain, latency);
+        System.out.println("Serving " + domain.getResourceCount() + " resources in " + projects + " projects at " +
+                server.getUrl());
+        Thread.currentThread().join();
+    }
+
+
+    /**
+     * The metadata of a resource as the server sends it over JMX: only the digest is filled in
+     */
+    private static class StandInResourceMetadata implements ResourceMetadata, Serializable {
+
+        private final Ref ref;
+        private final Digest digest;
+
+
+        private StandInResourceMetadata(Ref ref, Digest digest) {
+            this.ref = ref;
+            this.digest = digest;
+        }
+
+
+        @Override
+        public Digest getDigest() {
+            return digest;
+        }
+
+
+        @Override
+        public Ref getThisRef() {
+            return ref;
+        }
+
+
+        @Override
+        public Diagnostic.Severity getDiagnosticSeverity() {
+            return null;
+        }
+
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return Collections.emptyMap();
+        }
+
+
+        @Override
+        public boolean hasSensitiveInformation() {
+            return false;
+        }
+
+
+        @Override
+        public Set<Ref> getDependencyRefs() {
+            return Collections.emptySet();
+        }
+
+
+        @Override
+        public Set<Ref> getDependentRefs() {
+            return Collections.emptySet();
+        }
+
+
+        @Override
+        public int getDependents() {
+            return 0;
+        }
+
+
+        @Override
+        public int getDependencies() {
+            return 0;
+        }
+    }
+}
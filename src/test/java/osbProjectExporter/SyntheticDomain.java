@@ -0,0 +1,231 @@
+package osbProjectExporter;
+
+import com.bea.wli.config.Ref;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+
+/**
+ * A synthetic OSB domain: projects of schemas, WSDLs, business services and pipelines with references between them.
+ * Within a project a WSDL imports a schema, a business service refers to a WSDL and a pipeline to a business service.
+ * Projects are chained like in the README: Project_0 depends on Project_1, which depends on Project_2 and so on,
+ * up to the given dependency depth, after which a new chain starts.
+ */
+public class SyntheticDomain {
+
+    private static final String[] TYPES = {"XMLSchema", "WSDL", "BusinessService", "Pipeline"};
+    private static final String[] FOLDERS = {"XSD", "WSDL", "Business", "Pipeline"};
+
+    private final Map<Ref, String> resources = new TreeMap<>();
+    private final Map<Ref, Set<Ref>> dependencies = new HashMap<>();
+    private final Set<Ref> projects = new TreeSet<>();
+    private final Map<Ref, Long> versions = new HashMap<>();
+
+
+    /**
+     * Generate a domain
+     *
+     * @param projectCount        int The number of projects
+     * @param resourcesPerProject int The number of resources in each project
+     * @param dependencyDepth     int The length of the project dependency chains, 0 for independent projects
+     * @return SyntheticDomain The domain
+     */
+    public static SyntheticDomain generate(int projectCount, int resourcesPerProject, int dependencyDepth) {
+        SyntheticDomain domain = new SyntheticDomain();
+        for (int p = 0; p < projectCount; p++) {
+            domain.projects.add(Ref.makeProjectRef(projectName(p)));
+        }
+
+        for (int p = 0; p < projectCount; p++) {
+            boolean hasDependency = p % (dependencyDepth + 1) < dependencyDepth && p + 1 < projectCount;
+            for (int k = 0; k < resourcesPerProject; k++) {
+                Ref ref = resourceRef(p, k);
+                Set<Ref> refs = new TreeSet<>();
+                if (k % TYPES.length > 0) {
+                    // WSDL -> schema, business service -> WSDL, pipeline -> business service
+                    refs.add(resourceRef(p, k - 1));
+                }
+                if (hasDependency) {
+                    refs.add(resourceRef(p + 1, k));
+                }
+                domain.dependencies.put(ref, refs);
+                domain.resources.put(ref, content(ref, refs));
+            }
+        }
+        return domain;
+    }
+
+
+    public static String projectName(int project) {
+        return "Project_" + project;
+    }
+
+
+    private static Ref resourceRef(int project, int index) {
+        int type = index % TYPES.length;
+        return new Ref(TYPES[type], new String[]{projectName(project), FOLDERS[type], TYPES[type] + "_" + index});
+    }
+
+
+    public Set<Ref> getProjects() {
+        return Collections.unmodifiableSet(projects);
+    }
+
+
+    public int getResourceCount() {
+        return resources.size();
+    }
+
+
+    /**
+     * Get the resources of the given project
+     *
+     * @param project Ref The project
+     * @return Set<Ref> The resources
+     */
+    public synchronized Set<Ref> getRefs(Ref project) {
+        Set<Ref> refs = new TreeSet<>();
+        for (Ref ref : resources.keySet()) {
+            if (project.isDomainRef() || ref.getProjectName().equals(project.getProjectName())) {
+                refs.add(ref);
+            }
+        }
+        return refs;
+    }
+
+
+    /**
+     * @param ref Ref The resource
+     * @return long The number of changes of the resource since it was generated, null if it does not exist
+     */
+    public synchronized Long getVersion(Ref ref) {
+        return resources.containsKey(ref) ? versions.getOrDefault(ref, 0L) : null;
+    }
+
+
+    /**
+     * @param ref Ref The resource
+     * @return String The content of the resource
+     */
+    public synchronized String getContent(Ref ref) {
+        return resources.get(ref);
+    }
+
+
+    /**
+     * Change the content of the given resource, as a developer would in the console
+     *
+     * @param ref Ref The resource
+     */
+    public synchronized void touch(Ref ref) {
+        long version = versions.getOrDefault(ref, 0L) + 1;
+        versions.put(ref, version);
+        resources.put(ref, resources.get(ref) + "\n<!-- version " + version + " -->");
+    }
+
+
+    /**
+     * Delete the given resource
+     *
+     * @param ref Ref The resource
+     */
+    public synchronized void remove(Ref ref) {
+        resources.remove(ref);
+        versions.remove(ref);
+        dependencies.remove(ref);
+    }
+
+
+    public synchronized Set<Ref> getDependencies(Ref ref) {
+        return dependencies.getOrDefault(ref, Collections.emptySet());
+    }
+
+
+    /**
+     * Export the given resources the way ConfigMBean.export does: a jar with an entry per resource,
+     * a LocationData entry per folder and the ExportInfo
+     *
+     * @param refs                Collection<Ref> The resources to export
+     * @param includeDependencies boolean True to export the transitive dependencies too
+     * @return byte[] The jar binary
+     */
+    public synchronized byte[] exportJar(Collection<Ref> refs, boolean includeDependencies) throws IOException {
+        Set<Ref> exported = new TreeSet<>();
+        Deque<Ref> queue = new ArrayDeque<>(refs);
+        while (!queue.isEmpty()) {
+            Ref ref = queue.poll();
+            if (resources.containsKey(ref) && exported.add(ref) && includeDependencies) {
+                queue.addAll(getDependencies(ref));
+            }
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (JarOutputStream jos = new JarOutputStream(bos)) {
+            StringBuilder exportInfo = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<xml-fragment name=\"\" version=\"v2\" xmlns:imp=\"http://www.bea.com/wli/config/importexport\">\n");
+            Set<String> folders = new TreeSet<>();
+            for (Ref ref : exported) {
+                String folder = ref.getParentRef().getFullName();
+                if (folders.add(folder)) {
+                    put(jos, folder + "/_folderdata.LocationData", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                            "<proj:isImmutable xmlns:proj=\"http://www.bea.com/wli/config/project\">false</proj:isImmutable>");
+                }
+                put(jos, ref.getFullName() + "." + ref.getTypeId(), resources.get(ref));
+                exportInfo.append("    <imp:exportedItemInfo instanceId=\"").append(ref.getFullName())
+                        .append("\" typeId=\"").append(ref.getTypeId()).append("\"/>\n");
+            }
+            put(jos, "ExportInfo", exportInfo.append("</xml-fragment>").toString());
+        }
+        return bos.toByteArray();
+    }
+
+
+    /**
+     * The resource content with references to the given resources: schema imports for schemas and WSDLs,
+     * WSDL references for business services and business service references for pipelines
+     */
+    private static String content(Ref ref, Set<Ref> refs) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        String name = ref.getLocalName();
+        switch (ref.getTypeId()) {
+            case "XMLSchema":
+            case "WSDL":
+                String entry = ref.getTypeId().equals("WSDL") ? "wsdl" : "schema";
+                sb.append("<con:").append(entry).append("Entry xmlns:con=\"http://www.bea.com/wli/sb/resources/config\">\n")
+                        .append("    <con:").append(entry).append("><![CDATA[<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                        .append("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"http://example.com/")
+                        .append(ref.getFullName()).append("\">\n");
+                for (Ref dependency : refs) {
+                    sb.append("  <xsd:import namespace=\"http://example.com/").append(dependency.getFullName())
+                            .append("\" schemaLocation=\"../../").append(dependency.getFullName())
+                            .append(dependency.getTypeId().equals("WSDL") ? ".wsdl" : ".xsd").append("\"/>\n");
+                }
+                sb.append("  <xsd:element name=\"").append(name).append("\" type=\"xsd:string\"/>\n")
+                        .append("</xsd:schema>]]></con:").append(entry).append(">\n")
+                        .append("</con:").append(entry).append("Entry>");
+                break;
+            default:
+                sb.append("<con:").append(ref.getTypeId().equals("Pipeline") ? "pipelineEntry" : "businessServiceEntry")
+                        .append(" xmlns:con=\"http://www.bea.com/wli/sb/services\">\n")
+                        .append("    <con:coreEntry name=\"").append(name).append("\">\n");
+                for (Ref dependency : refs) {
+                    sb.append("        <con:service ref=\"").append(dependency.getFullName()).append("\"/>\n");
+                }
+                sb.append("    </con:coreEntry>\n</con:")
+                        .append(ref.getTypeId().equals("Pipeline") ? "pipelineEntry" : "businessServiceEntry").append(">");
+        }
+        return sb.toString();
+    }
+
+
+    private static void put(JarOutputStream jos, String name, String content) throws IOException {
+        jos.putNextEntry(new JarEntry(name));
+        jos.write(content.getBytes(StandardCharsets.UTF_8));
+        jos.closeEntry();
+    }
+}
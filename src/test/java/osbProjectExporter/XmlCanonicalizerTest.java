@@ -0,0 +1,77 @@
+package osbProjectExporter;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+
+public class XmlCanonicalizerTest {
+
+    @Test
+    public void testCanonicalize() throws IOException {
+        String xml = "<?xml version='1.0' encoding='UTF-8'?>\r\n" +
+                "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"   targetNamespace=\"urn:a\" xmlns:tns=\"urn:a\"\n" +
+                "      elementFormDefault=\"qualified\"><xs:element type=\"tns:T\" name=\"A\"   />\n" +
+                "<xs:complexType name=\"T\" xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">\t<!-- comment -->\n" +
+                "  <xs:annotation><xs:documentation>Some <![CDATA[<text>]]> &amp; more</xs:documentation></xs:annotation>\n" +
+                "   </xs:complexType></xs:schema>";
+        String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xs:schema xmlns:tns=\"urn:a\" xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" elementFormDefault=\"qualified\" targetNamespace=\"urn:a\">\n" +
+                "  <xs:element name=\"A\" type=\"tns:T\"/>\n" +
+                "  <xs:complexType name=\"T\">\n" +
+                "    <!-- comment -->\n" +
+                "    <xs:annotation>\n" +
+                "      <xs:documentation>Some &lt;text&gt; &amp; more</xs:documentation>\n" +
+                "    </xs:annotation>\n" +
+                "  </xs:complexType>\n" +
+                "</xs:schema>\n";
+        assertEquals(expected, canonicalize(xml));
+        assertEquals(expected, canonicalize(expected));
+    }
+
+    @Test
+    public void testWhitespaceContent() throws IOException {
+        // The whitespace-only text of an element without child elements
+        assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<a>\n  <b> </b>\n  <c/>\n</a>\n",
+                canonicalize("<a>\n <b> </b>\n <c/>\n</a>"));
+
+        // xsl:text
+        String xslt = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<xsl:stylesheet xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\" version=\"1.0\">\n" +
+                "  <xsl:template match=\"/\">\n" +
+                "    <xsl:value-of select=\"a\"/>\n" +
+                "    <xsl:text> </xsl:text>\n" +
+                "    <xsl:text>\n</xsl:text>\n" +
+                "  </xsl:template>\n" +
+                "</xsl:stylesheet>\n";
+        assertEquals(xslt, canonicalize(xslt.replace("\n  ", "\n")));
+
+        // xml:space="preserve" keeps all the whitespace and is not indented, xml:space="default" resets it
+        String preserved = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<r>\n  <a xml:space=\"preserve\"> <b>  </b>\n <c> <d/> </c></a>\n  <e xml:space=\"default\">\n    <f/>\n  </e>\n</r>\n";
+        assertEquals(preserved, canonicalize(preserved));
+        assertEquals(preserved, canonicalize(preserved.replace("\n  <e", "<e").replace("\n    <f/>", "<f/>")));
+    }
+
+    @Test
+    public void testNotXml() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        assertFalse(XmlCanonicalizer.canonicalize(new ByteArrayInputStream(
+                "xquery version \"1.0\";".getBytes(StandardCharsets.UTF_8)), () -> Channels.newChannel(bos)));
+        assertEquals(0, bos.size());
+    }
+
+    private static String canonicalize(String xml) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XmlCanonicalizer.canonicalize(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)),
+                () -> Channels.newChannel(bos));
+        return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    }
+}